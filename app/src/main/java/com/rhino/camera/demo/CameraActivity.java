@@ -23,8 +23,8 @@ import androidx.annotation.Nullable;
 import androidx.databinding.DataBindingUtil;
 
 import com.rhino.camera.CameraTextureView;
+import com.rhino.camera.CapturePipeline;
 import com.rhino.camera.demo.databinding.ActivityCameraBinding;
-import com.rhino.camera.utils.BitmapUtils;
 import com.rhino.camera.utils.CameraPermissionUtils;
 import com.rhino.camera.utils.PrimaryUtils;
 import com.rhino.log.LogUtils;
@@ -71,6 +71,10 @@ public class CameraActivity extends Activity implements Camera.PreviewCallback {
      * 视频流预览测试开关
      */
     private boolean previewTestEnable = false;
+    /**
+     * 拍照后处理流水线
+     */
+    private final CapturePipeline capturePipeline = new CapturePipeline();
 
 
     @Override
@@ -154,6 +158,12 @@ public class CameraActivity extends Activity implements Camera.PreviewCallback {
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        capturePipeline.shutdown();
+    }
+
     @Override
     public void onResume() {
         super.onResume();
@@ -313,40 +323,39 @@ public class CameraActivity extends Activity implements Camera.PreviewCallback {
      * 拍照
      */
     private void onClickCapture() {
-        dataBinding.cameraTextureView.takePicture(new Camera.PictureCallback() {
+        // 这里预览是在屏幕上居中，直接按屏幕上预览的大小切图
+        int cropWidth, cropHeight;
+        if (dataBinding.cameraTextureView.isRotate()) {
+            cropWidth = dataBinding.rlContainer.getHeight();
+            cropHeight = dataBinding.rlContainer.getWidth();
+        } else {
+            cropWidth = dataBinding.rlContainer.getWidth();
+            cropHeight = dataBinding.rlContainer.getHeight();
+        }
+        // 根据摄像头和手机方向旋转
+        CapturePipeline.Request request = new CapturePipeline.Request(dataBinding.cameraTextureView.getRotateDegree())
+                .setCropScale(cropWidth, cropHeight);
+        dataBinding.cameraTextureView.takePicture(capturePipeline, request, new CapturePipeline.Callback() {
             @Override
-            public void onPictureTaken(byte[] bytes, Camera camera) {
-                final Camera.Parameters parameters = camera.getParameters();
-                Camera.Size pictureSize = parameters.getPictureSize();
-
-                Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-                // TODO 测试
-//                BitmapUtils.saveBitmap(bitmap, "bitmap.jpg");
-
-                // 根据摄像头和手机方向旋转
-                Matrix matrix = new Matrix();
-                matrix.postRotate(dataBinding.cameraTextureView.getRotateDegree());
-                Bitmap matrixBitmap = Bitmap.createBitmap(bitmap, 0, 0, pictureSize.width, pictureSize.height, matrix, true);
-                // TODO 测试
-//                BitmapUtils.saveBitmap(matrixBitmap, "matrixBitmap.jpg");
-
-                // 这里预览是在屏幕上居中，直接按屏幕上预览的大小切图
-                int cropWidth, cropHeight;
-                if (dataBinding.cameraTextureView.isRotate()) {
-                    cropWidth = dataBinding.rlContainer.getHeight();
-                    cropHeight = dataBinding.rlContainer.getWidth();
-                } else {
-                    cropWidth = dataBinding.rlContainer.getWidth();
-                    cropHeight = dataBinding.rlContainer.getHeight();
-                }
-                Bitmap cropBitmap = BitmapUtils.cropCenterByScale(matrixBitmap, cropWidth, cropHeight);
-                BitmapUtils.saveBitmap(cropBitmap);
-
-                BitmapUtils.recycleBitmap(cropBitmap);
-                BitmapUtils.recycleBitmap(bitmap);
-                BitmapUtils.recycleBitmap(matrixBitmap);
-                showToast("保存成功");
-                dataBinding.cameraTextureView.startPreview();
+            public void onCaptureSuccess(@NonNull CapturePipeline.Result result) {
+                LogUtils.d("拍照完成: " + result);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        showToast("保存成功");
+                    }
+                });
+            }
+
+            @Override
+            public void onCaptureFailed(@NonNull Exception e) {
+                LogUtils.e("拍照失败: " + e);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        showToast("保存失败");
+                    }
+                });
             }
         });
     }
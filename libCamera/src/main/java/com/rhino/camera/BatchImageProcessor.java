@@ -0,0 +1,555 @@
+package com.rhino.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.rhino.camera.utils.BitmapCompressUtils;
+import com.rhino.camera.utils.BitmapUtils;
+import com.rhino.camera.utils.FileUtils;
+import com.rhino.camera.utils.GrowableByteBuffer;
+import com.rhino.camera.utils.JpegExifWriter;
+import com.rhino.camera.utils.JpegHeaderParser;
+import com.rhino.camera.utils.JpegTargetSizeEncoder;
+import com.rhino.log.LogUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>拍照目录批量处理：解码 → 依次执行操作（缩放等）→ 编码 → 写入输出目录</p>
+ * <p>工作线程数按 CPU 核数，同时处理的文件再按内存预算限制：每个文件开始前按解码尺寸估算峰值内存，
+ * 从预算中申请，处理完归还，大图多时自动减少并发</p>
+ * <p>每个文件先写临时文件再重命名，完成后追加到输出目录的日志中；中断后用相同参数重新开始会跳过日志中已完成的文件，
+ * 全部成功后删除日志</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class BatchImageProcessor {
+
+    private static final String TAG = BatchImageProcessor.class.getSimpleName();
+
+    /**
+     * 断点续传日志文件名，保存在输出目录
+     */
+    public static final String JOURNAL_NAME = ".batch_journal";
+    /**
+     * 估算峰值内存时解码图的倍数：解码图、操作结果、编码缓冲
+     */
+    private static final float PEAK_MEMORY_FACTOR = 2.5f;
+
+    /**
+     * 对解码后的图片执行的操作
+     */
+    public interface Operation {
+        /**
+         * @return 处理结果，可以是 bitmap 本身；返回新的 Bitmap 时 bitmap 由调用方回收
+         */
+        @NonNull
+        Bitmap apply(@NonNull Bitmap bitmap);
+    }
+
+    /**
+     * 进度回调，在工作线程执行
+     */
+    public interface Callback {
+        void onProgress(@NonNull Progress progress);
+
+        void onFileFailed(@NonNull String path, @NonNull Exception e);
+
+        void onComplete(@NonNull Progress progress);
+    }
+
+    /**
+     * 进度快照
+     */
+    public static class Progress {
+        public int total;
+        public int processed;
+        /**
+         * 日志中已完成、本次跳过的文件数
+         */
+        public int skipped;
+        public int failed;
+        public long inputBytes;
+        public long outputBytes;
+        public long elapsedMs;
+        public boolean cancelled;
+
+        /**
+         * 本次处理的文件数每秒
+         */
+        public float getFilesPerSecond() {
+            return elapsedMs > 0 ? processed * 1000f / elapsedMs : 0f;
+        }
+
+        /**
+         * 本次读取的输入 MB 每秒
+         */
+        public float getInputMegabytesPerSecond() {
+            return elapsedMs > 0 ? inputBytes / 1048576f * 1000f / elapsedMs : 0f;
+        }
+
+        public boolean isFinished() {
+            return processed + skipped + failed >= total;
+        }
+
+        @Override
+        public String toString() {
+            return "Progress{" +
+                    "total=" + total +
+                    ", processed=" + processed +
+                    ", skipped=" + skipped +
+                    ", failed=" + failed +
+                    ", inputBytes=" + inputBytes +
+                    ", outputBytes=" + outputBytes +
+                    ", elapsedMs=" + elapsedMs +
+                    ", filesPerSecond=" + getFilesPerSecond() +
+                    ", inputMBps=" + getInputMegabytesPerSecond() +
+                    ", cancelled=" + cancelled +
+                    '}';
+        }
+    }
+
+    /**
+     * 缩放最短边到 destSize，与 {@link BitmapCompressUtils#scaleLitterSideToDestSize} 一致；
+     * 同时设置 {@link #setDecodeShortSide} 可以在解码时先按采样率缩小
+     */
+    @NonNull
+    public static Operation scaleShortSide(final int destSize) {
+        return new Operation() {
+            @NonNull
+            @Override
+            public Bitmap apply(@NonNull Bitmap bitmap) {
+                Bitmap result = BitmapCompressUtils.scaleLitterSideToDestSize(bitmap, destSize);
+                return result != null ? result : bitmap;
+            }
+        };
+    }
+
+    private final File inputDir;
+    private final File outputDir;
+    private final List<Operation> operations = new ArrayList<>();
+    private String fileSuffix = ".jpg";
+    private int quality = 90;
+    private int targetSizeKb;
+    private int minQuality = 30;
+    private int decodeShortSide;
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private volatile boolean cancelled;
+
+    /**
+     * @param inputDir  输入目录
+     * @param outputDir 输出目录，同名保存
+     */
+    public BatchImageProcessor(@NonNull File inputDir, @NonNull File outputDir) {
+        this.inputDir = inputDir;
+        this.outputDir = outputDir;
+    }
+
+    /**
+     * 输入文件后缀，小写，null 处理所有文件，默认 .jpg
+     */
+    public BatchImageProcessor setFileSuffix(@Nullable String fileSuffix) {
+        this.fileSuffix = fileSuffix;
+        return this;
+    }
+
+    public BatchImageProcessor addOperation(@NonNull Operation operation) {
+        operations.add(operation);
+        return this;
+    }
+
+    /**
+     * 固定质量编码
+     */
+    public BatchImageProcessor setQuality(int quality) {
+        this.quality = quality;
+        this.targetSizeKb = 0;
+        return this;
+    }
+
+    /**
+     * 按目标大小编码，与 {@link BitmapCompressUtils#compressImageByQualityToSizeKb} 一致
+     *
+     * @param targetSizeKb 目标大小 kb
+     * @param minQuality   最低质量
+     */
+    public BatchImageProcessor setTargetSizeKb(int targetSizeKb, int minQuality) {
+        this.targetSizeKb = targetSizeKb;
+        this.minQuality = minQuality;
+        return this;
+    }
+
+    /**
+     * 解码时按采样率缩小，最短边不小于 shortSide，小于等于0完整解码
+     */
+    public BatchImageProcessor setDecodeShortSide(int shortSide) {
+        this.decodeShortSide = shortSide;
+        return this;
+    }
+
+    /**
+     * 同时处理的文件的内存预算，默认最大堆内存的 1/4
+     */
+    public BatchImageProcessor setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = Math.max(1024, memoryBudget);
+        return this;
+    }
+
+    /**
+     * 工作线程数上限，默认 CPU 核数
+     */
+    public BatchImageProcessor setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+        return this;
+    }
+
+    /**
+     * 停止处理，正在处理的文件会处理完，已完成的记录在日志中
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 开始处理
+     *
+     * @param callback 回调，可以为null
+     * @return Future，结果为最终进度
+     */
+    @NonNull
+    public Future<Progress> start(@Nullable final Callback callback) {
+        cancelled = false;
+        final ExecutorService coordinator = Executors.newSingleThreadExecutor(newThreadFactory("batch-coordinator"));
+        Future<Progress> future = coordinator.submit(new Callable<Progress>() {
+            @Override
+            public Progress call() throws Exception {
+                try {
+                    return run(callback);
+                } finally {
+                    coordinator.shutdown();
+                }
+            }
+        });
+        return future;
+    }
+
+    private static ThreadFactory newThreadFactory(final String name) {
+        final AtomicInteger index = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable r) {
+                Thread thread = new Thread(r, name + "-" + index.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private Progress run(@Nullable Callback callback) throws IOException, InterruptedException {
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IOException("create output dir failed: " + outputDir);
+        }
+        List<String> paths = FileUtils.getDirFiles(inputDir.getAbsolutePath(), fileSuffix);
+        Journal journal = new Journal(new File(outputDir, JOURNAL_NAME));
+        State state = new State(paths.size(), callback);
+        // 内存预算按 KB 计数，避免超过 int 范围
+        Semaphore memory = new Semaphore((int) Math.min(Integer.MAX_VALUE, memoryBudget / 1024));
+        ExecutorService workers = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), newThreadFactory("batch-worker"));
+        List<Future<?>> futures = new ArrayList<>(paths.size());
+        try {
+            for (String path : paths) {
+                File file = new File(path);
+                if (journal.isDone(file)) {
+                    state.skipped.incrementAndGet();
+                    continue;
+                }
+                futures.add(workers.submit(new FileTask(file, journal, memory, state)));
+            }
+            state.report();
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    LogUtils.e(TAG, e.toString());
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+            journal.close();
+        }
+        Progress progress = state.snapshot();
+        progress.cancelled = cancelled;
+        if (!cancelled && progress.failed == 0) {
+            journal.delete();
+        }
+        LogUtils.d(TAG, "批量处理完成: " + progress);
+        if (callback != null) {
+            callback.onComplete(progress);
+        }
+        return progress;
+    }
+
+    private final class FileTask implements Runnable {
+        private final File file;
+        private final Journal journal;
+        private final Semaphore memory;
+        private final State state;
+
+        FileTask(File file, Journal journal, Semaphore memory, State state) {
+            this.file = file;
+            this.journal = journal;
+            this.memory = memory;
+            this.state = state;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            int permits = 0;
+            Bitmap bitmap = null;
+            try {
+                // [宽, 高, EXIF方向]
+                int[] header = readHeader(file);
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = calculateSampleSize(header[0], header[1]);
+                long decodedBytes = (long) ((header[0] + options.inSampleSize - 1) / options.inSampleSize)
+                        * ((header[1] + options.inSampleSize - 1) / options.inSampleSize) * 4;
+                // 单个文件超过预算时按整个预算申请，独占处理
+                permits = (int) Math.max(1, Math.min(memoryBudget, (long) (decodedBytes * PEAK_MEMORY_FACTOR)) / 1024);
+                memory.acquire(permits);
+                if (cancelled) {
+                    return;
+                }
+                bitmap = BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+                if (bitmap == null) {
+                    throw new IOException("decode failed");
+                }
+                for (Operation operation : operations) {
+                    Bitmap result = operation.apply(bitmap);
+                    if (result != bitmap) {
+                        BitmapUtils.recycleBitmap(bitmap);
+                        bitmap = result;
+                    }
+                }
+                long outputBytes = write(bitmap, header[2], new File(outputDir, file.getName()));
+                journal.markDone(file);
+                state.processed.incrementAndGet();
+                state.inputBytes.addAndGet(file.length());
+                state.outputBytes.addAndGet(outputBytes);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LogUtils.e(TAG, "处理失败: " + file + ", " + e.toString());
+                state.failed.incrementAndGet();
+                if (state.callback != null) {
+                    state.callback.onFileFailed(file.getAbsolutePath(), e);
+                }
+            } finally {
+                BitmapUtils.recycleBitmap(bitmap);
+                if (permits > 0) {
+                    memory.release(permits);
+                }
+            }
+            state.report();
+        }
+    }
+
+    /**
+     * 读取宽高和 EXIF 方向，只解析文件头；不是JPEG时用 BitmapFactory 读取边界
+     */
+    @NonNull
+    private static int[] readHeader(@NonNull File file) throws IOException {
+        try {
+            JpegHeaderParser.JpegHeader header = JpegHeaderParser.parse(file);
+            return new int[]{header.getWidth(), header.getHeight(), header.getOrientation()};
+        } catch (IOException e) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                throw e;
+            }
+            return new int[]{options.outWidth, options.outHeight, JpegExifWriter.ORIENTATION_UNDEFINED};
+        }
+    }
+
+    private int calculateSampleSize(int width, int height) {
+        if (decodeShortSide <= 0) {
+            return 1;
+        }
+        int shortSide = Math.min(width, height);
+        if (shortSide <= decodeShortSide) {
+            return 1;
+        }
+        float scale = (float) decodeShortSide / shortSide;
+        return BitmapUtils.calculateInSampleSize(width, height, Math.round(width * scale), Math.round(height * scale));
+    }
+
+    /**
+     * 编码后写入临时文件再重命名，保留原图的 EXIF 方向
+     *
+     * @return 写入的字节数
+     */
+    private long write(@NonNull Bitmap bitmap, int orientation, @NonNull File outputFile) throws IOException {
+        byte[] data;
+        int length;
+        if (targetSizeKb > 0) {
+            JpegTargetSizeEncoder.Result result = JpegTargetSizeEncoder.getThreadEncoder()
+                    .encode(bitmap, (targetSizeKb + 1) * 1024 - 1, minQuality, 100);
+            data = result.getData();
+            length = result.getLength();
+        } else {
+            GrowableByteBuffer buffer = GrowableByteBuffer.getThreadBuffer();
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, quality, buffer)) {
+                throw new IOException("encode failed");
+            }
+            data = buffer.getBuffer();
+            length = buffer.size();
+        }
+        if (orientation > JpegExifWriter.ORIENTATION_NORMAL) {
+            // 编码结果没有 EXIF，插入只包含方向的 APP1
+            byte[] jpeg = new byte[length];
+            System.arraycopy(data, 0, jpeg, 0, length);
+            data = JpegExifWriter.setOrientation(jpeg, orientation);
+            length = data.length;
+        }
+        File tempFile = new File(outputFile.getAbsolutePath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            out.write(data, 0, length);
+        } finally {
+            if (targetSizeKb > 0) {
+                JpegTargetSizeEncoder.getThreadEncoder().trimMemory();
+            } else {
+                GrowableByteBuffer.trimThreadBuffer();
+            }
+        }
+        if (!tempFile.renameTo(outputFile)) {
+            // 目标已存在时部分系统重命名失败
+            if (!outputFile.delete() || !tempFile.renameTo(outputFile)) {
+                tempFile.delete();
+                throw new IOException("rename failed: " + outputFile);
+            }
+        }
+        return length;
+    }
+
+    private static final class State {
+        final int total;
+        final Callback callback;
+        final long startTime = System.currentTimeMillis();
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicLong inputBytes = new AtomicLong();
+        final AtomicLong outputBytes = new AtomicLong();
+
+        State(int total, Callback callback) {
+            this.total = total;
+            this.callback = callback;
+        }
+
+        Progress snapshot() {
+            Progress progress = new Progress();
+            progress.total = total;
+            progress.processed = processed.get();
+            progress.skipped = skipped.get();
+            progress.failed = failed.get();
+            progress.inputBytes = inputBytes.get();
+            progress.outputBytes = outputBytes.get();
+            progress.elapsedMs = System.currentTimeMillis() - startTime;
+            return progress;
+        }
+
+        void report() {
+            if (callback != null) {
+                callback.onProgress(snapshot());
+            }
+        }
+    }
+
+    /**
+     * 已完成文件的日志，每行 文件名|大小|修改时间，源文件变化后重新处理
+     */
+    private static final class Journal {
+        private final File file;
+        private final Set<String> done = new HashSet<>();
+        private Writer writer;
+
+        Journal(File file) throws IOException {
+            this.file = file;
+            if (file.isFile()) {
+                try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        done.add(line);
+                    }
+                }
+            }
+        }
+
+        private static String entryOf(File source) {
+            return source.getName() + '|' + source.length() + '|' + source.lastModified();
+        }
+
+        boolean isDone(File source) {
+            return done.contains(entryOf(source));
+        }
+
+        synchronized void markDone(File source) throws IOException {
+            if (writer == null) {
+                writer = new FileWriter(file, true);
+            }
+            writer.write(entryOf(source));
+            writer.write('\n');
+            // 每条立即写入，进程被杀时最多重做正在处理的文件
+            writer.flush();
+        }
+
+        synchronized void close() {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    LogUtils.e(TAG, e.toString());
+                }
+                writer = null;
+            }
+        }
+
+        void delete() {
+            file.delete();
+        }
+    }
+
+}
@@ -0,0 +1,412 @@
+package com.rhino.camera;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.rhino.camera.utils.BitmapUtils;
+import com.rhino.camera.utils.FrameBufferPool;
+import com.rhino.camera.utils.GrowableByteBuffer;
+import com.rhino.camera.utils.JpegExifWriter;
+import com.rhino.camera.utils.NV21ByteUtils;
+import com.rhino.camera.utils.PrimaryUtils;
+import com.rhino.log.LogUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>连拍，按固定间隔从预览帧或 takePicture 采集 N 帧，交给有界的编码保存队列</p>
+ * <p>队列满时预览来源跳过当前帧、等待下一帧，拍照来源推迟下一次拍照，采集速度不会超过编码保存速度；
+ * 通过 {@link Listener} 报告实际帧率和队列深度</p>
+ * <p>由 {@link CameraTextureView#startBurst(BurstCapture)} 启动，一个实例只能使用一次</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class BurstCapture {
+
+    private static final String TAG = BurstCapture.class.getSimpleName();
+
+    /**
+     * 从预览帧采集，不停预览，分辨率为预览分辨率
+     */
+    public static final int SOURCE_PREVIEW = 0;
+    /**
+     * 通过 takePicture 采集，每张之间重启预览
+     */
+    public static final int SOURCE_PICTURE = 1;
+    /**
+     * 默认编码保存队列长度
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    /**
+     * 连拍统计
+     */
+    public static class Stats {
+        public int requested;
+        public int captured;
+        public int saved;
+        public int failed;
+        /**
+         * 因为队列满而跳过的预览帧数或推迟的拍照次数
+         */
+        public int throttled;
+        /**
+         * 当前排队等待编码保存的帧数
+         */
+        public int queueDepth;
+        public int maxQueueDepth;
+        /**
+         * 实际采集帧率
+         */
+        public float captureFps;
+        /**
+         * 实际保存帧率
+         */
+        public float saveFps;
+        public long elapsedMs;
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "captured=" + captured + "/" + requested +
+                    ", saved=" + saved +
+                    ", failed=" + failed +
+                    ", throttled=" + throttled +
+                    ", queueDepth=" + queueDepth +
+                    ", maxQueueDepth=" + maxQueueDepth +
+                    ", captureFps=" + captureFps +
+                    ", saveFps=" + saveFps +
+                    ", elapsedMs=" + elapsedMs +
+                    '}';
+        }
+    }
+
+    /**
+     * 连拍回调，在编码保存线程中回调
+     */
+    public interface Listener {
+        /**
+         * 每保存一帧回调
+         *
+         * @param filePath 保存路径，失败为 null
+         */
+        void onBurstProgress(@Nullable String filePath, @NonNull Stats stats);
+
+        /**
+         * 全部采集并保存完成，或取消后队列处理完成
+         */
+        void onBurstFinished(@NonNull Stats stats);
+    }
+
+    private final int count;
+    private final long intervalNanos;
+    private final int source;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private int quality = 90;
+    @Nullable
+    private String outputDirectory;
+    @Nullable
+    private Listener listener;
+
+    private final FrameBufferPool pool = new FrameBufferPool();
+    /**
+     * 预览来源的 JPEG 编码缓冲，只在编码保存线程使用，每帧复用
+     */
+    private final GrowableByteBuffer jpegBuffer = new GrowableByteBuffer();
+    private ThreadPoolExecutor executor;
+    private long startNanos;
+    private long nextCaptureNanos;
+    private long firstCaptureNanos;
+    private long lastCaptureNanos;
+    private long firstSaveNanos;
+    private long lastSaveNanos;
+    private int captured;
+    private int saved;
+    private int failed;
+    private int throttled;
+    private int maxQueueDepth;
+    private boolean cancelled;
+    private boolean finished;
+
+    /**
+     * @param count      连拍张数
+     * @param intervalMs 目标间隔
+     * @param source     {@link #SOURCE_PREVIEW} or {@link #SOURCE_PICTURE}
+     */
+    public BurstCapture(int count, long intervalMs, int source) {
+        this.count = Math.max(1, count);
+        this.intervalNanos = Math.max(0, intervalMs) * 1000000L;
+        this.source = source;
+    }
+
+    /**
+     * 编码保存队列长度
+     */
+    public BurstCapture setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        return this;
+    }
+
+    /**
+     * 预览来源的 JPEG 质量，0~100，超出范围时取边界值
+     */
+    public BurstCapture setQuality(int quality) {
+        this.quality = Math.max(0, Math.min(100, quality));
+        return this;
+    }
+
+    /**
+     * 保存目录，null 保存到相册目录
+     */
+    public BurstCapture setOutputDirectory(@Nullable String outputDirectory) {
+        this.outputDirectory = outputDirectory;
+        return this;
+    }
+
+    public BurstCapture setListener(@Nullable Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    public long getIntervalMs() {
+        return intervalNanos / 1000000L;
+    }
+
+    synchronized void start() {
+        if (executor != null) {
+            throw new IllegalStateException("burst capture already started");
+        }
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable r) {
+                Thread thread = new Thread(r, "burst-capture");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        startNanos = System.nanoTime();
+        nextCaptureNanos = startNanos;
+    }
+
+    /**
+     * 是否已经采集完或取消
+     */
+    public synchronized boolean isCaptureComplete() {
+        return cancelled || captured >= count;
+    }
+
+    /**
+     * 编码保存队列是否还有空位，没有时记一次推迟
+     */
+    synchronized boolean acquireQueueSpace() {
+        if (executor.getQueue().remainingCapacity() > 0) {
+            return true;
+        }
+        throttled++;
+        return false;
+    }
+
+    /**
+     * 预览帧到达，到了采集时间且队列有空位时拷贝一份交给编码队列
+     *
+     * @return true 采集了这一帧
+     */
+    boolean offerPreviewFrame(@NonNull PreviewFrame frame) {
+        synchronized (this) {
+            if (isCaptureComplete() || frame.timestampNanos < nextCaptureNanos) {
+                return false;
+            }
+            if (!acquireQueueSpace()) {
+                return false;
+            }
+            nextCaptureNanos = frame.timestampNanos + intervalNanos;
+        }
+        byte[] data = pool.obtainBytes(frame.data.length);
+        System.arraycopy(frame.data, 0, data, 0, data.length);
+        final PreviewFrame copy = new PreviewFrame(data, frame.width, frame.height, frame.rotateDegree, frame.mirror,
+                frame.displayDegree, frame.timestampNanos, pool, true);
+        boolean queued = enqueue(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    NV21ByteUtils.NV21Result rotated = copy.get(FrameOperations.ROTATE);
+                    YuvImage yuv = new YuvImage(rotated.bytes, ImageFormat.NV21, rotated.width, rotated.height, null);
+                    jpegBuffer.reset();
+                    if (!yuv.compressToJpeg(new Rect(0, 0, rotated.width, rotated.height), quality, jpegBuffer)) {
+                        throw new IOException("encode jpeg failed");
+                    }
+                    onSaved(persist(jpegBuffer.getBuffer(), jpegBuffer.size()));
+                } catch (Exception e) {
+                    LogUtils.e(TAG, "连拍保存失败: " + e.toString());
+                    onSaved(null);
+                } finally {
+                    copy.release();
+                }
+            }
+        }, frame.timestampNanos);
+        if (!queued) {
+            copy.release();
+        }
+        return queued;
+    }
+
+    /**
+     * 拍照数据到达，写入 EXIF 方向后交给保存队列，调用前需要 {@link #acquireQueueSpace()}
+     *
+     * @param rotateDegree 显示时需要顺时针旋转的角度
+     */
+    boolean offerJpeg(@NonNull final byte[] jpeg, final int rotateDegree) {
+        synchronized (this) {
+            if (isCaptureComplete()) {
+                return false;
+            }
+        }
+        return enqueue(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    byte[] dest = JpegExifWriter.setOrientation(jpeg, JpegExifWriter.toExifOrientation(rotateDegree, false));
+                    onSaved(persist(dest, dest.length));
+                } catch (Exception e) {
+                    LogUtils.e(TAG, "连拍保存失败: " + e.toString());
+                    onSaved(null);
+                }
+            }
+        }, System.nanoTime());
+    }
+
+    /**
+     * takePicture 失败，算作采集了一帧并保存失败，连拍按剩余张数继续
+     */
+    void onCaptureFailed() {
+        synchronized (this) {
+            if (isCaptureComplete()) {
+                return;
+            }
+            captured++;
+        }
+        onSaved(null);
+    }
+
+    private synchronized boolean enqueue(Runnable task, long captureNanos) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // 只有一个生产者，入队前已经检查过空位，只有关闭后才会走到这里
+            LogUtils.e(TAG, "连拍入队失败: " + e.toString());
+            return false;
+        }
+        if (captured == 0) {
+            firstCaptureNanos = captureNanos;
+        }
+        lastCaptureNanos = captureNanos;
+        captured++;
+        maxQueueDepth = Math.max(maxQueueDepth, executor.getQueue().size());
+        return true;
+    }
+
+    @Nullable
+    private String persist(byte[] jpeg, int length) {
+        if (outputDirectory == null) {
+            return BitmapUtils.saveBytes(jpeg, length);
+        }
+        String filePath = new File(outputDirectory, "burst_" + PrimaryUtils.createPrimary() + ".jpg").getAbsolutePath();
+        return BitmapUtils.saveBytes(jpeg, length, filePath) ? filePath : null;
+    }
+
+    private void onSaved(@Nullable String filePath) {
+        Stats stats;
+        boolean done;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (filePath != null) {
+                if (saved == 0) {
+                    firstSaveNanos = now;
+                }
+                lastSaveNanos = now;
+                saved++;
+            } else {
+                failed++;
+            }
+            done = !finished && isCaptureComplete() && saved + failed >= captured;
+            if (done) {
+                finished = true;
+                executor.shutdown();
+            }
+            stats = getStats();
+        }
+        if (listener != null) {
+            listener.onBurstProgress(filePath, stats);
+            if (done) {
+                LogUtils.d(TAG, "连拍完成: " + stats);
+                listener.onBurstFinished(stats);
+            }
+        }
+    }
+
+    /**
+     * 取消，已进入队列的帧继续保存
+     */
+    public void cancel() {
+        Stats stats = null;
+        synchronized (this) {
+            if (cancelled || finished) {
+                return;
+            }
+            cancelled = true;
+            if (executor == null || saved + failed >= captured) {
+                finished = true;
+                if (executor != null) {
+                    executor.shutdown();
+                }
+                stats = getStats();
+            }
+        }
+        if (stats != null && listener != null) {
+            listener.onBurstFinished(stats);
+        }
+    }
+
+    /**
+     * 当前统计
+     */
+    @NonNull
+    public synchronized Stats getStats() {
+        Stats stats = new Stats();
+        stats.requested = count;
+        stats.captured = captured;
+        stats.saved = saved;
+        stats.failed = failed;
+        stats.throttled = throttled;
+        stats.queueDepth = executor == null ? 0 : executor.getQueue().size();
+        stats.maxQueueDepth = maxQueueDepth;
+        stats.captureFps = calculateFps(captured, firstCaptureNanos, lastCaptureNanos);
+        stats.saveFps = calculateFps(saved, firstSaveNanos, lastSaveNanos);
+        stats.elapsedMs = startNanos == 0 ? 0 : (System.nanoTime() - startNanos) / 1000000L;
+        return stats;
+    }
+
+    private static float calculateFps(int frames, long firstNanos, long lastNanos) {
+        if (frames < 2 || lastNanos <= firstNanos) {
+            return 0;
+        }
+        return (frames - 1) * 1000000000f / (lastNanos - firstNanos);
+    }
+
+}
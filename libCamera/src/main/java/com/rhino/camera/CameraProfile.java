@@ -0,0 +1,150 @@
+package com.rhino.camera;
+
+import android.hardware.Camera;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>摄像头性能配置，统一决定预览分辨率、预览帧率范围和录像码率</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class CameraProfile {
+
+    /**
+     * 低功耗分析：小分辨率、低帧率，适合只做识别分析的场景
+     */
+    public static final CameraProfile LOW_POWER = new CameraProfile("low_power", 640, 480, 10, 15, 0.06f);
+    /**
+     * 均衡
+     */
+    public static final CameraProfile BALANCED = new CameraProfile("balanced", 1280, 720, 24, 30, 0.1f);
+    /**
+     * 最大吞吐：大分辨率、固定高帧率
+     */
+    public static final CameraProfile MAX_THROUGHPUT = new CameraProfile("max_throughput", 1920, 1080, 30, 60, 0.15f);
+
+    /**
+     * 最小录像码率
+     */
+    public static final int MIN_VIDEO_BIT_RATE = 256 * 1024;
+
+    /**
+     * 配置名称
+     */
+    public final String name;
+    /**
+     * 期望的预览分辨率宽
+     */
+    public final int previewWidth;
+    /**
+     * 期望的预览分辨率高
+     */
+    public final int previewHeight;
+    /**
+     * 期望的最小帧率
+     */
+    public final int minFps;
+    /**
+     * 期望的最大帧率
+     */
+    public final int maxFps;
+    /**
+     * 录像每个像素占用的比特数，用于计算码率
+     */
+    public final float bitsPerPixel;
+
+    public CameraProfile(@NonNull String name, int previewWidth, int previewHeight, int minFps, int maxFps, float bitsPerPixel) {
+        this.name = name;
+        this.previewWidth = previewWidth;
+        this.previewHeight = previewHeight;
+        this.minFps = minFps;
+        this.maxFps = Math.max(minFps, maxFps);
+        this.bitsPerPixel = bitsPerPixel;
+    }
+
+    /**
+     * 过滤掉像素数超过配置的尺寸，如果全部超过则返回原列表
+     *
+     * @param sizes 摄像头支持的尺寸
+     * @return 不超过配置像素数的尺寸
+     */
+    @NonNull
+    public List<Camera.Size> filterSizes(@NonNull List<Camera.Size> sizes) {
+        return filterSizes(sizes, previewWidth, previewHeight);
+    }
+
+    /**
+     * 过滤掉像素数超过 maxWidth * maxHeight 的尺寸，如果全部超过则返回原列表
+     *
+     * @param sizes     摄像头支持的尺寸
+     * @param maxWidth  最大宽
+     * @param maxHeight 最大高
+     * @return 不超过最大像素数的尺寸
+     */
+    @NonNull
+    public static List<Camera.Size> filterSizes(@NonNull List<Camera.Size> sizes, int maxWidth, int maxHeight) {
+        long maxPixels = (long) maxWidth * maxHeight;
+        List<Camera.Size> result = new ArrayList<>();
+        for (Camera.Size size : sizes) {
+            if ((long) size.width * size.height <= maxPixels) {
+                result.add(size);
+            }
+        }
+        return result.isEmpty() ? sizes : result;
+    }
+
+    /**
+     * 从摄像头支持的帧率范围中选择与配置最接近的范围
+     *
+     * @param supportedRanges Camera.Parameters.getSupportedPreviewFpsRange()，单位为 fps * 1000
+     * @return 选中的帧率范围，null 表示没有可选范围
+     */
+    @Nullable
+    public int[] selectFpsRange(@Nullable List<int[]> supportedRanges) {
+        if (supportedRanges == null || supportedRanges.isEmpty()) {
+            return null;
+        }
+        int[] selectRange = null;
+        long selectScore = Long.MAX_VALUE;
+        for (int[] range : supportedRanges) {
+            int min = range[Camera.Parameters.PREVIEW_FPS_MIN_INDEX];
+            int max = range[Camera.Parameters.PREVIEW_FPS_MAX_INDEX];
+            // 最大帧率的偏差权重更高，最小帧率决定低光下能否降帧
+            long score = 2L * Math.abs(max - maxFps * 1000) + Math.abs(min - minFps * 1000);
+            if (score < selectScore) {
+                selectRange = range;
+                selectScore = score;
+            }
+        }
+        return selectRange;
+    }
+
+    /**
+     * 计算录像码率
+     *
+     * @param width  视频宽
+     * @param height 视频高
+     * @param fps    视频帧率
+     * @return 码率
+     */
+    public int calculateVideoBitRate(int width, int height, int fps) {
+        long bitRate = (long) (bitsPerPixel * width * height * fps);
+        return (int) Math.max(MIN_VIDEO_BIT_RATE, Math.min(Integer.MAX_VALUE, bitRate));
+    }
+
+    @Override
+    public String toString() {
+        return "CameraProfile{" +
+                "name='" + name + '\'' +
+                ", preview=" + previewWidth + "x" + previewHeight +
+                ", fps=" + minFps + "-" + maxFps +
+                ", bitsPerPixel=" + bitsPerPixel +
+                '}';
+    }
+}
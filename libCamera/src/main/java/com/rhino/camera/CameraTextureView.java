@@ -11,6 +11,8 @@ import android.graphics.SurfaceTexture;
 import android.graphics.YuvImage;
 import android.hardware.Camera;
 import android.media.MediaRecorder;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.SparseIntArray;
 import android.view.OrientationEventListener;
@@ -18,11 +20,14 @@ import android.view.Surface;
 import android.view.TextureView;
 
 import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.rhino.camera.utils.BitmapTracker;
+import com.rhino.camera.utils.FrameBufferPool;
+import com.rhino.camera.utils.GrowableByteBuffer;
 import com.rhino.log.LogUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
@@ -32,7 +37,7 @@ import java.util.List;
  * @author LuoLin
  * @since Create on 2019/7/18.
  */
-public class CameraTextureView extends TextureView implements TextureView.SurfaceTextureListener {
+public class CameraTextureView extends TextureView implements TextureView.SurfaceTextureListener, PreviewLoadSupervisor.Target {
 
     public final static String TAG = CameraTextureView.class.getSimpleName();
 
@@ -68,6 +73,14 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
      * 开启预览失败最多重试次数
      */
     private static final int MAX_START_PREVIEW_TRY_COUNT = 3;
+    /**
+     * 预览回调缓冲数，分发完一帧补充一个
+     */
+    private static final int PREVIEW_CALLBACK_BUFFER_COUNT = 3;
+    /**
+     * 连拍队列满时重试拍照的间隔
+     */
+    private static final long BURST_RETRY_DELAY_MS = 10;
     /**
      * 最小摄像头预览分辨率
      */
@@ -121,6 +134,44 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
      * 摄像头预览回调
      */
     private Camera.PreviewCallback previewCallback;
+    /**
+     * 预览帧回调，带旋转和镜像信息
+     */
+    private OnPreviewFrameListener onPreviewFrameListener;
+    private PreviewFrameRing previewFrameRing;
+    private PreviewHistory previewHistory;
+    /**
+     * 预览负载监控，null 不监控
+     */
+    private PreviewLoadSupervisor previewLoadSupervisor;
+    private BurstCapture burstCapture;
+    /**
+     * 每次开始或取消连拍加一，丢弃之前连拍迟到的拍照回调
+     */
+    private int burstGeneration;
+    private final Runnable burstPictureRunnable = new Runnable() {
+        @Override
+        public void run() {
+            takeBurstPicture();
+        }
+    };
+    /**
+     * 预览回调缓冲和预览帧派生数据的缓存池
+     */
+    private final FrameBufferPool frameBufferPool = new FrameBufferPool();
+    /**
+     * 是否已经向摄像头添加了预览回调缓冲，停止预览或关闭摄像头后摄像头清空缓冲，需要重新添加
+     */
+    private boolean previewCallbackBuffersAdded;
+    /**
+     * 分发预览数据的回调
+     */
+    private final Camera.PreviewCallback dispatchPreviewCallback = new Camera.PreviewCallback() {
+        @Override
+        public void onPreviewFrame(byte[] data, Camera camera) {
+            dispatchPreviewFrame(data, camera);
+        }
+    };
     /**
      * 摄像头预览大小
      */
@@ -158,6 +209,11 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
      * 期望的预览分辨率高
      */
     private int expectPreviewHeight = 1080;
+    /**
+     * {@link #setExpectPreviewSize} 设置的期望预览分辨率，{@link #setCameraProfile} 传 null 时恢复
+     */
+    private int defaultExpectPreviewWidth = 1920;
+    private int defaultExpectPreviewHeight = 1080;
 
     /**
      * 期望的拍照分辨率宽
@@ -168,6 +224,21 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
      */
     private int expectPictureHeight = -1;
 
+    /**
+     * 性能配置，null 使用默认配置
+     */
+    @Nullable
+    private CameraProfile cameraProfile;
+    /**
+     * 当前预览帧率范围，单位为 fps * 1000
+     */
+    @Nullable
+    private int[] previewFpsRange;
+    /**
+     * 是否把期望预览分辨率作为上限，动态调整分辨率时需要，否则匹配只按宽高比选最大的尺寸
+     */
+    private boolean limitPreviewSizeToExpect = false;
+
     /**
      * 视频编码
      */
@@ -215,6 +286,14 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
         void onPhoneDegreeChanged(int phoneDegree);
     }
 
+    public interface OnPreviewFrameListener {
+        /**
+         * 预览帧回调，数据为传感器方向，需要转正时调用 {@link PreviewFrame#getRotated()}
+         * 回调返回后帧会被释放，需要异步使用时先调用 {@link PreviewFrame#retain()}
+         */
+        void onPreviewFrame(PreviewFrame frame);
+    }
+
     public CameraTextureView(Context context) {
         super(context);
         init();
@@ -394,13 +473,9 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
      */
     private void setDisplayOrientation() {
         try {
-            if (getResources().getConfiguration().orientation != Configuration.ORIENTATION_LANDSCAPE) {
-                int orientation = isFrontCamera() ? DEGREES_360 - cameraInfo.orientation : cameraInfo.orientation;
-                LogUtils.d(TAG, "初始化摄像头预览扭转角度：cameraInfo.orientation = " + cameraInfo.orientation + ", orientation = " + orientation);
-                camera.setDisplayOrientation(orientation);
-            } else {
-                camera.setDisplayOrientation(0);
-            }
+            int orientation = getDisplayDegree();
+            LogUtils.d(TAG, "初始化摄像头预览扭转角度：cameraInfo.orientation = " + cameraInfo.orientation + ", orientation = " + orientation);
+            camera.setDisplayOrientation(orientation);
         } catch (Exception e) {
             LogUtils.e(TAG, e.toString());
         }
@@ -412,7 +487,7 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
     private void setPreviewSize() {
         try {
             Camera.Parameters params = camera.getParameters();
-            List<Camera.Size> supportedPreviewSizes = params.getSupportedPreviewSizes();
+            List<Camera.Size> supportedPreviewSizes = getCandidatePreviewSizes(params);
             previewSize = getMatchingSize(supportedPreviewSizes, expectPreviewWidth, expectPreviewHeight);
             LogUtils.d(TAG, "最佳preview尺寸 width = " + previewSize.width + ", height = " + previewSize.height);
             params.setPreviewSize(previewSize.width, previewSize.height);
@@ -424,6 +499,43 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
         }
     }
 
+    /**
+     * 获取参与匹配的预览尺寸
+     */
+    private List<Camera.Size> getCandidatePreviewSizes(Camera.Parameters params) {
+        List<Camera.Size> supportedPreviewSizes = params.getSupportedPreviewSizes();
+        if (cameraProfile != null) {
+            supportedPreviewSizes = cameraProfile.filterSizes(supportedPreviewSizes);
+        }
+        if (limitPreviewSizeToExpect) {
+            supportedPreviewSizes = CameraProfile.filterSizes(supportedPreviewSizes, expectPreviewWidth, expectPreviewHeight);
+        }
+        return supportedPreviewSizes;
+    }
+
+    /**
+     * 设置预览帧率范围
+     */
+    private void setPreviewFpsRange() {
+        if (cameraProfile == null) {
+            previewFpsRange = null;
+            return;
+        }
+        try {
+            Camera.Parameters params = camera.getParameters();
+            int[] range = cameraProfile.selectFpsRange(params.getSupportedPreviewFpsRange());
+            if (range != null) {
+                LogUtils.d(TAG, "最佳preview帧率 min = " + range[Camera.Parameters.PREVIEW_FPS_MIN_INDEX] + ", max = " + range[Camera.Parameters.PREVIEW_FPS_MAX_INDEX]);
+                params.setPreviewFpsRange(range[Camera.Parameters.PREVIEW_FPS_MIN_INDEX], range[Camera.Parameters.PREVIEW_FPS_MAX_INDEX]);
+                camera.setParameters(params);
+            }
+            previewFpsRange = range;
+        } catch (Exception e) {
+            previewFpsRange = null;
+            LogUtils.e(TAG, e.toString());
+        }
+    }
+
     /**
      * 设置拍照图片尺寸
      */
@@ -556,6 +668,7 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
             camera.setPreviewTexture(getSurfaceTexture());
             setPreviewSize();
             setPictureSize(previewSize);
+            setPreviewFpsRange();
             setDisplayOrientation();
             setFocusMode();
             setPreviewFormat();
@@ -579,6 +692,7 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
             }
             camera = null;
             isCameraOpened = false;
+            previewCallbackBuffersAdded = false;
         } catch (Exception e) {
             LogUtils.e(TAG, "关闭摄像头失败：" + e.toString());
             return false;
@@ -599,7 +713,7 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
                 if (camera == null) {
                     openCamera();
                 }
-                camera.setPreviewCallback(previewCallback);
+                applyPreviewCallback();
                 camera.startPreview();
                 isStartPreview = true;
                 startPreviewTryCount = 0;
@@ -629,6 +743,7 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
             if (camera != null) {
                 camera.stopPreview();
                 camera.setPreviewCallback(null);
+                previewCallbackBuffersAdded = false;
             }
         } catch (Exception e) {
             LogUtils.e(TAG, "停止预览失败：" + e.toString());
@@ -665,6 +780,38 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
         return (phoneDegree + cameraInfo.orientation) % 360;
     }
 
+    /**
+     * 获取拍照JPEG显示时需要顺时针旋转的角度，前置摄像头拍照数据未镜像，手机方向需要反向计算
+     */
+    public int getPictureRotateDegree() {
+        if (isFrontCamera()) {
+            return (cameraInfo.orientation - phoneDegree + DEGREES_360) % DEGREES_360;
+        }
+        return (cameraInfo.orientation + phoneDegree) % DEGREES_360;
+    }
+
+    /**
+     * 创建 {@link CapturePipeline#OUTPUT_MODE_EXIF} 模式的拍照参数，按摄像头方向、手机方向和前后摄像头写入 EXIF 方向
+     *
+     * @param mirror 前置摄像头是否镜像成与预览一致
+     */
+    @NonNull
+    public CapturePipeline.Request createExifCaptureRequest(boolean mirror) {
+        return new CapturePipeline.Request(getPictureRotateDegree())
+                .setOutputMode(CapturePipeline.OUTPUT_MODE_EXIF)
+                .setMirror(mirror && isFrontCamera());
+    }
+
+    /**
+     * 获取预览显示旋转角度，前置摄像头为镜像后的旋转角度
+     */
+    public int getDisplayDegree() {
+        if (getResources().getConfiguration().orientation != Configuration.ORIENTATION_LANDSCAPE) {
+            return isFrontCamera() ? (DEGREES_360 - cameraInfo.orientation) % DEGREES_360 : cameraInfo.orientation;
+        }
+        return DEGREES_0;
+    }
+
     /**
      * 获取手机方向
      */
@@ -713,8 +860,8 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
             mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.MPEG_4); // 输出格式为mp4
             mediaRecorder.setVideoSize(previewSize.width, previewSize.height); // 视频尺寸
             mediaRecorder.setOutputFile(outPutFilePath);
-            mediaRecorder.setVideoEncodingBitRate(VIDEO_ENCODING_BIT_RATE); //设置视频编码帧率
-            mediaRecorder.setVideoFrameRate(VIDEO_FRAME_RATE); // 视频帧频率
+            mediaRecorder.setVideoEncodingBitRate(getVideoEncodingBitRate()); //设置视频编码帧率
+            mediaRecorder.setVideoFrameRate(getVideoFrameRate()); // 视频帧频率
             mediaRecorder.setAudioSamplingRate(AUDIO_SAMPLING_RATE);
             mediaRecorder.setVideoEncoder(videoEncoder); // 视频编码
             mediaRecorder.setAudioEncoder(audioEncoder); // 音频编码
@@ -788,10 +935,158 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
      * 设置期望预览分辨率，如果摄像头不支持会自动适配最佳分辨率
      */
     public void setExpectPreviewSize(int previewWidth, int previewHeight) {
+        this.defaultExpectPreviewWidth = previewWidth;
+        this.defaultExpectPreviewHeight = previewHeight;
         this.expectPreviewWidth = previewWidth;
         this.expectPreviewHeight = previewHeight;
     }
 
+    /**
+     * 设置性能配置，预览分辨率、预览帧率和录像码率都由配置决定
+     * 如果摄像头已打开：分辨率不变时只更新帧率，分辨率变化时才重启预览
+     *
+     * @param cameraProfile {@link CameraProfile}，null 恢复默认配置
+     * @return true 设置成功，录像中不允许切换
+     */
+    public boolean setCameraProfile(@Nullable CameraProfile cameraProfile) {
+        if (recording) {
+            LogUtils.w(TAG, "录像中不能切换配置");
+            return false;
+        }
+        this.cameraProfile = cameraProfile;
+        if (cameraProfile != null) {
+            expectPreviewWidth = cameraProfile.previewWidth;
+            expectPreviewHeight = cameraProfile.previewHeight;
+        } else {
+            // 恢复 setExpectPreviewSize 设置的分辨率，不再以期望分辨率为上限
+            expectPreviewWidth = defaultExpectPreviewWidth;
+            expectPreviewHeight = defaultExpectPreviewHeight;
+            limitPreviewSizeToExpect = false;
+        }
+        return reconfigurePreviewSize();
+    }
+
+    /**
+     * 按期望分辨率重新匹配预览尺寸，尺寸不变时只更新帧率，尺寸变化时才重启预览
+     */
+    private boolean reconfigurePreviewSize() {
+        if (camera == null) {
+            return true;
+        }
+        try {
+            Camera.Parameters params = camera.getParameters();
+            List<Camera.Size> supportedPreviewSizes = getCandidatePreviewSizes(params);
+            Camera.Size newPreviewSize = getMatchingSize(supportedPreviewSizes, expectPreviewWidth, expectPreviewHeight);
+            if (previewSize != null && newPreviewSize != null
+                    && previewSize.width == newPreviewSize.width && previewSize.height == newPreviewSize.height) {
+                // 分辨率不变，只需要更新帧率，不需要重启预览
+                setPreviewFpsRange();
+                return true;
+            }
+            boolean restartPreview = isStartPreview;
+            if (restartPreview) {
+                stopPreview();
+            }
+            setPreviewSize();
+            setPictureSize(previewSize);
+            setPreviewFpsRange();
+            if (restartPreview) {
+                startPreview();
+            }
+            LogUtils.d(TAG, "预览尺寸切换完成: " + previewSize.width + "x" + previewSize.height);
+            return true;
+        } catch (Exception e) {
+            LogUtils.e(TAG, e.toString());
+        }
+        return false;
+    }
+
+    /**
+     * 重新设置期望预览分辨率并立即生效，可以在预览过程中调用
+     *
+     * @return true 设置成功，录像中不允许切换
+     */
+    public boolean resetExpectPreviewSize(int previewWidth, int previewHeight) {
+        if (recording) {
+            LogUtils.w(TAG, "录像中不能切换预览分辨率");
+            return false;
+        }
+        // 运行时切换，不改变 setExpectPreviewSize 设置的默认分辨率
+        expectPreviewWidth = previewWidth;
+        expectPreviewHeight = previewHeight;
+        limitPreviewSizeToExpect = true;
+        return reconfigurePreviewSize();
+    }
+
+    /**
+     * 供 {@link PreviewLoadSupervisor} 调用，可以在任意线程调用，切换在UI线程执行，结果通过 callback 返回
+     */
+    @Override
+    public void applyExpectPreviewSize(final int previewWidth, final int previewHeight,
+                                       @NonNull final PreviewLoadSupervisor.ApplyCallback callback) {
+        if (recording) {
+            callback.onApplied(false);
+            return;
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            callback.onApplied(resetExpectPreviewSize(previewWidth, previewHeight));
+            return;
+        }
+        boolean posted = post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onApplied(resetExpectPreviewSize(previewWidth, previewHeight));
+            }
+        });
+        if (!posted) {
+            // 未附加到窗口，任务不会执行
+            callback.onApplied(false);
+        }
+    }
+
+    /**
+     * 获取性能配置
+     *
+     * @return {@link CameraProfile}，null 表示默认配置
+     */
+    @Nullable
+    public CameraProfile getCameraProfile() {
+        return cameraProfile;
+    }
+
+    /**
+     * 获取当前预览帧率范围
+     *
+     * @return 帧率范围，单位为 fps * 1000，null 表示摄像头默认帧率
+     */
+    @Nullable
+    public int[] getPreviewFpsRange() {
+        return previewFpsRange;
+    }
+
+    /**
+     * 获取录像帧率
+     */
+    public int getVideoFrameRate() {
+        if (cameraProfile == null) {
+            return VIDEO_FRAME_RATE;
+        }
+        if (previewFpsRange != null) {
+            return Math.min(cameraProfile.maxFps, previewFpsRange[Camera.Parameters.PREVIEW_FPS_MAX_INDEX] / 1000);
+        }
+        return cameraProfile.maxFps;
+    }
+
+    /**
+     * 获取录像码率
+     */
+    public int getVideoEncodingBitRate() {
+        if (cameraProfile == null || previewSize == null) {
+            return VIDEO_ENCODING_BIT_RATE;
+        }
+        return cameraProfile.calculateVideoBitRate(previewSize.width, previewSize.height, getVideoFrameRate());
+    }
+
     /**
      * 设置期望拍照分辨率，如果摄像头不支持会自动适配最佳分辨率
      */
@@ -876,7 +1171,7 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
     }
 
     /**
-     * 设置预览回调
+     * 设置预览回调，data 是复用的回调缓冲，回调返回后会被摄像头重新写入，需要保留时拷贝
      *
      * @param previewCallback Camera.PreviewCallback
      */
@@ -884,6 +1179,126 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
         this.previewCallback = previewCallback;
     }
 
+    /**
+     * 设置预览帧回调，帧数据保持传感器方向，旋转和镜像信息随帧传递
+     *
+     * @param onPreviewFrameListener OnPreviewFrameListener
+     */
+    public void setOnPreviewFrameListener(OnPreviewFrameListener onPreviewFrameListener) {
+        this.onPreviewFrameListener = onPreviewFrameListener;
+    }
+
+    /**
+     * 设置预览帧环形缓存，用于零延迟拍照，需要在开始预览前设置
+     *
+     * @param previewFrameRing PreviewFrameRing, null 不缓存
+     */
+    public void setPreviewFrameRing(@Nullable PreviewFrameRing previewFrameRing) {
+        this.previewFrameRing = previewFrameRing;
+    }
+
+    /**
+     * 设置压缩的预览帧历史，用于事件触发时取回之前几秒的画面，需要在开始预览前设置；
+     * 预览线程只拷贝帧数据，压缩在历史自己的线程中进行，压缩跟不上时丢帧
+     *
+     * @param previewHistory PreviewHistory, null 不保存
+     */
+    public void setPreviewHistory(@Nullable PreviewHistory previewHistory) {
+        this.previewHistory = previewHistory;
+    }
+
+    /**
+     * 设置预览负载监控，默认不监控。每帧分发的耗时作为处理耗时，持续跟不上帧率时通过
+     * {@link #applyExpectPreviewSize(int, int, PreviewLoadSupervisor.ApplyCallback)} 降低预览分辨率，负载恢复后再升高。
+     * 只统计预览回调中同步完成的处理，需要有预览数据的使用者才会回调
+     *
+     * @param previewLoadSupervisor 以本控件为 Target 创建的 PreviewLoadSupervisor，null 不监控
+     */
+    public void setPreviewLoadSupervisor(@Nullable PreviewLoadSupervisor previewLoadSupervisor) {
+        this.previewLoadSupervisor = previewLoadSupervisor;
+    }
+
+    /**
+     * 零延迟拍照，从预览帧缓存中取帧，不调用 takePicture，预览不会停顿
+     *
+     * @param sharpest       true 取最清晰的一帧，false 取最接近 timestampNanos 的一帧
+     * @param timestampNanos 点击时间，System.nanoTime()
+     * @return 增加引用后的帧，使用完需要 {@link PreviewFrame#release()}，没有缓存返回 null
+     */
+    @Nullable
+    public PreviewFrame takeZeroShutterLagFrame(boolean sharpest, long timestampNanos) {
+        if (previewFrameRing == null) {
+            return null;
+        }
+        return sharpest ? previewFrameRing.getSharpest() : previewFrameRing.getClosest(timestampNanos);
+    }
+
+    /**
+     * 获取预览帧派生数据的缓存池
+     */
+    public FrameBufferPool getFrameBufferPool() {
+        return frameBufferPool;
+    }
+
+    /**
+     * 是否有预览数据的使用者
+     */
+    private boolean hasPreviewConsumer() {
+        return previewCallback != null || onPreviewFrameListener != null || previewFrameRing != null || previewHistory != null
+                || isPreviewBurst();
+    }
+
+    /**
+     * 分发预览数据
+     */
+    private void dispatchPreviewFrame(byte[] data, Camera camera) {
+        PreviewLoadSupervisor supervisor = previewLoadSupervisor;
+        long arrivalNanos = supervisor != null ? supervisor.onFrameArrived() : 0;
+        try {
+            dispatchPreviewBuffer(data, camera);
+        } finally {
+            addPreviewCallbackBuffer(camera);
+            if (supervisor != null) {
+                supervisor.onFrameProcessed(arrivalNanos);
+            }
+        }
+    }
+
+    /**
+     * 分发一个回调缓冲，分发完成后缓冲归还到 {@link #frameBufferPool}；被保留的帧在最后一次 release 时归还
+     */
+    private void dispatchPreviewBuffer(byte[] data, Camera camera) {
+        if (previewCallback != null) {
+            previewCallback.onPreviewFrame(data, camera);
+        }
+        if ((onPreviewFrameListener != null || previewFrameRing != null || previewHistory != null || isPreviewBurst())
+                && previewSize != null && cameraInfo != null) {
+            PreviewFrame frame = new PreviewFrame(data, previewSize.width, previewSize.height,
+                    getRotateDegree(), isFrontCamera(), getDisplayDegree(), System.nanoTime(), frameBufferPool, true);
+            try {
+                if (previewFrameRing != null) {
+                    previewFrameRing.add(frame);
+                }
+                if (previewHistory != null) {
+                    previewHistory.offer(frame);
+                }
+                BurstCapture burst = burstCapture;
+                if (burst != null && burst.getSource() == BurstCapture.SOURCE_PREVIEW
+                        && burst.offerPreviewFrame(frame) && burst.isCaptureComplete()) {
+                    // 采集完成，没有其他使用者时停止预览回调
+                    updatePreviewCallback();
+                }
+                if (onPreviewFrameListener != null) {
+                    onPreviewFrameListener.onPreviewFrame(frame);
+                }
+            } finally {
+                frame.release();
+            }
+        } else {
+            frameBufferPool.recycle(data);
+        }
+    }
+
     /**
      * 获取Camera
      *
@@ -965,6 +1380,143 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
         }
     }
 
+    /**
+     * 拍照，拍照数据交给 {@link CapturePipeline} 异步处理，回调返回后立即恢复预览
+     *
+     * @param pipeline CapturePipeline
+     * @param request  处理参数，null 按 {@link #getRotateDegree()} 旋转、不裁剪
+     * @param callback 处理结果回调，在流水线线程中回调
+     */
+    public void takePicture(@NonNull final CapturePipeline pipeline, @Nullable final CapturePipeline.Request request,
+                            @Nullable final CapturePipeline.Callback callback) {
+        final CapturePipeline.Request captureRequest = request != null ? request : new CapturePipeline.Request(getRotateDegree());
+        takePicture(new Camera.PictureCallback() {
+            @Override
+            public void onPictureTaken(byte[] data, Camera camera) {
+                pipeline.submit(data, captureRequest, callback);
+                startPreview();
+            }
+        });
+    }
+
+    /**
+     * 开始连拍，之前的连拍会被取消
+     *
+     * @param burst BurstCapture
+     */
+    public void startBurst(@NonNull BurstCapture burst) {
+        stopBurst();
+        burstCapture = burst;
+        burstGeneration++;
+        burst.start();
+        if (burst.getSource() == BurstCapture.SOURCE_PREVIEW) {
+            updatePreviewCallback();
+        } else {
+            takeBurstPicture();
+        }
+    }
+
+    /**
+     * 取消连拍，已采集的帧继续保存
+     */
+    public void stopBurst() {
+        BurstCapture burst = burstCapture;
+        if (burst == null) {
+            return;
+        }
+        burstCapture = null;
+        burstGeneration++;
+        removeCallbacks(burstPictureRunnable);
+        burst.cancel();
+        updatePreviewCallback();
+    }
+
+    /**
+     * 是否正在从预览帧连拍
+     */
+    private boolean isPreviewBurst() {
+        BurstCapture burst = burstCapture;
+        return burst != null && burst.getSource() == BurstCapture.SOURCE_PREVIEW && !burst.isCaptureComplete();
+    }
+
+    /**
+     * 预览中按当前使用者重新设置预览回调
+     */
+    private void updatePreviewCallback() {
+        try {
+            if (camera != null && isStartPreview) {
+                applyPreviewCallback();
+            }
+        } catch (Exception e) {
+            LogUtils.e(TAG, e.toString());
+        }
+    }
+
+    /**
+     * 有使用者时通过 setPreviewCallbackWithBuffer 接收预览数据，缓冲从 {@link #frameBufferPool} 取，每帧分发后归还再补充，
+     * 稳态下不再为预览帧分配数组；没有使用者时取消回调
+     */
+    private void applyPreviewCallback() {
+        if (!hasPreviewConsumer() || previewSize == null) {
+            camera.setPreviewCallbackWithBuffer(null);
+            previewCallbackBuffersAdded = false;
+            return;
+        }
+        camera.setPreviewCallbackWithBuffer(dispatchPreviewCallback);
+        if (!previewCallbackBuffersAdded) {
+            previewCallbackBuffersAdded = true;
+            for (int i = 0; i < PREVIEW_CALLBACK_BUFFER_COUNT; i++) {
+                addPreviewCallbackBuffer(camera);
+            }
+        }
+    }
+
+    /**
+     * 向摄像头补充一个当前预览尺寸的回调缓冲，缓冲用完时摄像头丢帧，补充后恢复回调
+     */
+    private void addPreviewCallbackBuffer(Camera camera) {
+        if (previewCallbackBuffersAdded && previewSize != null) {
+            camera.addCallbackBuffer(frameBufferPool.obtainBytes(previewSize.width * previewSize.height * 3 / 2));
+        }
+    }
+
+    /**
+     * 连拍中拍一张，队列满时推迟，拍完后按间隔安排下一张；拍照失败记一帧失败后按间隔继续
+     */
+    private void takeBurstPicture() {
+        final BurstCapture burst = burstCapture;
+        if (burst == null || burst.isCaptureComplete()) {
+            return;
+        }
+        if (camera == null || !burst.acquireQueueSpace()) {
+            postDelayed(burstPictureRunnable, BURST_RETRY_DELAY_MS);
+            return;
+        }
+        final long start = SystemClock.uptimeMillis();
+        final int rotateDegree = getPictureRotateDegree();
+        final int generation = burstGeneration;
+        try {
+            camera.takePicture(null, null, new Camera.PictureCallback() {
+                @Override
+                public void onPictureTaken(byte[] data, Camera camera) {
+                    burst.offerJpeg(data, rotateDegree);
+                    startPreview();
+                    if (generation != burstGeneration) {
+                        // 连拍已取消或重新开始，不再安排下一张
+                        return;
+                    }
+                    long delay = burst.getIntervalMs() - (SystemClock.uptimeMillis() - start);
+                    postDelayed(burstPictureRunnable, Math.max(0, delay));
+                }
+            });
+        } catch (Exception e) {
+            // 不经过 takePicture(callback)，那里吞掉异常后不会再回调，连拍会停住
+            LogUtils.e(TAG, e.toString());
+            burst.onCaptureFailed();
+            postDelayed(burstPictureRunnable, Math.max(BURST_RETRY_DELAY_MS, burst.getIntervalMs()));
+        }
+    }
+
     /**
      * 抓取预览图片
      *
@@ -973,20 +1525,25 @@ public class CameraTextureView extends TextureView implements TextureView.Surfac
      */
     @Nullable
     public Bitmap takePreviewPicture(byte[] data) {
+        GrowableByteBuffer out = GrowableByteBuffer.obtain();
         try {
             final Camera.Parameters parameters = camera.getParameters();
             int width = parameters.getPreviewSize().width;
             int height = parameters.getPreviewSize().height;
             YuvImage yuv = new YuvImage(data, parameters.getPreviewFormat(), width, height, null);
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
             yuv.compressToJpeg(new Rect(0, 0, width, height), 100, out);
-            byte[] bytes = out.toByteArray();
-            Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+            Bitmap bitmap = BitmapFactory.decodeByteArray(out.getBuffer(), 0, out.size());
             Matrix matrix = new Matrix();
             matrix.postRotate(getCameraOrientation());
-            return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+            Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+            if (rotated != bitmap) {
+                bitmap.recycle();
+            }
+            return BitmapTracker.track(rotated, "CameraTextureView.takePreviewPicture");
         } catch (Exception e) {
             LogUtils.e(TAG, e.toString());
+        } finally {
+            out.recycle();
         }
         return null;
     }
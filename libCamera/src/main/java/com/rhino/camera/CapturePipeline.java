@@ -0,0 +1,648 @@
+package com.rhino.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.rhino.camera.utils.BitmapPool;
+import com.rhino.camera.utils.BitmapUtils;
+import com.rhino.camera.utils.GrowableByteBuffer;
+import com.rhino.camera.utils.JpegExifWriter;
+import com.rhino.camera.utils.JpegTransformer;
+import com.rhino.log.LogUtils;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>拍照后处理流水线：解码 → 旋转裁剪 → 编码 → 保存，每个阶段一个线程</p>
+ * <p>同时处理的拍照数量有上限，超过上限的拍照直接失败，保证连拍时内存有上限</p>
+ * <p>{@link #OUTPUT_MODE_EXIF} 模式不解码像素，只写入 EXIF 方向后直接保存摄像头返回的JPEG；
+ * {@link #OUTPUT_MODE_LOSSLESS} 模式在 DCT 系数上旋转裁剪，不重新压缩</p>
+ * <p>解码和旋转裁剪的 Bitmap 从 {@link BitmapPool} 取出，编码后归还，连拍时不再每张分配新的 Bitmap</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class CapturePipeline {
+
+    private static final String TAG = CapturePipeline.class.getSimpleName();
+
+    /**
+     * 默认同时处理的拍照数量
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 2;
+    /**
+     * 输出模式：解码后旋转裁剪像素，重新编码保存
+     */
+    public static final int OUTPUT_MODE_PIXELS = 0;
+    /**
+     * 输出模式：不解码，原JPEG写入 EXIF Orientation 后保存，不支持裁剪和质量设置
+     */
+    public static final int OUTPUT_MODE_EXIF = 1;
+    /**
+     * 输出模式：不解码，用 {@link JpegTransformer} 无损旋转裁剪，裁剪区域对齐到 MCU 边界，不支持质量设置
+     */
+    public static final int OUTPUT_MODE_LOSSLESS = 2;
+
+    /**
+     * 拍照处理参数
+     */
+    public static class Request {
+        /**
+         * 顺时针旋转角度
+         */
+        public int rotateDegree;
+        /**
+         * 按比例居中裁剪的宽，小于等于0不裁剪
+         */
+        public int cropWidth;
+        /**
+         * 按比例居中裁剪的高，小于等于0不裁剪
+         */
+        public int cropHeight;
+        /**
+         * 保存质量
+         */
+        public int quality = 100;
+        /**
+         * 保存路径，null 保存到相册目录
+         */
+        @Nullable
+        public String outputPath;
+        /**
+         * 输出模式 {@link #OUTPUT_MODE_PIXELS}, {@link #OUTPUT_MODE_EXIF} or {@link #OUTPUT_MODE_LOSSLESS}
+         */
+        public int outputMode = OUTPUT_MODE_PIXELS;
+        /**
+         * 旋转后是否水平镜像，只在 {@link #OUTPUT_MODE_EXIF} 模式下有效
+         */
+        public boolean mirror;
+
+        public Request(int rotateDegree) {
+            this.rotateDegree = rotateDegree;
+        }
+
+        public Request setOutputMode(int outputMode) {
+            this.outputMode = outputMode;
+            return this;
+        }
+
+        public Request setMirror(boolean mirror) {
+            this.mirror = mirror;
+            return this;
+        }
+
+        public Request setCropScale(int cropWidth, int cropHeight) {
+            this.cropWidth = cropWidth;
+            this.cropHeight = cropHeight;
+            return this;
+        }
+
+        public Request setQuality(int quality) {
+            this.quality = quality;
+            return this;
+        }
+
+        public Request setOutputPath(@Nullable String outputPath) {
+            this.outputPath = outputPath;
+            return this;
+        }
+    }
+
+    /**
+     * 拍照处理结果，包含各阶段耗时
+     */
+    public static class Result {
+        public String filePath;
+        public int width;
+        public int height;
+        public long decodeMs;
+        public long transformMs;
+        public long encodeMs;
+        public long persistMs;
+        /**
+         * 提交到完成的总耗时，包含排队时间
+         */
+        public long totalMs;
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "filePath='" + filePath + '\'' +
+                    ", size=" + width + "x" + height +
+                    ", decodeMs=" + decodeMs +
+                    ", transformMs=" + transformMs +
+                    ", encodeMs=" + encodeMs +
+                    ", persistMs=" + persistMs +
+                    ", totalMs=" + totalMs +
+                    '}';
+        }
+    }
+
+    /**
+     * 处理结果回调，在流水线线程中回调
+     */
+    public interface Callback {
+        void onCaptureSuccess(@NonNull Result result);
+
+        void onCaptureFailed(@NonNull Exception e);
+    }
+
+    private final ExecutorService decodeExecutor = newStageExecutor("capture-decode");
+    private final ExecutorService transformExecutor = newStageExecutor("capture-transform");
+    private final ExecutorService encodeExecutor = newStageExecutor("capture-encode");
+    private final ExecutorService persistExecutor = newStageExecutor("capture-persist");
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final BitmapPool bitmapPool;
+
+    public CapturePipeline() {
+        this(DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param maxInFlight 同时处理的拍照数量上限
+     */
+    public CapturePipeline(int maxInFlight) {
+        // 一张拍照的解码图和旋转裁剪图都要能放进池中，预算比默认池大
+        this(maxInFlight, new BitmapPool(Runtime.getRuntime().maxMemory() / 4));
+    }
+
+    /**
+     * @param maxInFlight 同时处理的拍照数量上限
+     * @param bitmapPool  解码和旋转裁剪复用的 Bitmap 池
+     */
+    public CapturePipeline(int maxInFlight, @NonNull BitmapPool bitmapPool) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.inFlight = new Semaphore(this.maxInFlight);
+        this.bitmapPool = bitmapPool;
+    }
+
+    @NonNull
+    public BitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    /**
+     * 当前正在处理的拍照数量
+     */
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * 提交拍照数据
+     *
+     * @param jpeg     摄像头返回的JPEG数据
+     * @param request  处理参数
+     * @param callback 回调，可以为null
+     * @return Future，超过同时处理上限时立即失败
+     */
+    @NonNull
+    public Future<Result> submit(@NonNull byte[] jpeg, @NonNull Request request, @Nullable Callback callback) {
+        CaptureFuture future = new CaptureFuture(callback);
+        if (!inFlight.tryAcquire()) {
+            future.setException(new RejectedExecutionException("too many captures in flight: " + maxInFlight));
+            return future;
+        }
+        try {
+            if (request.outputMode == OUTPUT_MODE_EXIF) {
+                encodeExecutor.execute(new ExifStage(jpeg, request, future));
+            } else if (request.outputMode == OUTPUT_MODE_LOSSLESS) {
+                transformExecutor.execute(new LosslessStage(jpeg, request, future));
+            } else {
+                decodeExecutor.execute(new DecodeStage(jpeg, request, future));
+            }
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            future.setException(e);
+        }
+        return future;
+    }
+
+    /**
+     * 停止流水线，已提交的拍照会继续处理完
+     */
+    public void shutdown() {
+        decodeExecutor.shutdown();
+        transformExecutor.shutdown();
+        encodeExecutor.shutdown();
+        persistExecutor.shutdown();
+    }
+
+    private static ExecutorService newStageExecutor(final String name) {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable r) {
+                        Thread thread = new Thread(r, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * 按比例居中裁剪并旋转，只创建一个Bitmap
+     * 居中裁剪在旋转前后都是居中的，先在源图上算出裁剪区域，再一次完成裁剪和旋转；
+     * 旋转角度是90的倍数时目标从 pool 取出，按像素边界对齐绘制，不需要插值
+     */
+    @NonNull
+    static Bitmap rotateAndCropCenter(@NonNull Bitmap bitmap, int rotateDegree, int cropWidth, int cropHeight,
+                                      @NonNull BitmapPool pool) {
+        boolean swap = rotateDegree == 90 || rotateDegree == 270;
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int rotatedWidth = swap ? height : width;
+        int rotatedHeight = swap ? width : height;
+        int[] destSize = calculateCropCenterSize(rotatedWidth, rotatedHeight, cropWidth, cropHeight);
+        int destWidth = destSize[0];
+        int destHeight = destSize[1];
+        int srcWidth = swap ? destHeight : destWidth;
+        int srcHeight = swap ? destWidth : destHeight;
+        int left = (width - srcWidth) / 2;
+        int top = (height - srcHeight) / 2;
+        if (rotateDegree % 360 == 0 && srcWidth == width && srcHeight == height) {
+            return bitmap;
+        }
+        Matrix matrix = new Matrix();
+        if (rotateDegree % 90 != 0) {
+            matrix.postRotate(rotateDegree);
+            return Bitmap.createBitmap(bitmap, left, top, srcWidth, srcHeight, matrix, true);
+        }
+        // 裁剪区域中心移到原点，旋转后移到目标中心
+        matrix.setTranslate(-left - srcWidth / 2f, -top - srcHeight / 2f);
+        matrix.postRotate(rotateDegree);
+        matrix.postTranslate(destWidth / 2f, destHeight / 2f);
+        Bitmap.Config config = bitmap.getConfig() != null ? bitmap.getConfig() : Bitmap.Config.ARGB_8888;
+        Bitmap destBitmap = bitmap.hasAlpha()
+                ? pool.get(destWidth, destHeight, config)
+                : pool.getDirty(destWidth, destHeight, config);
+        new Canvas(destBitmap).drawBitmap(bitmap, matrix, null);
+        return destBitmap;
+    }
+
+    /**
+     * 按比例居中裁剪后的宽高，与 BitmapUtils.cropCenterByScale 一致
+     *
+     * @return {宽, 高}，cropWidth 或 cropHeight 小于等于0时不裁剪
+     */
+    @NonNull
+    static int[] calculateCropCenterSize(int width, int height, int cropWidth, int cropHeight) {
+        if (cropWidth <= 0 || cropHeight <= 0) {
+            return new int[]{width, height};
+        }
+        int rWidth = (int) (1.0f * height / cropHeight * cropWidth);
+        int rHeight = (int) (1.0f * width / cropWidth * cropHeight);
+        if (rWidth < width) {
+            return new int[]{rWidth, height};
+        }
+        return new int[]{width, rHeight};
+    }
+
+    private final class DecodeStage implements Runnable {
+        private final byte[] jpeg;
+        private final Request request;
+        private final CaptureFuture future;
+
+        DecodeStage(byte[] jpeg, Request request, CaptureFuture future) {
+            this.jpeg = jpeg;
+            this.request = request;
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            if (future.isCancelled()) {
+                inFlight.release();
+                return;
+            }
+            try {
+                long start = System.currentTimeMillis();
+                Bitmap bitmap = bitmapPool.decodeByteArray(jpeg, 0, jpeg.length, null);
+                if (bitmap == null) {
+                    throw new IOException("decode jpeg failed");
+                }
+                future.result.decodeMs = System.currentTimeMillis() - start;
+                transformExecutor.execute(new TransformStage(bitmap, request, future));
+            } catch (Exception e) {
+                fail(future, e);
+            }
+        }
+    }
+
+    private final class TransformStage implements Runnable {
+        private final Bitmap bitmap;
+        private final Request request;
+        private final CaptureFuture future;
+
+        TransformStage(Bitmap bitmap, Request request, CaptureFuture future) {
+            this.bitmap = bitmap;
+            this.request = request;
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            if (future.isCancelled()) {
+                bitmapPool.put(bitmap);
+                inFlight.release();
+                return;
+            }
+            Bitmap destBitmap = null;
+            try {
+                long start = System.currentTimeMillis();
+                destBitmap = rotateAndCropCenter(bitmap, request.rotateDegree, request.cropWidth, request.cropHeight, bitmapPool);
+                if (destBitmap != bitmap) {
+                    bitmapPool.put(bitmap);
+                }
+                future.result.width = destBitmap.getWidth();
+                future.result.height = destBitmap.getHeight();
+                future.result.transformMs = System.currentTimeMillis() - start;
+                encodeExecutor.execute(new EncodeStage(destBitmap, request, future));
+            } catch (Exception e) {
+                // 变换成功后源图已归还，只归还 destBitmap
+                bitmapPool.put(destBitmap != null ? destBitmap : bitmap);
+                fail(future, e);
+            }
+        }
+    }
+
+    private final class EncodeStage implements Runnable {
+        private final Bitmap bitmap;
+        private final Request request;
+        private final CaptureFuture future;
+
+        EncodeStage(Bitmap bitmap, Request request, CaptureFuture future) {
+            this.bitmap = bitmap;
+            this.request = request;
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (future.isCancelled()) {
+                    inFlight.release();
+                    return;
+                }
+                long start = System.currentTimeMillis();
+                // 编码到池中的缓冲，保存时直接写内部数组，不再拷贝
+                GrowableByteBuffer out = GrowableByteBuffer.obtain();
+                try {
+                    if (!bitmap.compress(Bitmap.CompressFormat.JPEG, request.quality, out)) {
+                        throw new IOException("encode jpeg failed");
+                    }
+                    future.result.encodeMs = System.currentTimeMillis() - start;
+                    persistExecutor.execute(new PersistStage(out.getBuffer(), out.size(), out, request, future));
+                } catch (Exception e) {
+                    out.recycle();
+                    throw e;
+                }
+            } catch (Exception e) {
+                fail(future, e);
+            } finally {
+                bitmapPool.put(bitmap);
+            }
+        }
+    }
+
+    private final class ExifStage implements Runnable {
+        private final byte[] jpeg;
+        private final Request request;
+        private final CaptureFuture future;
+
+        ExifStage(byte[] jpeg, Request request, CaptureFuture future) {
+            this.jpeg = jpeg;
+            this.request = request;
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            if (future.isCancelled()) {
+                inFlight.release();
+                return;
+            }
+            try {
+                long start = System.currentTimeMillis();
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+                boolean swap = request.rotateDegree == 90 || request.rotateDegree == 270;
+                future.result.width = swap ? options.outHeight : options.outWidth;
+                future.result.height = swap ? options.outWidth : options.outHeight;
+                byte[] dest = JpegExifWriter.setOrientation(jpeg,
+                        JpegExifWriter.toExifOrientation(request.rotateDegree, request.mirror));
+                future.result.encodeMs = System.currentTimeMillis() - start;
+                persistExecutor.execute(new PersistStage(dest, dest.length, null, request, future));
+            } catch (Exception e) {
+                fail(future, e);
+            }
+        }
+    }
+
+    private final class LosslessStage implements Runnable {
+        private final byte[] jpeg;
+        private final Request request;
+        private final CaptureFuture future;
+
+        LosslessStage(byte[] jpeg, Request request, CaptureFuture future) {
+            this.jpeg = jpeg;
+            this.request = request;
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            if (future.isCancelled()) {
+                inFlight.release();
+                return;
+            }
+            try {
+                long start = System.currentTimeMillis();
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inJustDecodeBounds = true;
+                BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length, options);
+                boolean swap = request.rotateDegree == 90 || request.rotateDegree == 270;
+                int rotatedWidth = swap ? options.outHeight : options.outWidth;
+                int rotatedHeight = swap ? options.outWidth : options.outHeight;
+                int[] destSize = calculateCropCenterSize(rotatedWidth, rotatedHeight, request.cropWidth, request.cropHeight);
+                GrowableByteBuffer out = GrowableByteBuffer.obtain();
+                try {
+                    JpegTransformer.transform(jpeg, request.rotateDegree, (rotatedWidth - destSize[0]) / 2,
+                            (rotatedHeight - destSize[1]) / 2, destSize[0], destSize[1], out);
+                    future.result.width = destSize[0];
+                    future.result.height = destSize[1];
+                    future.result.transformMs = System.currentTimeMillis() - start;
+                    persistExecutor.execute(new PersistStage(out.getBuffer(), out.size(), out, request, future));
+                } catch (Exception e) {
+                    out.recycle();
+                    throw e;
+                }
+            } catch (Exception e) {
+                fail(future, e);
+            }
+        }
+    }
+
+    private final class PersistStage implements Runnable {
+        private final byte[] jpeg;
+        private final int length;
+        /**
+         * jpeg 所在的缓冲，保存后归还，null 不需要归还
+         */
+        @Nullable
+        private final GrowableByteBuffer buffer;
+        private final Request request;
+        private final CaptureFuture future;
+
+        PersistStage(byte[] jpeg, int length, @Nullable GrowableByteBuffer buffer, Request request, CaptureFuture future) {
+            this.jpeg = jpeg;
+            this.length = length;
+            this.buffer = buffer;
+            this.request = request;
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long start = System.currentTimeMillis();
+                String filePath;
+                if (request.outputPath == null) {
+                    filePath = BitmapUtils.saveBytes(jpeg, length);
+                } else {
+                    filePath = BitmapUtils.saveBytes(jpeg, length, request.outputPath) ? request.outputPath : null;
+                }
+                if (filePath == null) {
+                    throw new IOException("save jpeg failed");
+                }
+                future.result.filePath = filePath;
+                future.result.persistMs = System.currentTimeMillis() - start;
+                future.result.totalMs = System.currentTimeMillis() - future.submitTime;
+            } catch (Exception e) {
+                fail(future, e);
+                return;
+            } finally {
+                if (buffer != null) {
+                    buffer.recycle();
+                }
+            }
+            LogUtils.d(TAG, "拍照处理完成: " + future.result);
+            inFlight.release();
+            future.set(future.result);
+        }
+    }
+
+    private void fail(CaptureFuture future, Exception e) {
+        LogUtils.e(TAG, "拍照处理失败: " + e.toString());
+        inFlight.release();
+        future.setException(e);
+    }
+
+    /**
+     * 拍照处理的Future
+     */
+    private static final class CaptureFuture implements Future<Result> {
+        private static final int STATE_RUNNING = 0;
+        private static final int STATE_DONE = 1;
+        private static final int STATE_CANCELLED = 2;
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final AtomicInteger state = new AtomicInteger(STATE_RUNNING);
+        private final long submitTime = System.currentTimeMillis();
+        private final Result result = new Result();
+        @Nullable
+        private final Callback callback;
+        private Exception exception;
+
+        CaptureFuture(@Nullable Callback callback) {
+            this.callback = callback;
+        }
+
+        void set(Result result) {
+            if (state.compareAndSet(STATE_RUNNING, STATE_DONE)) {
+                latch.countDown();
+                if (callback != null) {
+                    callback.onCaptureSuccess(result);
+                }
+            }
+        }
+
+        void setException(Exception e) {
+            if (state.compareAndSet(STATE_RUNNING, STATE_DONE)) {
+                exception = e;
+                latch.countDown();
+                if (callback != null) {
+                    callback.onCaptureFailed(e);
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (state.compareAndSet(STATE_RUNNING, STATE_CANCELLED)) {
+                latch.countDown();
+                if (callback != null) {
+                    // 取消也要通知，否则等待回调的调用方不会结束
+                    callback.onCaptureFailed(new CancellationException("capture cancelled"));
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        @Override
+        public boolean isDone() {
+            return state.get() != STATE_RUNNING;
+        }
+
+        @Override
+        public Result get() throws InterruptedException, ExecutionException {
+            latch.await();
+            return getResult();
+        }
+
+        @Override
+        public Result get(long timeout, @NonNull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!latch.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return getResult();
+        }
+
+        private Result getResult() throws ExecutionException {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            if (exception != null) {
+                throw new ExecutionException(exception);
+            }
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.rhino.camera;
+
+import android.graphics.Matrix;
+import android.graphics.PointF;
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+
+/**
+ * <p>帧坐标变换，把识别结果的点和矩形从帧坐标映射到控件坐标</p>
+ * <p>x' = scaleX * x + skewX * y + translateX, y' = skewY * x + scaleY * y + translateY</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class FrameCoordinateTransform {
+
+    private float scaleX = 1;
+    private float skewX = 0;
+    private float translateX = 0;
+    private float skewY = 0;
+    private float scaleY = 1;
+    private float translateY = 0;
+
+    public FrameCoordinateTransform() {
+    }
+
+    private FrameCoordinateTransform(float scaleX, float skewX, float translateX, float skewY, float scaleY, float translateY) {
+        this.scaleX = scaleX;
+        this.skewX = skewX;
+        this.translateX = translateX;
+        this.skewY = skewY;
+        this.scaleY = scaleY;
+        this.translateY = translateY;
+    }
+
+    /**
+     * 帧坐标到控件坐标的变换
+     *
+     * @param frameWidth   帧宽
+     * @param frameHeight  帧高
+     * @param rotateDegree 顺时针旋转角度，0/90/180/270
+     * @param mirror       旋转前是否水平镜像
+     * @param viewWidth    控件宽
+     * @param viewHeight   控件高
+     * @return FrameCoordinateTransform
+     */
+    @NonNull
+    public static FrameCoordinateTransform create(int frameWidth, int frameHeight, int rotateDegree, boolean mirror, int viewWidth, int viewHeight) {
+        FrameCoordinateTransform transform = new FrameCoordinateTransform();
+        if (mirror) {
+            transform.postConcat(new FrameCoordinateTransform(-1, 0, frameWidth, 0, 1, 0));
+        }
+        transform.postRotate(frameWidth, frameHeight, rotateDegree);
+        boolean swap = rotateDegree == 90 || rotateDegree == 270;
+        int rotatedWidth = swap ? frameHeight : frameWidth;
+        int rotatedHeight = swap ? frameWidth : frameHeight;
+        transform.postConcat(new FrameCoordinateTransform(1f * viewWidth / rotatedWidth, 0, 0, 0, 1f * viewHeight / rotatedHeight, 0));
+        return transform;
+    }
+
+    /**
+     * 在当前变换之后顺时针旋转
+     *
+     * @param width  旋转前的宽
+     * @param height 旋转前的高
+     * @param degree 顺时针旋转角度，0/90/180/270
+     */
+    public void postRotate(int width, int height, int degree) {
+        switch ((degree % 360 + 360) % 360) {
+            case 90:
+                // (x, y) -> (height - y, x)
+                postConcat(new FrameCoordinateTransform(0, -1, height, 1, 0, 0));
+                break;
+            case 180:
+                // (x, y) -> (width - x, height - y)
+                postConcat(new FrameCoordinateTransform(-1, 0, width, 0, -1, height));
+                break;
+            case 270:
+                // (x, y) -> (y, width - x)
+                postConcat(new FrameCoordinateTransform(0, 1, 0, -1, 0, width));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 在当前变换之后再执行 other
+     */
+    public void postConcat(@NonNull FrameCoordinateTransform other) {
+        float a = other.scaleX * scaleX + other.skewX * skewY;
+        float b = other.scaleX * skewX + other.skewX * scaleY;
+        float tx = other.scaleX * translateX + other.skewX * translateY + other.translateX;
+        float c = other.skewY * scaleX + other.scaleY * skewY;
+        float d = other.skewY * skewX + other.scaleY * scaleY;
+        float ty = other.skewY * translateX + other.scaleY * translateY + other.translateY;
+        scaleX = a;
+        skewX = b;
+        translateX = tx;
+        skewY = c;
+        scaleY = d;
+        translateY = ty;
+    }
+
+    /**
+     * 逆变换，控件坐标映射回帧坐标
+     */
+    @NonNull
+    public FrameCoordinateTransform invert() {
+        float det = scaleX * scaleY - skewX * skewY;
+        if (det == 0) {
+            throw new IllegalStateException("transform is not invertible");
+        }
+        float a = scaleY / det;
+        float b = -skewX / det;
+        float c = -skewY / det;
+        float d = scaleX / det;
+        return new FrameCoordinateTransform(a, b, -(a * translateX + b * translateY),
+                c, d, -(c * translateX + d * translateY));
+    }
+
+    /**
+     * 映射点，pts 为 x0, y0, x1, y1 ...，结果写回 pts
+     */
+    public void mapPoints(@NonNull float[] pts) {
+        for (int i = 0; i + 1 < pts.length; i += 2) {
+            float x = pts[i];
+            float y = pts[i + 1];
+            pts[i] = scaleX * x + skewX * y + translateX;
+            pts[i + 1] = skewY * x + scaleY * y + translateY;
+        }
+    }
+
+    /**
+     * 映射点
+     */
+    @NonNull
+    public PointF mapPoint(float x, float y) {
+        return new PointF(scaleX * x + skewX * y + translateX, skewY * x + scaleY * y + translateY);
+    }
+
+    /**
+     * 映射矩形，结果写回 rect
+     */
+    public void mapRect(@NonNull RectF rect) {
+        float[] pts = {rect.left, rect.top, rect.right, rect.bottom};
+        mapPoints(pts);
+        rect.set(Math.min(pts[0], pts[2]), Math.min(pts[1], pts[3]), Math.max(pts[0], pts[2]), Math.max(pts[1], pts[3]));
+    }
+
+    /**
+     * 转为 Matrix，方便 Canvas 绘制
+     */
+    @NonNull
+    public Matrix toMatrix() {
+        Matrix matrix = new Matrix();
+        matrix.setValues(new float[]{scaleX, skewX, translateX, skewY, scaleY, translateY, 0, 0, 1});
+        return matrix;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.rhino.camera;
+
+import androidx.annotation.NonNull;
+
+import com.rhino.camera.utils.FrameBufferPool;
+
+/**
+ * <p>帧派生数据的计算，结果由 {@link PreviewFrame#get(FrameOperation)} 按 key 缓存，每帧最多计算一次</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public interface FrameOperation<T> {
+
+    /**
+     * 缓存key，相同key的操作结果共享
+     */
+    @NonNull
+    String getKey();
+
+    /**
+     * 计算派生数据，缓存优先从 pool 获取
+     */
+    @NonNull
+    T apply(@NonNull PreviewFrame frame, @NonNull FrameBufferPool pool);
+
+    /**
+     * 帧引用计数归零时调用，把结果占用的缓存归还 pool
+     */
+    void release(@NonNull PreviewFrame frame, @NonNull T value, @NonNull FrameBufferPool pool);
+
+}
@@ -0,0 +1,146 @@
+package com.rhino.camera;
+
+import androidx.annotation.NonNull;
+
+import com.rhino.camera.utils.FrameBufferPool;
+import com.rhino.camera.utils.NV21ByteUtils;
+
+/**
+ * <p>常用的帧派生数据</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class FrameOperations {
+
+    /**
+     * 转正后的NV21数据
+     */
+    public static final FrameOperation<NV21ByteUtils.NV21Result> ROTATE = new FrameOperation<NV21ByteUtils.NV21Result>() {
+        @NonNull
+        @Override
+        public String getKey() {
+            return "rotate";
+        }
+
+        @NonNull
+        @Override
+        public NV21ByteUtils.NV21Result apply(@NonNull PreviewFrame frame, @NonNull FrameBufferPool pool) {
+            if (frame.rotateDegree == 0) {
+                return new NV21ByteUtils.NV21Result(frame.data, frame.width, frame.height);
+            }
+            byte[] dst = pool.obtainBytes(frame.width * frame.height * 3 / 2);
+            return NV21ByteUtils.rotate(frame.data, frame.width, frame.height, frame.rotateDegree, dst);
+        }
+
+        @Override
+        public void release(@NonNull PreviewFrame frame, @NonNull NV21ByteUtils.NV21Result value, @NonNull FrameBufferPool pool) {
+            if (value.bytes != frame.data) {
+                pool.recycle(value.bytes);
+            }
+        }
+    };
+
+    /**
+     * 与预览显示一致方向的NV21数据：转正，前置摄像头再水平镜像，一次遍历完成
+     */
+    public static final FrameOperation<NV21ByteUtils.NV21Result> DISPLAY = new FrameOperation<NV21ByteUtils.NV21Result>() {
+        @NonNull
+        @Override
+        public String getKey() {
+            return "display";
+        }
+
+        @NonNull
+        @Override
+        public NV21ByteUtils.NV21Result apply(@NonNull PreviewFrame frame, @NonNull FrameBufferPool pool) {
+            if (!frame.mirror) {
+                return frame.get(ROTATE);
+            }
+            byte[] dst = pool.obtainBytes(frame.width * frame.height * 3 / 2);
+            return NV21ByteUtils.rotateAndMirror(frame.data, frame.width, frame.height, frame.rotateDegree, true, false, dst);
+        }
+
+        @Override
+        public void release(@NonNull PreviewFrame frame, @NonNull NV21ByteUtils.NV21Result value, @NonNull FrameBufferPool pool) {
+            if (frame.mirror) {
+                pool.recycle(value.bytes);
+            }
+        }
+    };
+
+    /**
+     * 转正后的灰度图，即转正后NV21的Y平面，不额外拷贝，bytes 长度大于 width * height
+     */
+    public static final FrameOperation<NV21ByteUtils.NV21Result> GRAY = new FrameOperation<NV21ByteUtils.NV21Result>() {
+        @NonNull
+        @Override
+        public String getKey() {
+            return "gray";
+        }
+
+        @NonNull
+        @Override
+        public NV21ByteUtils.NV21Result apply(@NonNull PreviewFrame frame, @NonNull FrameBufferPool pool) {
+            NV21ByteUtils.NV21Result rotated = frame.get(ROTATE);
+            return new NV21ByteUtils.NV21Result(rotated.bytes, rotated.width, rotated.height);
+        }
+
+        @Override
+        public void release(@NonNull PreviewFrame frame, @NonNull NV21ByteUtils.NV21Result value, @NonNull FrameBufferPool pool) {
+            // 与 ROTATE 共享数据，由 ROTATE 归还
+        }
+    };
+
+    /**
+     * 转正后宽高各缩小一半的NV21数据
+     */
+    public static final FrameOperation<NV21ByteUtils.NV21Result> HALF = new FrameOperation<NV21ByteUtils.NV21Result>() {
+        @NonNull
+        @Override
+        public String getKey() {
+            return "half";
+        }
+
+        @NonNull
+        @Override
+        public NV21ByteUtils.NV21Result apply(@NonNull PreviewFrame frame, @NonNull FrameBufferPool pool) {
+            NV21ByteUtils.NV21Result rotated = frame.get(ROTATE);
+            int halfWidth = NV21ByteUtils.getHalfSize(rotated.width);
+            int halfHeight = NV21ByteUtils.getHalfSize(rotated.height);
+            byte[] dst = pool.obtainBytes(halfWidth * halfHeight * 3 / 2);
+            return NV21ByteUtils.downscale2x(rotated.bytes, rotated.width, rotated.height, dst);
+        }
+
+        @Override
+        public void release(@NonNull PreviewFrame frame, @NonNull NV21ByteUtils.NV21Result value, @NonNull FrameBufferPool pool) {
+            pool.recycle(value.bytes);
+        }
+    };
+
+    /**
+     * 转正后的ARGB_8888像素，宽高为 {@link PreviewFrame#getRotatedWidth()} x {@link PreviewFrame#getRotatedHeight()}
+     */
+    public static final FrameOperation<int[]> ARGB = new FrameOperation<int[]>() {
+        @NonNull
+        @Override
+        public String getKey() {
+            return "argb";
+        }
+
+        @NonNull
+        @Override
+        public int[] apply(@NonNull PreviewFrame frame, @NonNull FrameBufferPool pool) {
+            NV21ByteUtils.NV21Result rotated = frame.get(ROTATE);
+            int[] argb = pool.obtainInts(rotated.width * rotated.height);
+            NV21ByteUtils.toArgb(rotated.bytes, rotated.width, rotated.height, argb);
+            return argb;
+        }
+
+        @Override
+        public void release(@NonNull PreviewFrame frame, @NonNull int[] value, @NonNull FrameBufferPool pool) {
+            pool.recycle(value);
+        }
+    };
+
+}
@@ -0,0 +1,302 @@
+package com.rhino.camera;
+
+import androidx.annotation.NonNull;
+
+import com.rhino.camera.utils.FrameBufferPool;
+import com.rhino.camera.utils.NV21ByteUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>预览帧，保留传感器方向的NV21数据以及旋转、镜像信息</p>
+ * <p>派生数据（旋转、灰度、缩小、ARGB等）通过 {@link #get(FrameOperation)} 延迟计算，
+ * 多个使用者同时请求时只计算一次；引用计数归零时派生数据的缓存归还 {@link FrameBufferPool}，
+ * 仍在计算的派生数据在计算完成后归还，帧数据也等它们完成后才归还</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class PreviewFrame {
+
+    /**
+     * 不缓存的池
+     */
+    private static final FrameBufferPool NO_POOL = new FrameBufferPool(0);
+
+    /**
+     * NV21数据，传感器方向
+     */
+    public final byte[] data;
+    /**
+     * 帧宽
+     */
+    public final int width;
+    /**
+     * 帧高
+     */
+    public final int height;
+    /**
+     * 转正需要顺时针旋转的角度，参考 {@link CameraTextureView#getRotateDegree()}
+     */
+    public final int rotateDegree;
+    /**
+     * 是否镜像（前置摄像头）
+     */
+    public final boolean mirror;
+    /**
+     * 预览显示旋转角度，参考 {@link CameraTextureView#getDisplayDegree()}
+     */
+    public final int displayDegree;
+    /**
+     * 到达时间，System.nanoTime()
+     */
+    public final long timestampNanos;
+
+    private final FrameBufferPool pool;
+    /**
+     * data 是否来自 pool，释放时归还
+     */
+    private final boolean pooledData;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+    /**
+     * 派生数据，key 为 {@link FrameOperation#getKey()}，首次请求时创建，访问时锁 this
+     */
+    private Map<String, DerivedTask<?>> derived;
+    private boolean released;
+    /**
+     * 释放后还在计算的派生数据个数加1，归零时归还帧数据
+     */
+    private final AtomicInteger pendingRelease = new AtomicInteger();
+
+    public PreviewFrame(@NonNull byte[] data, int width, int height, int rotateDegree, boolean mirror, int displayDegree, long timestampNanos) {
+        this(data, width, height, rotateDegree, mirror, displayDegree, timestampNanos, NO_POOL, false);
+    }
+
+    /**
+     * @param pool       派生数据使用的缓存池
+     * @param pooledData data 是否来自 pool，引用计数归零时归还
+     */
+    public PreviewFrame(@NonNull byte[] data, int width, int height, int rotateDegree, boolean mirror, int displayDegree, long timestampNanos,
+                        @NonNull FrameBufferPool pool, boolean pooledData) {
+        this.data = data;
+        this.width = width;
+        this.height = height;
+        this.rotateDegree = rotateDegree;
+        this.mirror = mirror;
+        this.displayDegree = displayDegree;
+        this.timestampNanos = timestampNanos;
+        this.pool = pool;
+        this.pooledData = pooledData;
+    }
+
+    /**
+     * 转正后的宽
+     */
+    public int getRotatedWidth() {
+        return isSwapSize(rotateDegree) ? height : width;
+    }
+
+    /**
+     * 转正后的高
+     */
+    public int getRotatedHeight() {
+        return isSwapSize(rotateDegree) ? width : height;
+    }
+
+    /**
+     * 获取转正后的NV21数据，首次调用时旋转，之后返回缓存结果
+     */
+    @NonNull
+    public NV21ByteUtils.NV21Result getRotated() {
+        return get(FrameOperations.ROTATE);
+    }
+
+    /**
+     * 获取派生数据，首次请求时在当前线程计算，其它线程同时请求会等待同一结果
+     *
+     * @param operation {@link FrameOperation}
+     * @return 派生数据，帧释放后不能再使用
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull final FrameOperation<T> operation) {
+        String key = operation.getKey();
+        DerivedTask<?> task;
+        boolean owner = false;
+        synchronized (this) {
+            if (released) {
+                throw new IllegalStateException("frame is released");
+            }
+            if (derived == null) {
+                derived = new HashMap<>(4);
+            }
+            task = derived.get(key);
+            if (task == null) {
+                task = new DerivedTask<>(operation);
+                derived.put(key, task);
+                owner = true;
+            }
+        }
+        if (owner) {
+            task.run();
+        }
+        try {
+            return (T) task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            synchronized (this) {
+                if (derived != null && derived.get(key) == task) {
+                    derived.remove(key);
+                }
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * 增加引用，跨线程或异步使用帧时调用，使用完需要 {@link #release()}
+     *
+     * @return this
+     */
+    @NonNull
+    public PreviewFrame retain() {
+        while (true) {
+            int count = refCount.get();
+            if (count <= 0) {
+                throw new IllegalStateException("frame is released");
+            }
+            if (refCount.compareAndSet(count, count + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * 减少引用，归零时把派生数据和帧数据归还缓存池；仍在计算的派生数据在完成后归还
+     */
+    public void release() {
+        int count = refCount.decrementAndGet();
+        if (count > 0) {
+            return;
+        }
+        if (count < 0) {
+            throw new IllegalStateException("frame is already released");
+        }
+        List<DerivedTask<?>> tasks;
+        synchronized (this) {
+            released = true;
+            if (derived == null || derived.isEmpty()) {
+                tasks = null;
+            } else {
+                tasks = new ArrayList<>(derived.values());
+                derived.clear();
+            }
+        }
+        // release 本身占一个，每个计算中的派生数据各占一个
+        pendingRelease.set(1 + (tasks != null ? tasks.size() : 0));
+        if (tasks != null) {
+            for (DerivedTask<?> task : tasks) {
+                task.releaseWhenDone();
+            }
+        }
+        onDerivedReleased();
+    }
+
+    private void onDerivedReleased() {
+        if (pendingRelease.decrementAndGet() == 0 && pooledData) {
+            pool.recycle(data);
+        }
+    }
+
+    /**
+     * 派生数据的计算任务，记录对应的操作，帧释放后计算完成时归还结果
+     */
+    private final class DerivedTask<T> extends FutureTask<Object> {
+        private final FrameOperation<T> operation;
+        private volatile boolean releaseRequested;
+        private final AtomicBoolean releaseDone = new AtomicBoolean();
+
+        DerivedTask(@NonNull final FrameOperation<T> operation) {
+            super(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return operation.apply(PreviewFrame.this, pool);
+                }
+            });
+            this.operation = operation;
+        }
+
+        void releaseWhenDone() {
+            releaseRequested = true;
+            if (isDone()) {
+                releaseResult();
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (releaseRequested) {
+                releaseResult();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void releaseResult() {
+            if (!releaseDone.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                operation.release(PreviewFrame.this, (T) get(), pool);
+            } catch (Exception ignored) {
+                // 计算失败的结果不需要归还
+            } finally {
+                onDerivedReleased();
+            }
+        }
+    }
+
+    /**
+     * 帧坐标（传感器方向）到控件坐标的变换
+     *
+     * @param viewWidth  预览控件宽
+     * @param viewHeight 预览控件高
+     */
+    @NonNull
+    public FrameCoordinateTransform getViewTransform(int viewWidth, int viewHeight) {
+        return FrameCoordinateTransform.create(width, height, displayDegree, mirror, viewWidth, viewHeight);
+    }
+
+    /**
+     * 转正后帧坐标到控件坐标的变换，用于分析 {@link #getRotated()} 得到的结果
+     *
+     * @param viewWidth  预览控件宽
+     * @param viewHeight 预览控件高
+     */
+    @NonNull
+    public FrameCoordinateTransform getRotatedViewTransform(int viewWidth, int viewHeight) {
+        // 先逆向旋转回传感器方向，再映射到控件
+        FrameCoordinateTransform transform = new FrameCoordinateTransform();
+        transform.postRotate(getRotatedWidth(), getRotatedHeight(), 360 - rotateDegree);
+        transform.postConcat(getViewTransform(viewWidth, viewHeight));
+        return transform;
+    }
+
+    private static boolean isSwapSize(int degree) {
+        return degree == 90 || degree == 270;
+    }
+
+}
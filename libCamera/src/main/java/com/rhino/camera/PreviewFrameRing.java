@@ -0,0 +1,163 @@
+package com.rhino.camera;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.rhino.camera.utils.FrameBufferPool;
+
+/**
+ * <p>最近N帧预览数据的环形缓存，用于零延迟拍照：点击拍照时直接取点击前的预览帧，不需要 takePicture 和重启预览</p>
+ * <p>帧数据拷贝到缓存池的数组中，池中只备用一帧，稳态下不再分配内存；加入时计算清晰度，可以取最清晰的一帧或最接近点击时间的一帧</p>
+ * <p>取出的帧已经增加引用，使用完需要 {@link PreviewFrame#release()}，期间被覆盖也不影响数据，
+ * 转正或镜像通过 {@link PreviewFrame#get(FrameOperation)} 获取</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class PreviewFrameRing {
+
+    /**
+     * 清晰度计算的采样步长
+     */
+    private static final int SHARPNESS_STEP = 4;
+
+    private final PreviewFrame[] frames;
+    private final int[] sharpness;
+    /**
+     * 预览尺寸变化时换新的池，旧尺寸的帧释放时归还到旧池，随旧池一起回收
+     */
+    private FrameBufferPool pool;
+    private int next;
+    private int size;
+    private int frameLength;
+
+    /**
+     * @param capacity 缓存的帧数
+     */
+    public PreviewFrameRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        frames = new PreviewFrame[capacity];
+        sharpness = new int[capacity];
+        pool = new FrameBufferPool(0);
+    }
+
+    /**
+     * 加入一帧，拷贝数据，覆盖最旧的一帧
+     */
+    public void add(@NonNull PreviewFrame frame) {
+        if (frame.data.length != frameLength) {
+            // 预览尺寸变化，旧尺寸的缓存不再复用
+            clear();
+            frameLength = frame.data.length;
+            // 缓存的帧之外只备用一帧：加入时先取数组再释放被覆盖的帧，下一次加入复用它；
+            // 被取出的帧释放时池已满则直接丢弃，总内存不超过容量帧加一帧再加仍被取出未释放的帧
+            pool = new FrameBufferPool(frameLength);
+        }
+        byte[] data = pool.obtainBytes(frame.data.length);
+        System.arraycopy(frame.data, 0, data, 0, data.length);
+        int score = calculateSharpness(data, frame.width, frame.height);
+        PreviewFrame copy = new PreviewFrame(data, frame.width, frame.height, frame.rotateDegree, frame.mirror,
+                frame.displayDegree, frame.timestampNanos, pool, true);
+        PreviewFrame old;
+        synchronized (this) {
+            old = frames[next];
+            frames[next] = copy;
+            sharpness[next] = score;
+            next = (next + 1) % frames.length;
+            size = Math.min(size + 1, frames.length);
+        }
+        if (old != null) {
+            old.release();
+        }
+    }
+
+    /**
+     * 获取最清晰的一帧
+     *
+     * @return 增加引用后的帧，使用完需要 release，没有帧返回 null
+     */
+    @Nullable
+    public synchronized PreviewFrame getSharpest() {
+        int best = -1;
+        for (int i = 0; i < frames.length; i++) {
+            if (frames[i] != null && (best < 0 || sharpness[i] > sharpness[best])) {
+                best = i;
+            }
+        }
+        return best < 0 ? null : frames[best].retain();
+    }
+
+    /**
+     * 获取时间最接近的一帧
+     *
+     * @param timestampNanos 点击时间，System.nanoTime()
+     * @return 增加引用后的帧，使用完需要 release，没有帧返回 null
+     */
+    @Nullable
+    public synchronized PreviewFrame getClosest(long timestampNanos) {
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for (int i = 0; i < frames.length; i++) {
+            if (frames[i] == null) {
+                continue;
+            }
+            long distance = Math.abs(frames[i].timestampNanos - timestampNanos);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best < 0 ? null : frames[best].retain();
+    }
+
+    /**
+     * 当前缓存的帧数
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 清空缓存，已取出的帧不受影响
+     */
+    public void clear() {
+        PreviewFrame[] old;
+        synchronized (this) {
+            old = frames.clone();
+            for (int i = 0; i < frames.length; i++) {
+                frames[i] = null;
+                sharpness[i] = 0;
+            }
+            next = 0;
+            size = 0;
+        }
+        for (PreviewFrame frame : old) {
+            if (frame != null) {
+                frame.release();
+            }
+        }
+        pool.clear();
+    }
+
+    /**
+     * 清晰度：Y平面隔行隔列采样的水平、垂直梯度绝对值之和，值越大越清晰
+     *
+     * @param nv21   NV21数据
+     * @param width  宽
+     * @param height 高
+     */
+    public static int calculateSharpness(@NonNull byte[] nv21, int width, int height) {
+        long sum = 0;
+        for (int y = 0; y + SHARPNESS_STEP < height; y += SHARPNESS_STEP) {
+            int row = y * width;
+            for (int x = 0; x + SHARPNESS_STEP < width; x += SHARPNESS_STEP) {
+                int p = nv21[row + x] & 0xFF;
+                sum += Math.abs((nv21[row + x + 1] & 0xFF) - p) + Math.abs((nv21[row + width + x] & 0xFF) - p);
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, sum);
+    }
+
+}
@@ -0,0 +1,355 @@
+package com.rhino.camera;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.rhino.camera.utils.FrameBufferPool;
+import com.rhino.camera.utils.LzByteCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>压缩的预览帧历史，用于事件触发时取回触发前几秒的画面</p>
+ * <p>每 keyFrameInterval 帧一个关键帧，关键帧直接压缩，其余帧与前一帧做逐字节差分后压缩（{@link LzByteCodec}），
+ * 画面静止时差分几乎全为0，压缩率很高。压缩数据存放在一块固定大小的内存中，空间不足时按组（关键帧及其后的差分帧）淘汰最旧的数据</p>
+ * <p>quantizeBits 大于0时为近无损：每个字节先舍去低位再差分，解码时取区间中点，误差不超过 2^(quantizeBits-1)，压缩率更高</p>
+ * <p>预览线程中用 {@link #offer(PreviewFrame)}：只把帧拷贝到复用的缓冲，量化、差分和压缩在单独的线程中进行，
+ * 压缩线程忙时丢弃新帧；{@link #add(PreviewFrame)} 在调用线程同步压缩</p>
+ * <p>maxBytes 只是压缩数据的上限，另有固定的工作缓冲约为原始帧大小的4倍：参考帧、量化帧、压缩输出和 offer 的拷贝，
+ * 在第一帧到达或尺寸变化时分配</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class PreviewHistory {
+
+    /**
+     * 默认关键帧间隔
+     */
+    public static final int DEFAULT_KEY_FRAME_INTERVAL = 30;
+
+    /**
+     * 一帧压缩数据在内存块中的位置和帧信息
+     */
+    private static final class Entry {
+        int offset;
+        int length;
+        boolean keyFrame;
+        int rawLength;
+        int width;
+        int height;
+        int rotateDegree;
+        boolean mirror;
+        int displayDegree;
+        long timestampNanos;
+    }
+
+    private final byte[] arena;
+    private final int keyFrameInterval;
+    private final int quantizeBits;
+    private final LzByteCodec codec = new LzByteCodec();
+    /**
+     * offer 的拷贝缓冲，同一时间最多一帧在压缩
+     */
+    private final FrameBufferPool inputPool = new FrameBufferPool();
+    private final AtomicBoolean compressing = new AtomicBoolean();
+    private final ThreadPoolExecutor executor;
+    private final List<Entry> entries = new ArrayList<>();
+    /**
+     * 下一个写入位置
+     */
+    private int tail;
+    private int usedBytes;
+
+    /**
+     * 编码端保存的前一帧（量化后），差分参考
+     */
+    private byte[] previous;
+    private byte[] scratch;
+    private byte[] compressed;
+    private int framesSinceKey;
+    private boolean needKeyFrame = true;
+
+    /**
+     * @param maxBytes 压缩数据最多占用的内存
+     */
+    public PreviewHistory(int maxBytes) {
+        this(maxBytes, DEFAULT_KEY_FRAME_INTERVAL, 0);
+    }
+
+    /**
+     * @param maxBytes         压缩数据最多占用的内存，构造时一次分配
+     * @param keyFrameInterval 关键帧间隔，也是淘汰的最小单位
+     * @param quantizeBits     舍去的低位数，0 无损，建议不超过2
+     */
+    public PreviewHistory(int maxBytes, int keyFrameInterval, int quantizeBits) {
+        if (quantizeBits < 0 || quantizeBits > 4) {
+            throw new IllegalArgumentException("quantizeBits must be in [0, 4]");
+        }
+        this.arena = new byte[maxBytes];
+        this.keyFrameInterval = Math.max(1, keyFrameInterval);
+        this.quantizeBits = quantizeBits;
+        executor = new ThreadPoolExecutor(1, 1, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable r) {
+                Thread thread = new Thread(r, "preview-history");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // 空闲时线程退出，不需要显式关闭
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 在压缩线程中加入一帧，可以在预览线程调用：拷贝帧数据后立即返回，帧本身不被引用
+     *
+     * @return false 上一帧还在压缩，丢弃了这一帧
+     */
+    public boolean offer(@NonNull PreviewFrame frame) {
+        if (!compressing.compareAndSet(false, true)) {
+            return false;
+        }
+        byte[] data = inputPool.obtainBytes(frame.data.length);
+        System.arraycopy(frame.data, 0, data, 0, data.length);
+        final PreviewFrame copy = new PreviewFrame(data, frame.width, frame.height, frame.rotateDegree, frame.mirror,
+                frame.displayDegree, frame.timestampNanos, inputPool, true);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    add(copy);
+                } finally {
+                    copy.release();
+                    compressing.set(false);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 在调用线程加入一帧，压缩后保存，帧本身不被引用
+     *
+     * @return false 一帧压缩后仍超过内存上限，没有保存
+     */
+    public synchronized boolean add(@NonNull PreviewFrame frame) {
+        int length = frame.data.length;
+        if (previous == null || previous.length != length) {
+            // 尺寸变化，之前的帧不能再作为参考，旧尺寸的拷贝缓冲不再复用
+            inputPool.clear();
+            previous = new byte[length];
+            scratch = new byte[length];
+            compressed = new byte[LzByteCodec.maxCompressedLength(length)];
+            needKeyFrame = true;
+        }
+        quantize(frame.data, scratch, length);
+        boolean keyFrame = needKeyFrame || framesSinceKey >= keyFrameInterval;
+        int compressedLength = keyFrame ? codec.compress(scratch, length, compressed) : compressDelta(length);
+        int offset = allocate(compressedLength, !keyFrame);
+        if (offset < 0 && !keyFrame) {
+            // 当前组也被淘汰了，改为关键帧
+            keyFrame = true;
+            compressedLength = codec.compress(scratch, length, compressed);
+            offset = allocate(compressedLength, false);
+        }
+        // scratch 此时为量化后的当前帧
+        System.arraycopy(scratch, 0, previous, 0, length);
+        if (offset < 0) {
+            needKeyFrame = true;
+            return false;
+        }
+        System.arraycopy(compressed, 0, arena, offset, compressedLength);
+        Entry entry = new Entry();
+        entry.offset = offset;
+        entry.length = compressedLength;
+        entry.keyFrame = keyFrame;
+        entry.rawLength = length;
+        entry.width = frame.width;
+        entry.height = frame.height;
+        entry.rotateDegree = frame.rotateDegree;
+        entry.mirror = frame.mirror;
+        entry.displayDegree = frame.displayDegree;
+        entry.timestampNanos = frame.timestampNanos;
+        entries.add(entry);
+        tail = offset + compressedLength;
+        usedBytes += compressedLength;
+        framesSinceKey = keyFrame ? 1 : framesSinceKey + 1;
+        needKeyFrame = false;
+        return true;
+    }
+
+    /**
+     * 当前帧与前一帧的差分压缩，差分直接写在 previous 中，之后 previous 会被当前帧覆盖
+     */
+    private int compressDelta(int length) {
+        for (int i = 0; i < length; i++) {
+            previous[i] = (byte) (scratch[i] - previous[i]);
+        }
+        return codec.compress(previous, length, compressed);
+    }
+
+    /**
+     * 在内存块中分配空间，不足时从最旧的组开始淘汰
+     *
+     * @param keepNewestGroup true 不淘汰当前帧所在的组（差分帧依赖它）
+     * @return 写入位置，-1 空间不足
+     */
+    private int allocate(int length, boolean keepNewestGroup) {
+        if (length > arena.length) {
+            return -1;
+        }
+        while (true) {
+            if (entries.isEmpty()) {
+                tail = 0;
+                return 0;
+            }
+            int head = entries.get(0).offset;
+            if (tail > head) {
+                if (arena.length - tail >= length) {
+                    return tail;
+                }
+                if (head >= length) {
+                    return 0;
+                }
+            } else if (head - tail >= length) {
+                return tail;
+            }
+            int groupEnd = nextKeyFrame(1);
+            if (keepNewestGroup && groupEnd == entries.size()) {
+                return -1;
+            }
+            evict(groupEnd);
+        }
+    }
+
+    /**
+     * 从 from 开始的第一个关键帧下标，没有返回 entries.size()
+     */
+    private int nextKeyFrame(int from) {
+        for (int i = from; i < entries.size(); i++) {
+            if (entries.get(i).keyFrame) {
+                return i;
+            }
+        }
+        return entries.size();
+    }
+
+    private void evict(int count) {
+        for (int i = 0; i < count; i++) {
+            usedBytes -= entries.get(i).length;
+        }
+        entries.subList(0, count).clear();
+        if (entries.isEmpty()) {
+            needKeyFrame = true;
+        }
+    }
+
+    /**
+     * 舍去低位，保存的是区间下界，解码时加半个区间
+     */
+    private void quantize(byte[] src, byte[] dst, int length) {
+        if (quantizeBits == 0) {
+            System.arraycopy(src, 0, dst, 0, length);
+            return;
+        }
+        byte mask = (byte) (0xFF << quantizeBits);
+        for (int i = 0; i < length; i++) {
+            dst[i] = (byte) (src[i] & mask);
+        }
+    }
+
+    /**
+     * 保存的帧数
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 压缩数据占用的字节数
+     */
+    public synchronized int getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * 第 index 帧的时间，0 为最旧的一帧
+     */
+    public synchronized long getTimestampNanos(int index) {
+        return entries.get(index).timestampNanos;
+    }
+
+    /**
+     * 时间最接近的帧下标，没有帧返回 -1
+     *
+     * @param timestampNanos System.nanoTime()
+     */
+    public synchronized int findClosest(long timestampNanos) {
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for (int i = 0; i < entries.size(); i++) {
+            long distance = Math.abs(entries.get(i).timestampNanos - timestampNanos);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 解码第 index 帧，从所在组的关键帧开始依次叠加差分
+     *
+     * @param index 0 为最旧的一帧
+     * @return NV21数据的新帧，越界返回 null
+     */
+    @Nullable
+    public synchronized PreviewFrame getFrame(int index) {
+        if (index < 0 || index >= entries.size()) {
+            return null;
+        }
+        int key = index;
+        while (!entries.get(key).keyFrame) {
+            key--;
+        }
+        Entry target = entries.get(index);
+        byte[] data = new byte[target.rawLength];
+        byte[] delta = new byte[data.length];
+        LzByteCodec.decompress(arena, entries.get(key).offset, entries.get(key).length, data);
+        for (int i = key + 1; i <= index; i++) {
+            Entry entry = entries.get(i);
+            LzByteCodec.decompress(arena, entry.offset, entry.length, delta);
+            for (int j = 0; j < data.length; j++) {
+                data[j] += delta[j];
+            }
+        }
+        if (quantizeBits > 0) {
+            // 区间下界加半个区间，不会超过255
+            int half = 1 << (quantizeBits - 1);
+            for (int j = 0; j < data.length; j++) {
+                data[j] += half;
+            }
+        }
+        return new PreviewFrame(data, target.width, target.height, target.rotateDegree, target.mirror,
+                target.displayDegree, target.timestampNanos);
+    }
+
+    /**
+     * 清空历史
+     */
+    public synchronized void clear() {
+        entries.clear();
+        tail = 0;
+        usedBytes = 0;
+        framesSinceKey = 0;
+        needKeyFrame = true;
+    }
+
+}
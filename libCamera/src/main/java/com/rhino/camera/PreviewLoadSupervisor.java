@@ -0,0 +1,295 @@
+package com.rhino.camera;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * <p>预览负载监控，处理持续跟不上预览帧率时降低预览分辨率，负载恢复后再升高</p>
+ * <p>不依赖 Camera，时钟和目标都可以注入，方便用模拟的处理耗时驱动</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class PreviewLoadSupervisor {
+
+    /**
+     * 默认分辨率等级，从高到低
+     */
+    public static final int[][] DEFAULT_LEVELS = {
+            {1920, 1080},
+            {1280, 720},
+            {960, 540},
+            {640, 480},
+    };
+
+    /**
+     * 时钟
+     */
+    public interface Clock {
+        long nanoTime();
+    }
+
+    /**
+     * 分辨率调整目标
+     */
+    public interface Target {
+        /**
+         * 应用新的期望预览分辨率，可以异步执行，完成后必须调用一次 callback
+         */
+        void applyExpectPreviewSize(int width, int height, @NonNull ApplyCallback callback);
+    }
+
+    /**
+     * 分辨率应用结果
+     */
+    public interface ApplyCallback {
+        /**
+         * @param success true 已生效；false 被拒绝或失败，保持原等级，冷却后重试
+         */
+        void onApplied(boolean success);
+    }
+
+    /**
+     * 分辨率切换回调
+     */
+    public interface OnLevelChangeListener {
+        /**
+         * @param fromLevel 切换前等级
+         * @param toLevel   切换后等级，越大分辨率越低
+         * @param width     新的期望预览宽
+         * @param height    新的期望预览高
+         * @param load      触发切换时的负载，处理耗时/帧间隔
+         */
+        void onLevelChanged(int fromLevel, int toLevel, int width, int height, float load);
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    private final int[][] levels;
+    private final Target target;
+    private final Clock clock;
+    @Nullable
+    private OnLevelChangeListener onLevelChangeListener;
+
+    /**
+     * 负载高于此值开始计时降级
+     */
+    private float highLoad = 0.9f;
+    /**
+     * 负载低于此值开始计时升级
+     */
+    private float lowLoad = 0.5f;
+    /**
+     * 持续高负载多久后降级
+     */
+    private long downgradeHoldNanos = 1_000_000_000L;
+    /**
+     * 持续低负载多久后升级，比降级更长，防止来回切换
+     */
+    private long upgradeHoldNanos = 5_000_000_000L;
+    /**
+     * 切换后冷却时间，这段时间内不统计
+     */
+    private long cooldownNanos = 2_000_000_000L;
+    /**
+     * 指数平均系数
+     */
+    private float smoothing = 0.1f;
+
+    private int level;
+    private float averageLagNanos;
+    private float averageIntervalNanos;
+    private long lastArrivalNanos = -1;
+    private long highSinceNanos = -1;
+    private long lowSinceNanos = -1;
+    private long cooldownUntilNanos = -1;
+    /**
+     * 正在应用的等级，-1 表示没有
+     */
+    private int pendingLevel = -1;
+
+    public PreviewLoadSupervisor(@NonNull Target target) {
+        this(target, DEFAULT_LEVELS, 0, SYSTEM_CLOCK);
+    }
+
+    /**
+     * @param target       分辨率调整目标
+     * @param levels       分辨率等级，从高到低，每项为 {width, height}
+     * @param initialLevel 初始等级
+     * @param clock        时钟
+     */
+    public PreviewLoadSupervisor(@NonNull Target target, @NonNull int[][] levels, int initialLevel, @NonNull Clock clock) {
+        if (levels.length == 0) {
+            throw new IllegalArgumentException("levels is empty");
+        }
+        this.target = target;
+        this.levels = levels;
+        this.level = Math.max(0, Math.min(levels.length - 1, initialLevel));
+        this.clock = clock;
+    }
+
+    public void setOnLevelChangeListener(@Nullable OnLevelChangeListener onLevelChangeListener) {
+        this.onLevelChangeListener = onLevelChangeListener;
+    }
+
+    /**
+     * 设置负载阈值
+     *
+     * @param lowLoad  低于此负载开始计时升级
+     * @param highLoad 高于此负载开始计时降级
+     */
+    public synchronized void setLoadThreshold(float lowLoad, float highLoad) {
+        if (lowLoad >= highLoad) {
+            throw new IllegalArgumentException("lowLoad must be less than highLoad");
+        }
+        this.lowLoad = lowLoad;
+        this.highLoad = highLoad;
+    }
+
+    /**
+     * 设置持续时间
+     *
+     * @param downgradeHoldMs 持续高负载多久后降级
+     * @param upgradeHoldMs   持续低负载多久后升级
+     * @param cooldownMs      切换后冷却时间
+     */
+    public synchronized void setHoldTime(long downgradeHoldMs, long upgradeHoldMs, long cooldownMs) {
+        this.downgradeHoldNanos = downgradeHoldMs * 1_000_000L;
+        this.upgradeHoldNanos = upgradeHoldMs * 1_000_000L;
+        this.cooldownNanos = cooldownMs * 1_000_000L;
+    }
+
+    /**
+     * 设置指数平均系数
+     */
+    public synchronized void setSmoothing(float smoothing) {
+        this.smoothing = Math.max(0.01f, Math.min(1f, smoothing));
+    }
+
+    /**
+     * 获取当前等级
+     */
+    public synchronized int getLevel() {
+        return level;
+    }
+
+    /**
+     * 获取当前负载，处理耗时/帧间隔，大于1表示处理跟不上
+     */
+    public synchronized float getLoad() {
+        return averageIntervalNanos > 0 ? averageLagNanos / averageIntervalNanos : 0;
+    }
+
+    /**
+     * 预览帧到达时调用，返回的时间戳传给 {@link #onFrameProcessed(long)}
+     *
+     * @return 到达时间
+     */
+    public long onFrameArrived() {
+        long now = clock.nanoTime();
+        synchronized (this) {
+            if (lastArrivalNanos >= 0) {
+                averageIntervalNanos = average(averageIntervalNanos, now - lastArrivalNanos);
+            }
+            lastArrivalNanos = now;
+        }
+        return now;
+    }
+
+    /**
+     * 帧处理完成时调用
+     *
+     * @param arrivalNanos {@link #onFrameArrived()} 返回的到达时间
+     */
+    public void onFrameProcessed(long arrivalNanos) {
+        long now = clock.nanoTime();
+        final int fromLevel;
+        final int toLevel;
+        final float load;
+        synchronized (this) {
+            averageLagNanos = average(averageLagNanos, now - arrivalNanos);
+            if (pendingLevel >= 0 || now < cooldownUntilNanos || averageIntervalNanos <= 0) {
+                return;
+            }
+            load = averageLagNanos / averageIntervalNanos;
+            fromLevel = level;
+            toLevel = evaluate(now, load);
+            if (toLevel == fromLevel) {
+                return;
+            }
+            // 等待应用结果，期间不再计算
+            pendingLevel = toLevel;
+        }
+        final int[] size = levels[toLevel];
+        target.applyExpectPreviewSize(size[0], size[1], new ApplyCallback() {
+            @Override
+            public void onApplied(boolean success) {
+                onLevelApplied(fromLevel, toLevel, size, load, success);
+            }
+        });
+    }
+
+    /**
+     * 应用完成，成功才更新等级和统计；失败保持原等级，持续时间不清零，冷却后再次尝试
+     */
+    private void onLevelApplied(int fromLevel, int toLevel, int[] size, float load, boolean success) {
+        long now = clock.nanoTime();
+        synchronized (this) {
+            if (pendingLevel != toLevel) {
+                return;
+            }
+            pendingLevel = -1;
+            cooldownUntilNanos = now + cooldownNanos;
+            if (!success) {
+                return;
+            }
+            level = toLevel;
+            // 分辨率变化后旧的统计不再有效
+            averageLagNanos = 0;
+            averageIntervalNanos = 0;
+            lastArrivalNanos = -1;
+            highSinceNanos = -1;
+            lowSinceNanos = -1;
+        }
+        if (onLevelChangeListener != null) {
+            onLevelChangeListener.onLevelChanged(fromLevel, toLevel, size[0], size[1], load);
+        }
+    }
+
+    /**
+     * 根据负载和持续时间计算目标等级
+     */
+    private int evaluate(long now, float load) {
+        if (load > highLoad) {
+            lowSinceNanos = -1;
+            if (highSinceNanos < 0) {
+                highSinceNanos = now;
+            }
+            if (now - highSinceNanos >= downgradeHoldNanos && level < levels.length - 1) {
+                return level + 1;
+            }
+        } else if (load < lowLoad) {
+            highSinceNanos = -1;
+            if (lowSinceNanos < 0) {
+                lowSinceNanos = now;
+            }
+            if (now - lowSinceNanos >= upgradeHoldNanos && level > 0) {
+                return level - 1;
+            }
+        } else {
+            highSinceNanos = -1;
+            lowSinceNanos = -1;
+        }
+        return level;
+    }
+
+    private float average(float average, long sample) {
+        return average <= 0 ? sample : average + smoothing * (sample - average);
+    }
+
+}
@@ -3,8 +3,8 @@ package com.rhino.camera.utils;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Matrix;
-import android.util.Log;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.rhino.log.LogUtils;
@@ -43,7 +43,7 @@ public class BitmapCompressUtils {
         } catch (IOException e) {
             LogUtils.e(TAG, e.toString());
         }
-        return outBitmap;
+        return BitmapTracker.track(outBitmap, "BitmapCompressUtils.compressToRGB565");
     }
 
     /**
@@ -84,7 +84,7 @@ public class BitmapCompressUtils {
         } catch (IOException e) {
             e.printStackTrace();
         }
-        return outBitmap;
+        return BitmapTracker.track(outBitmap, "BitmapCompressUtils.compressImageByQuality");
     }
 
     /**
@@ -95,8 +95,9 @@ public class BitmapCompressUtils {
         if (bitmap == null) {
             return null;
         }
-        int quality = calculateQualityToSizeKb(bitmap, toSizeKb, 1);
-        return compressImageByQualityToByte(bitmap, quality);
+        byte[] bytes = encodeToSizeKb(bitmap, toSizeKb, 1).toByteArray();
+        JpegTargetSizeEncoder.getThreadEncoder().trimMemory();
+        return bytes;
     }
 
     /**
@@ -115,46 +116,41 @@ public class BitmapCompressUtils {
         if (bitmap == null) {
             return null;
         }
-        int quality = calculateQualityToSizeKb(bitmap, toSizeKb, toQuality);
-        return compressImageByQuality(bitmap, quality);
+        JpegTargetSizeEncoder.Result result = encodeToSizeKb(bitmap, toSizeKb, toQuality);
+        try {
+            if (result.getQuality() >= 100) {
+                return bitmap;
+            }
+            return BitmapTracker.track(BitmapFactory.decodeByteArray(result.getData(), 0, result.getLength()),
+                    "BitmapCompressUtils.compressImageByQualityToSizeKb");
+        } finally {
+            JpegTargetSizeEncoder.getThreadEncoder().trimMemory();
+        }
     }
 
     /**
-     * 获取quality大小，用于压缩bitmap到指定kb
+     * 获取quality大小，用于压缩bitmap到指定kb，只在代理图上估计，不编码原图
      */
     public static int calculateQualityToSizeKb(Bitmap bitmap, int toSizeKb, int toQuality) {
         if (bitmap == null) {
             return 100;
         }
-        Log.d(TAG, "压缩前 size = " + bitmap.getByteCount() + ", width = " + bitmap.getWidth() + ", height = " + bitmap.getHeight());
-        ByteArrayOutputStream byteArrayOutputStream = null;
-        int quality = 100;
-
-        try {
-            byteArrayOutputStream = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.JPEG, quality, byteArrayOutputStream);
-
-            while (byteArrayOutputStream.toByteArray().length / 1024 > toSizeKb && quality > toQuality) {
-                byteArrayOutputStream.reset();
-                quality = Math.max(quality - 5, toQuality);
-                bitmap.compress(Bitmap.CompressFormat.JPEG, quality, byteArrayOutputStream);
-            }
-
-            Log.d(TAG, "压缩后 quality = " + quality);
-        } catch (Exception var14) {
-            Log.e(TAG, var14.toString());
-        } finally {
-            if (byteArrayOutputStream != null) {
-                try {
-                    byteArrayOutputStream.close();
-                } catch (IOException var13) {
-                    var13.printStackTrace();
-                }
-            }
-
-        }
+        return JpegTargetSizeEncoder.getThreadEncoder().estimateQuality(bitmap, (toSizeKb + 1) * 1024 - 1, toQuality, 100);
+    }
 
-        return quality;
+    /**
+     * 按目标大小编码，大小按 kb 向下取整不超过 toSizeKb，使用当前线程复用的编码器，
+     * 结果使用完后调用 {@link JpegTargetSizeEncoder#trimMemory()} 释放大缓冲
+     */
+    @NonNull
+    public static JpegTargetSizeEncoder.Result encodeToSizeKb(@NonNull Bitmap bitmap, int toSizeKb, int toQuality) {
+        LogUtils.d(TAG, "压缩前 size = " + bitmap.getByteCount() + ", width = " + bitmap.getWidth() + ", height = " + bitmap.getHeight());
+        JpegTargetSizeEncoder.Result result = JpegTargetSizeEncoder.getThreadEncoder()
+                .encode(bitmap, (toSizeKb + 1) * 1024 - 1, toQuality, 100);
+        LogUtils.d(TAG, "压缩后 quality = " + result.getQuality() + ", length = " + result.getLength()
+                + ", encodeCount = " + result.getFullEncodeCount() + "+" + result.getProxyEncodeCount()
+                + ", elapsedMs = " + result.getElapsedMs());
+        return result;
     }
 
     /**
@@ -165,6 +161,7 @@ public class BitmapCompressUtils {
         if (bitmap == null) {
             return null;
         }
+        Bitmap source = bitmap;
         int width = bitmap.getWidth();
         int height = bitmap.getHeight();
         float scale;
@@ -181,7 +178,7 @@ public class BitmapCompressUtils {
             // 获取新的bitmap
             bitmap = Bitmap.createBitmap(bitmap, 0, 0, width, height, matrix, true);
         }
-        return bitmap;
+        return BitmapTracker.track(bitmap, source, "BitmapCompressUtils.scaleLitterSideToDestSize");
     }
 
 }
@@ -0,0 +1,388 @@
+package com.rhino.camera.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Color;
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.rhino.log.LogUtils;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * <p>Bitmap 复用池，按 Config 和分配字节数分桶，总大小超过预算时按最久未使用淘汰</p>
+ * <p>minSdk 19 起 inBitmap 和 {@link Bitmap#reconfigure} 只要求分配的内存足够，因此取出时选择同 Config 中
+ * 分配字节数不小于需要、且不超过 {@link #MAX_SIZE_MULTIPLE} 倍的最小一个。解码通过 inBitmap 复用，
+ * 变换通过 {@link #get} 取出已清空的目标再绘制；用完的 Bitmap 调用 {@link #put} 归还而不是 recycle</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class BitmapPool {
+
+    private static final String TAG = BitmapPool.class.getSimpleName();
+
+    /**
+     * 取出的 Bitmap 分配的内存最多是需要的几倍
+     */
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    private static volatile BitmapPool sDefault;
+
+    /**
+     * 用于 decode 的数据来源，可以重复读取（先读边界再解码）
+     */
+    private interface Source {
+        @Nullable
+        Bitmap decode(@NonNull BitmapFactory.Options options) throws IOException;
+    }
+
+    private final Map<Bitmap.Config, TreeMap<Integer, ArrayDeque<Bitmap>>> buckets = new HashMap<>();
+    /**
+     * 按归还顺序，最先的最久未使用
+     */
+    private final LinkedHashSet<Bitmap> lru = new LinkedHashSet<>();
+    private final long maxBytes;
+    private long pooledBytes;
+    private int hitCount;
+    private int missCount;
+    private int evictionCount;
+
+    /**
+     * @param maxBytes 池中最多保留的字节数
+     */
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * 进程内共享的默认池，预算为最大堆内存的 1/8
+     */
+    @NonNull
+    public static BitmapPool getDefault() {
+        if (sDefault == null) {
+            synchronized (BitmapPool.class) {
+                if (sDefault == null) {
+                    sDefault = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+                }
+            }
+        }
+        return sDefault;
+    }
+
+    /**
+     * 取出指定大小的 Bitmap，内容已清空为透明，没有可复用的时新建
+     */
+    @NonNull
+    public Bitmap get(int width, int height, @Nullable Bitmap.Config config) {
+        Bitmap bitmap = getDirty(width, height, config);
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    /**
+     * 取出指定大小的 Bitmap，内容未清空，适合随后被完整覆盖的场景
+     */
+    @NonNull
+    public Bitmap getDirty(int width, int height, @Nullable Bitmap.Config config) {
+        if (config == null) {
+            config = Bitmap.Config.ARGB_8888;
+        }
+        Bitmap bitmap = take(getByteCount(width, height, config), config);
+        if (bitmap != null) {
+            bitmap.reconfigure(width, height, config);
+        } else {
+            bitmap = Bitmap.createBitmap(width, height, config);
+        }
+        BitmapTracker.track(bitmap, "BitmapPool.get");
+        return bitmap;
+    }
+
+    /**
+     * 归还 Bitmap，不可变、已回收或超过预算的直接回收
+     */
+    public void put(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        BitmapTracker.release(bitmap, true);
+        int size = bitmap.getAllocationByteCount();
+        Bitmap.Config config = bitmap.getConfig();
+        if (!bitmap.isMutable() || config == null || size > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        synchronized (this) {
+            if (!lru.add(bitmap)) {
+                // 重复归还
+                return;
+            }
+            TreeMap<Integer, ArrayDeque<Bitmap>> sizes = buckets.get(config);
+            if (sizes == null) {
+                sizes = new TreeMap<>();
+                buckets.put(config, sizes);
+            }
+            ArrayDeque<Bitmap> queue = sizes.get(size);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                sizes.put(size, queue);
+            }
+            queue.offer(bitmap);
+            pooledBytes += size;
+            trimToSize(maxBytes);
+        }
+    }
+
+    /**
+     * 淘汰最久未使用的 Bitmap 直到不超过 size
+     */
+    public synchronized void trimToSize(long size) {
+        Iterator<Bitmap> iterator = lru.iterator();
+        while (pooledBytes > size && iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            iterator.remove();
+            removeFromBucket(bitmap);
+            pooledBytes -= bitmap.getAllocationByteCount();
+            evictionCount++;
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * 清空并回收所有 Bitmap
+     */
+    public void clear() {
+        trimToSize(0);
+    }
+
+    @Nullable
+    private synchronized Bitmap take(int byteCount, @NonNull Bitmap.Config config) {
+        TreeMap<Integer, ArrayDeque<Bitmap>> sizes = buckets.get(config);
+        if (sizes != null) {
+            NavigableMap<Integer, ArrayDeque<Bitmap>> candidates =
+                    sizes.subMap(byteCount, true, (int) Math.min(Integer.MAX_VALUE, (long) byteCount * MAX_SIZE_MULTIPLE), true);
+            for (ArrayDeque<Bitmap> queue : candidates.values()) {
+                Bitmap bitmap = queue.poll();
+                if (bitmap != null) {
+                    lru.remove(bitmap);
+                    pooledBytes -= bitmap.getAllocationByteCount();
+                    hitCount++;
+                    return bitmap;
+                }
+            }
+        }
+        missCount++;
+        return null;
+    }
+
+    private void removeFromBucket(Bitmap bitmap) {
+        TreeMap<Integer, ArrayDeque<Bitmap>> sizes = buckets.get(bitmap.getConfig());
+        if (sizes == null) {
+            return;
+        }
+        ArrayDeque<Bitmap> queue = sizes.get(bitmap.getAllocationByteCount());
+        if (queue != null) {
+            queue.remove(bitmap);
+            if (queue.isEmpty()) {
+                sizes.remove(bitmap.getAllocationByteCount());
+            }
+        }
+    }
+
+    /**
+     * 解码文件，复用池中的 Bitmap 作为 inBitmap
+     *
+     * @param options 可以设置 inSampleSize、inPreferredConfig，null 使用默认
+     */
+    @Nullable
+    public Bitmap decodeFile(@NonNull final String filePath, @Nullable BitmapFactory.Options options) {
+        return decode(new Source() {
+            @Override
+            public Bitmap decode(@NonNull BitmapFactory.Options options) throws IOException {
+                try (InputStream inputStream = new FileInputStream(filePath)) {
+                    return BitmapFactory.decodeStream(inputStream, null, options);
+                }
+            }
+        }, options);
+    }
+
+    /**
+     * 解码内存中的图片数据，复用池中的 Bitmap 作为 inBitmap
+     */
+    @Nullable
+    public Bitmap decodeByteArray(@NonNull final byte[] data, final int offset, final int length, @Nullable BitmapFactory.Options options) {
+        return decode(new Source() {
+            @Override
+            public Bitmap decode(@NonNull BitmapFactory.Options options) {
+                return BitmapFactory.decodeByteArray(data, offset, length, options);
+            }
+        }, options);
+    }
+
+    /**
+     * 解码输入流，opener 会被调用两次（读边界、解码），每次返回新的输入流
+     */
+    @Nullable
+    public Bitmap decodeStream(@NonNull final StreamOpener opener, @Nullable BitmapFactory.Options options) {
+        return decode(new Source() {
+            @Override
+            public Bitmap decode(@NonNull BitmapFactory.Options options) throws IOException {
+                try (InputStream inputStream = opener.open()) {
+                    return BitmapFactory.decodeStream(inputStream, null, options);
+                }
+            }
+        }, options);
+    }
+
+    /**
+     * 打开输入流，例如 assets、raw 资源
+     */
+    public interface StreamOpener {
+        @NonNull
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * 解码 BitmapRegionDecoder 的一个区域，复用池中的 Bitmap 作为 inBitmap
+     *
+     * @param options 可以设置 inSampleSize、inPreferredConfig，null 使用默认
+     */
+    @Nullable
+    public Bitmap decodeRegion(@NonNull final BitmapRegionDecoder decoder, @NonNull final Rect region,
+                               @Nullable BitmapFactory.Options options) {
+        if (options == null) {
+            options = new BitmapFactory.Options();
+        }
+        return decode(new Source() {
+            @Override
+            public Bitmap decode(@NonNull BitmapFactory.Options options) {
+                return decoder.decodeRegion(region, options);
+            }
+        }, options, region.width(), region.height());
+    }
+
+    @Nullable
+    private Bitmap decode(@NonNull Source source, @Nullable BitmapFactory.Options options) {
+        if (options == null) {
+            options = new BitmapFactory.Options();
+        }
+        try {
+            options.inJustDecodeBounds = true;
+            source.decode(options);
+        } catch (IOException e) {
+            LogUtils.e(TAG, e.toString());
+            return null;
+        } finally {
+            options.inJustDecodeBounds = false;
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        return decode(source, options, options.outWidth, options.outHeight);
+    }
+
+    /**
+     * 已知源尺寸时解码，按采样后的尺寸从池中取出 inBitmap
+     */
+    @Nullable
+    private Bitmap decode(@NonNull Source source, @NonNull BitmapFactory.Options options, int srcWidth, int srcHeight) {
+        int sampleSize = Math.max(1, options.inSampleSize);
+        // 不同格式采样后的尺寸取整方式不同，按向上取整保证内存足够
+        int width = (srcWidth + sampleSize - 1) / sampleSize;
+        int height = (srcHeight + sampleSize - 1) / sampleSize;
+        Bitmap.Config config = options.inPreferredConfig != null ? options.inPreferredConfig : Bitmap.Config.ARGB_8888;
+        Bitmap candidate = take(getByteCount(width, height, config), config);
+        options.inMutable = true;
+        options.inBitmap = candidate;
+        try {
+            Bitmap bitmap;
+            try {
+                bitmap = source.decode(options);
+            } catch (IllegalArgumentException e) {
+                // inBitmap 不兼容（例如格式不支持复用），不复用重新解码
+                LogUtils.w(TAG, "inBitmap rejected: " + e.toString());
+                options.inBitmap = null;
+                put(candidate);
+                candidate = null;
+                bitmap = source.decode(options);
+            }
+            if (bitmap == null && candidate != null) {
+                put(candidate);
+            }
+            return BitmapTracker.track(bitmap, "BitmapPool.decode");
+        } catch (IOException e) {
+            LogUtils.e(TAG, e.toString());
+            if (candidate != null) {
+                put(candidate);
+            }
+            return null;
+        } finally {
+            options.inBitmap = null;
+        }
+    }
+
+    private static int getByteCount(int width, int height, @NonNull Bitmap.Config config) {
+        int bytesPerPixel;
+        switch (config) {
+            case ALPHA_8:
+                bytesPerPixel = 1;
+                break;
+            case RGB_565:
+            case ARGB_4444:
+                bytesPerPixel = 2;
+                break;
+            default:
+                bytesPerPixel = 4;
+                break;
+        }
+        return width * height * bytesPerPixel;
+    }
+
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 取出时命中复用的次数
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    public synchronized int getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BitmapPool{" +
+                "pooledBytes=" + pooledBytes +
+                ", maxBytes=" + maxBytes +
+                ", hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                '}';
+    }
+
+}
@@ -0,0 +1,358 @@
+package com.rhino.camera.utils;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.rhino.log.LogUtils;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <p>库内分配的 Bitmap 的内存统计和泄漏检测，默认关闭，调试时 {@link #setEnabled(boolean)} 打开</p>
+ * <p>BitmapUtils、BitmapCompressUtils、BitmapPool 等返回新 Bitmap 的地方调用 {@link #track}，
+ * {@link BitmapUtils#recycleBitmap} 和 {@link BitmapPool#put} 调用 {@link #release}。
+ * 记录分配位置、字节数和时间，统计当前存活和历史峰值；Bitmap 被 GC 时仍未回收或归还池的计为泄漏并打印分配位置。
+ * 调用方直接 {@link Bitmap#recycle()} 的在下次 track 时检查到，视为已回收</p>
+ * <p>关闭时每次调用只读一个 volatile 变量</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public final class BitmapTracker {
+
+    private static final String TAG = BitmapTracker.class.getSimpleName();
+
+    private static volatile boolean sEnabled;
+    private static volatile boolean sCaptureStackTrace;
+
+    private static final Map<Bitmap, Record> RECORDS = new WeakHashMap<>();
+    /**
+     * 按分配顺序，保持 Record 本身（WeakReference）可达
+     */
+    private static final LinkedHashSet<Record> LIVE = new LinkedHashSet<>();
+    private static final ReferenceQueue<Bitmap> QUEUE = new ReferenceQueue<>();
+
+    private static long sLiveBytes;
+    private static long sPeakBytes;
+    private static int sPeakCount;
+    private static long sAllocatedCount;
+    private static long sAllocatedBytes;
+    private static long sRecycledCount;
+    private static long sPooledCount;
+    private static long sLeakedCount;
+    private static long sLeakedBytes;
+
+    private BitmapTracker() {
+    }
+
+    /**
+     * 一次分配的记录
+     */
+    public static final class Record extends WeakReference<Bitmap> {
+        private final String site;
+        private final int width;
+        private final int height;
+        private final long bytes;
+        private final long allocTime;
+        @Nullable
+        private final Throwable stackTrace;
+
+        Record(@NonNull Bitmap bitmap, @NonNull String site, @Nullable Throwable stackTrace) {
+            super(bitmap, QUEUE);
+            this.site = site;
+            this.width = bitmap.getWidth();
+            this.height = bitmap.getHeight();
+            this.bytes = bitmap.getAllocationByteCount();
+            this.allocTime = System.currentTimeMillis();
+            this.stackTrace = stackTrace;
+        }
+
+        /**
+         * 库内分配的方法
+         */
+        @NonNull
+        public String getSite() {
+            return site;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getAgeMs() {
+            return System.currentTimeMillis() - allocTime;
+        }
+
+        /**
+         * 分配时的调用栈，{@link #setCaptureStackTrace(boolean)} 打开时才有
+         */
+        @Nullable
+        public Throwable getStackTrace() {
+            return stackTrace;
+        }
+
+        @Override
+        public String toString() {
+            return "Record{" +
+                    "site='" + site + '\'' +
+                    ", size=" + width + "x" + height +
+                    ", bytes=" + bytes +
+                    ", ageMs=" + getAgeMs() +
+                    '}';
+        }
+    }
+
+    /**
+     * 统计快照
+     */
+    public static final class Stats {
+        public int liveCount;
+        public long liveBytes;
+        public int peakCount;
+        public long peakBytes;
+        public long allocatedCount;
+        public long allocatedBytes;
+        public long recycledCount;
+        /**
+         * 归还到 BitmapPool 的次数
+         */
+        public long pooledCount;
+        /**
+         * 被 GC 时仍未回收、未归还池的数量
+         */
+        public long leakedCount;
+        public long leakedBytes;
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "liveCount=" + liveCount +
+                    ", liveBytes=" + liveBytes +
+                    ", peakCount=" + peakCount +
+                    ", peakBytes=" + peakBytes +
+                    ", allocatedCount=" + allocatedCount +
+                    ", allocatedBytes=" + allocatedBytes +
+                    ", recycledCount=" + recycledCount +
+                    ", pooledCount=" + pooledCount +
+                    ", leakedCount=" + leakedCount +
+                    ", leakedBytes=" + leakedBytes +
+                    '}';
+        }
+    }
+
+    /**
+     * 打开或关闭统计，关闭时清空记录
+     */
+    public static void setEnabled(boolean enabled) {
+        synchronized (BitmapTracker.class) {
+            sEnabled = enabled;
+            if (!enabled) {
+                reset();
+            }
+        }
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * 是否记录分配时的调用栈，用于定位库外的调用方，开销较大
+     */
+    public static void setCaptureStackTrace(boolean captureStackTrace) {
+        sCaptureStackTrace = captureStackTrace;
+    }
+
+    /**
+     * 记录新分配的 Bitmap，已记录过的忽略
+     *
+     * @param site 分配的方法
+     * @return bitmap
+     */
+    @Nullable
+    public static Bitmap track(@Nullable Bitmap bitmap, @NonNull String site) {
+        if (!sEnabled || bitmap == null) {
+            return bitmap;
+        }
+        trackInternal(bitmap, site);
+        return bitmap;
+    }
+
+    /**
+     * 记录由 source 变换得到的 Bitmap，与 source 是同一个时（例如不需要缩放）不记录
+     *
+     * @return result
+     */
+    @Nullable
+    public static Bitmap track(@Nullable Bitmap result, @Nullable Bitmap source, @NonNull String site) {
+        if (!sEnabled || result == null || result == source) {
+            return result;
+        }
+        trackInternal(result, site);
+        return result;
+    }
+
+    private static synchronized void trackInternal(@NonNull Bitmap bitmap, @NonNull String site) {
+        if (!sEnabled || bitmap.isRecycled()) {
+            return;
+        }
+        sweep();
+        if (RECORDS.containsKey(bitmap)) {
+            return;
+        }
+        Record record = new Record(bitmap, site, sCaptureStackTrace ? new Throwable(site) : null);
+        RECORDS.put(bitmap, record);
+        LIVE.add(record);
+        sAllocatedCount++;
+        sAllocatedBytes += record.bytes;
+        sLiveBytes += record.bytes;
+        sPeakBytes = Math.max(sPeakBytes, sLiveBytes);
+        sPeakCount = Math.max(sPeakCount, LIVE.size());
+    }
+
+    /**
+     * 记录 Bitmap 被回收或归还池，未记录过的忽略
+     *
+     * @param toPool true 归还到 BitmapPool
+     */
+    public static void release(@Nullable Bitmap bitmap, boolean toPool) {
+        if (!sEnabled || bitmap == null) {
+            return;
+        }
+        synchronized (BitmapTracker.class) {
+            Record record = RECORDS.remove(bitmap);
+            if (record != null && LIVE.remove(record)) {
+                sLiveBytes -= record.bytes;
+                if (toPool) {
+                    sPooledCount++;
+                } else {
+                    sRecycledCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * 处理已被 GC 的记录，并移除调用方直接 recycle 的记录
+     */
+    private static void sweep() {
+        Record collected;
+        while ((collected = (Record) QUEUE.poll()) != null) {
+            if (LIVE.remove(collected)) {
+                sLiveBytes -= collected.bytes;
+                sLeakedCount++;
+                sLeakedBytes += collected.bytes;
+                LogUtils.w(TAG, "Bitmap 未回收已被GC: " + collected);
+                if (collected.stackTrace != null) {
+                    LogUtils.w(TAG, Log.getStackTraceString(collected.stackTrace));
+                }
+            }
+        }
+        Iterator<Record> iterator = LIVE.iterator();
+        while (iterator.hasNext()) {
+            Record record = iterator.next();
+            Bitmap bitmap = record.get();
+            if (bitmap != null && bitmap.isRecycled()) {
+                iterator.remove();
+                RECORDS.remove(bitmap);
+                sLiveBytes -= record.bytes;
+                sRecycledCount++;
+            }
+        }
+    }
+
+    /**
+     * 当前统计
+     */
+    @NonNull
+    public static synchronized Stats getStats() {
+        sweep();
+        Stats stats = new Stats();
+        stats.liveCount = LIVE.size();
+        stats.liveBytes = sLiveBytes;
+        stats.peakCount = sPeakCount;
+        stats.peakBytes = sPeakBytes;
+        stats.allocatedCount = sAllocatedCount;
+        stats.allocatedBytes = sAllocatedBytes;
+        stats.recycledCount = sRecycledCount;
+        stats.pooledCount = sPooledCount;
+        stats.leakedCount = sLeakedCount;
+        stats.leakedBytes = sLeakedBytes;
+        return stats;
+    }
+
+    /**
+     * 存活时间不小于 minAgeMs 仍未回收、未归还池的记录，按存活时间从长到短
+     */
+    @NonNull
+    public static synchronized List<Record> getLiveRecords(long minAgeMs) {
+        sweep();
+        List<Record> records = new ArrayList<>();
+        for (Record record : LIVE) {
+            if (record.getAgeMs() >= minAgeMs) {
+                records.add(record);
+            }
+        }
+        Collections.sort(records, new Comparator<Record>() {
+            @Override
+            public int compare(Record o1, Record o2) {
+                return Long.compare(o1.allocTime, o2.allocTime);
+            }
+        });
+        return records;
+    }
+
+    /**
+     * 打印统计和存活时间不小于 minAgeMs 的记录
+     */
+    public static void dump(long minAgeMs) {
+        if (!sEnabled) {
+            return;
+        }
+        LogUtils.d(TAG, getStats().toString());
+        for (Record record : getLiveRecords(minAgeMs)) {
+            LogUtils.w(TAG, "可能泄漏: " + record);
+        }
+    }
+
+    /**
+     * 清空记录和统计
+     */
+    public static synchronized void reset() {
+        RECORDS.clear();
+        LIVE.clear();
+        while (QUEUE.poll() != null) {
+            // 丢弃
+        }
+        sLiveBytes = 0;
+        sPeakBytes = 0;
+        sPeakCount = 0;
+        sAllocatedCount = 0;
+        sAllocatedBytes = 0;
+        sRecycledCount = 0;
+        sPooledCount = 0;
+        sLeakedCount = 0;
+        sLeakedBytes = 0;
+    }
+
+}
@@ -5,9 +5,11 @@ import android.content.res.AssetManager;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.graphics.Rect;
 import android.os.Environment;
 
@@ -17,13 +19,17 @@ import androidx.annotation.Nullable;
 import com.rhino.log.LogUtils;
 
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * @author LuoLin
@@ -33,14 +39,45 @@ public class BitmapUtils {
 
     private static final String TAG = BitmapUtils.class.getSimpleName();
 
-    // 拼接图片方向标志（原图左边）
-    private static final int LEFT = 0;
-    // 拼接图片方向标志（原图右边）
-    private static final int RIGHT = 1;
-    // 拼接图片方向标志（原图上边）
-    private static final int TOP = 2;
-    // 拼接图片方向标志（原图下边）
-    private static final int BOTTOM = 3;
+    /**
+     * 填充时内容居中
+     */
+    public static final int ANCHOR_CENTER = 0;
+    /**
+     * 填充时内容靠左或靠上
+     */
+    public static final int ANCHOR_START = 1;
+    /**
+     * 填充时内容靠右或靠下
+     */
+    public static final int ANCHOR_END = 2;
+
+    /**
+     * 像素交错 RGBRGB...
+     */
+    public static final int PIXEL_RGB = 0;
+    /**
+     * 像素交错 BGRBGR...
+     */
+    public static final int PIXEL_BGR = 1;
+    /**
+     * 按通道分平面 RR..GG..BB..
+     */
+    public static final int PIXEL_RGB_PLANAR = 2;
+    /**
+     * 按通道分平面 BB..GG..RR..
+     */
+    public static final int PIXEL_BGR_PLANAR = 3;
+
+    /**
+     * 逐行读取像素的缓存，每个线程一份，只在宽度变大时重新分配
+     */
+    private static final ThreadLocal<int[]> ROW_PIXELS = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[0];
+        }
+    };
 
     /**
      * 根据资源id获取bitmap
@@ -55,7 +92,26 @@ public class BitmapUtils {
         opt.inPurgeable = true;
         opt.inInputShareable = true;
         InputStream is = context.getResources().openRawResource(resId);
-        return BitmapFactory.decodeStream(is, null, opt);
+        return BitmapTracker.track(BitmapFactory.decodeStream(is, null, opt), "BitmapUtils.decodeBitmapFromResource");
+    }
+
+    /**
+     * 根据资源id获取bitmap，复用 pool 中的 Bitmap 解码，用完后归还 pool
+     */
+    @Nullable
+    public static Bitmap decodeBitmapFromResource(@NonNull final Context context, final int resId, @NonNull BitmapPool pool) {
+        if (0 == resId) {
+            return null;
+        }
+        BitmapFactory.Options opt = new BitmapFactory.Options();
+        opt.inPreferredConfig = Bitmap.Config.RGB_565;
+        return pool.decodeStream(new BitmapPool.StreamOpener() {
+            @NonNull
+            @Override
+            public InputStream open() {
+                return context.getResources().openRawResource(resId);
+            }
+        }, opt);
     }
 
     /**
@@ -66,14 +122,19 @@ public class BitmapUtils {
         Bitmap bitmap = null;
         File file = new File(filePath);
         try (InputStream inputStream = new FileInputStream(file)) {
-            bitmap = BitmapFactory.decodeStream(inputStream);
-            if (bitmap != null) {
-                bitmap = bitmap.copy(bitmap.getConfig(), true);
-            }
+            bitmap = toMutable(BitmapFactory.decodeStream(inputStream));
         } catch (IOException e) {
             LogUtils.e(TAG, e.toString());
         }
-        return bitmap;
+        return BitmapTracker.track(bitmap, "BitmapUtils.decodeBitmapFromFile");
+    }
+
+    /**
+     * 读取图片文件，复用 pool 中的 Bitmap 解码，结果可修改，不需要再拷贝
+     */
+    @Nullable
+    public static Bitmap decodeBitmapFromFile(@NonNull String filePath, @NonNull BitmapPool pool) {
+        return pool.decodeFile(filePath, null);
     }
 
     /**
@@ -86,10 +147,7 @@ public class BitmapUtils {
         try {
             AssetManager asm = context.getAssets();
             inputStream = asm.open(filename);
-            bitmap = BitmapFactory.decodeStream(inputStream);
-            if (bitmap != null) {
-                bitmap = bitmap.copy(bitmap.getConfig(), true);
-            }
+            bitmap = toMutable(BitmapFactory.decodeStream(inputStream));
         } catch (IOException e) {
             LogUtils.e(TAG, e.toString());
         } finally {
@@ -101,7 +159,37 @@ public class BitmapUtils {
                 LogUtils.e(TAG, e.toString());
             }
         }
-        return bitmap;
+        return BitmapTracker.track(bitmap, "BitmapUtils.decodeBitmapFromAssets");
+    }
+
+    /**
+     * 转为可修改的Bitmap，拷贝后回收原图
+     */
+    @Nullable
+    private static Bitmap toMutable(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isMutable()) {
+            return bitmap;
+        }
+        Bitmap copy = bitmap.copy(bitmap.getConfig(), true);
+        if (copy != null) {
+            bitmap.recycle();
+        }
+        return copy;
+    }
+
+    /**
+     * 读取Assets文件夹下图片文件，复用 pool 中的 Bitmap 解码，结果可修改
+     */
+    @Nullable
+    public static Bitmap decodeBitmapFromAssets(@NonNull Context context, @NonNull final String filename, @NonNull BitmapPool pool) {
+        final AssetManager asm = context.getAssets();
+        return pool.decodeStream(new BitmapPool.StreamOpener() {
+            @NonNull
+            @Override
+            public InputStream open() throws IOException {
+                return asm.open(filename);
+            }
+        }, null);
     }
 
     /**
@@ -119,7 +207,126 @@ public class BitmapUtils {
         options.inSampleSize = calculateInSampleSize(options, destWidth, destHeight);
         // 设置 false 正常加载图片
         options.inJustDecodeBounds = false;
-        return BitmapFactory.decodeResource(res, resId, options);
+        return BitmapTracker.track(BitmapFactory.decodeResource(res, resId, options), "BitmapUtils.decodeBitmapFromResource");
+    }
+
+    /**
+     * 按目标大小解码图片文件，以不小于目标的最粗采样率解码后再精确缩放
+     *
+     * @param reqWidth  目标宽，结果按比例缩放到 reqWidth * reqHeight 以内，小于等于0不限制
+     * @param reqHeight 目标高，小于等于0不限制
+     * @param pool      复用的 Bitmap 池，null 不复用
+     */
+    @Nullable
+    public static Bitmap decodeSampledBitmapFromFile(@NonNull String filePath, int reqWidth, int reqHeight, @Nullable BitmapPool pool) {
+        return decodeRegionFromFile(filePath, null, reqWidth, reqHeight, pool);
+    }
+
+    /**
+     * 只解码图片文件的 cropRect 区域，与 {@link #crop(Bitmap, Rect, Rect)} 裁剪完整解码的图片结果一致，
+     * 但不需要先解码整张图片
+     *
+     * @param previewRect 预览区域
+     * @param cropRect    预览坐标的裁剪区域
+     * @param reqWidth    目标宽，小于等于0不限制
+     * @param reqHeight   目标高，小于等于0不限制
+     * @param pool        复用的 Bitmap 池，null 不复用
+     */
+    @Nullable
+    public static Bitmap decodeCropFromFile(@NonNull String filePath, @NonNull Rect previewRect, @NonNull Rect cropRect,
+                                            int reqWidth, int reqHeight, @Nullable BitmapPool pool) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(filePath, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        Rect region = mapCropRect(options.outWidth, options.outHeight, previewRect, cropRect);
+        return decodeRegionFromFile(filePath, region, reqWidth, reqHeight, pool);
+    }
+
+    /**
+     * 只解码图片文件的 region 区域，用 BitmapRegionDecoder 以不小于目标的最粗采样率解码，再精确缩放到目标以内
+     *
+     * @param region    图片坐标的区域，null 解码整张图片
+     * @param reqWidth  目标宽，结果按比例缩放到 reqWidth * reqHeight 以内，小于等于0不限制
+     * @param reqHeight 目标高，小于等于0不限制
+     * @param pool      复用的 Bitmap 池，null 不复用
+     */
+    @Nullable
+    public static Bitmap decodeRegionFromFile(@NonNull String filePath, @Nullable Rect region, int reqWidth, int reqHeight,
+                                              @Nullable BitmapPool pool) {
+        long timestamp = System.currentTimeMillis();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(filePath, options);
+        options.inJustDecodeBounds = false;
+        int imageWidth = options.outWidth;
+        int imageHeight = options.outHeight;
+        if (imageWidth <= 0 || imageHeight <= 0) {
+            return null;
+        }
+        Rect rect = new Rect(0, 0, imageWidth, imageHeight);
+        if (region != null && !rect.intersect(region)) {
+            return null;
+        }
+        boolean fullImage = rect.width() == imageWidth && rect.height() == imageHeight;
+
+        // 按比例缩放到目标以内的精确尺寸，采样后的尺寸不小于它
+        float scale = 1f;
+        if (reqWidth > 0) {
+            scale = Math.min(scale, (float) reqWidth / rect.width());
+        }
+        if (reqHeight > 0) {
+            scale = Math.min(scale, (float) reqHeight / rect.height());
+        }
+        int destWidth = Math.max(1, Math.round(rect.width() * scale));
+        int destHeight = Math.max(1, Math.round(rect.height() * scale));
+        options.inSampleSize = calculateInSampleSize(rect.width(), rect.height(), destWidth, destHeight);
+
+        Bitmap sampled = null;
+        if (fullImage) {
+            sampled = pool != null ? pool.decodeFile(filePath, options)
+                    : BitmapTracker.track(BitmapFactory.decodeFile(filePath, options), "BitmapUtils.decodeRegionFromFile");
+        } else {
+            BitmapRegionDecoder decoder = null;
+            try {
+                decoder = BitmapRegionDecoder.newInstance(filePath, false);
+                sampled = pool != null ? pool.decodeRegion(decoder, rect, options)
+                        : BitmapTracker.track(decoder.decodeRegion(rect, options), "BitmapUtils.decodeRegionFromFile");
+            } catch (IOException e) {
+                LogUtils.e(TAG, e.toString());
+            } finally {
+                if (decoder != null) {
+                    decoder.recycle();
+                }
+            }
+        }
+        if (sampled == null) {
+            return null;
+        }
+        long sampledBytes = (long) sampled.getWidth() * sampled.getHeight() * 4;
+        Bitmap result = sampled;
+        if (sampled.getWidth() != destWidth || sampled.getHeight() != destHeight) {
+            result = pool != null
+                    ? drawInto(sampled, null, destWidth, destHeight, pool)
+                    : BitmapTracker.track(Bitmap.createScaledBitmap(sampled, destWidth, destHeight, true), sampled,
+                    "BitmapUtils.decodeRegionFromFile");
+            if (result != sampled) {
+                if (pool != null) {
+                    pool.put(sampled);
+                } else {
+                    recycleBitmap(sampled);
+                }
+            }
+        }
+        // 峰值是采样图与缩放结果同时存在，完整解码至少需要整张图片
+        LogUtils.d(TAG, "区域解码, region = " + rect + ", inSampleSize = " + options.inSampleSize
+                + ", result = " + destWidth + "x" + destHeight
+                + ", peakBytes = " + (sampledBytes + (result != sampled ? (long) destWidth * destHeight * 4 : 0))
+                + ", fullDecodeBytes = " + (long) imageWidth * imageHeight * 4
+                + ", time = " + (System.currentTimeMillis() - timestamp));
+        return result;
     }
 
     /**
@@ -127,11 +334,11 @@ public class BitmapUtils {
      */
     @Nullable
     public static Bitmap copyBitmap(Bitmap bitmap) {
-        return bitmap.copy(bitmap.getConfig(), true);
+        return BitmapTracker.track(bitmap.copy(bitmap.getConfig(), true), "BitmapUtils.copyBitmap");
     }
 
     /**
-     * 用ByteArrayOutputStream方式把Bitmap转Byte
+     * 把Bitmap编码为质量100的JPEG，编码写入当前线程复用的缓冲，返回拷贝
      */
     @NonNull
     public static byte[] bitmapToBytesByStream(Bitmap bitmap) {
@@ -143,38 +350,151 @@ public class BitmapUtils {
      */
     @NonNull
     public static byte[] bitmapToRGB(Bitmap bitmap) {
-        int bytes = bitmap.getByteCount();  //返回可用于储存此位图像素的最小字节数
+        byte[] pixels = new byte[bitmap.getWidth() * bitmap.getHeight() * 3];
+        bitmapToRGB(bitmap, pixels, PIXEL_RGB);
+        return pixels;
+    }
 
-        ByteBuffer buffer = ByteBuffer.allocate(bytes); //  使用allocate()静态方法创建字节缓冲区
-        bitmap.copyPixelsToBuffer(buffer); // 将位图的像素复制到指定的缓冲区
+    /**
+     * Bitmap转RGB/BGR，写入调用方的数组，除每线程复用的一行缓存外不分配内存
+     *
+     * @param dst    长度不小于 width * height * 3
+     * @param format {@link #PIXEL_RGB}、{@link #PIXEL_BGR}、{@link #PIXEL_RGB_PLANAR}、{@link #PIXEL_BGR_PLANAR}
+     */
+    public static void bitmapToRGB(@NonNull Bitmap bitmap, @NonNull byte[] dst, int format) {
+        checkRgbCapacity(bitmap, dst.length);
+        extractRows(bitmap, dst, null, 0, format, 0, bitmap.getHeight());
+    }
+
+    /**
+     * Bitmap转RGB/BGR，从 dst 当前 position 开始按绝对下标写入，position 不变，可以是直接缓冲
+     */
+    public static void bitmapToRGB(@NonNull Bitmap bitmap, @NonNull ByteBuffer dst, int format) {
+        checkRgbCapacity(bitmap, dst.remaining());
+        extractRows(bitmap, null, dst, dst.position(), format, 0, bitmap.getHeight());
+    }
 
-        byte[] rgba = buffer.array();
-        byte[] pixels = new byte[(rgba.length / 4) * 3];
+    /**
+     * 按行分带并行转RGB/BGR，第一带在调用线程处理
+     *
+     * @param bandCount 分带数，一般取CPU核数
+     */
+    public static void bitmapToRGB(@NonNull Bitmap bitmap, @NonNull byte[] dst, int format,
+                                   @NonNull ExecutorService executor, int bandCount) {
+        checkRgbCapacity(bitmap, dst.length);
+        extractBands(bitmap, dst, null, 0, format, executor, bandCount);
+    }
 
-        int count = rgba.length / 4;
+    /**
+     * 按行分带并行转RGB/BGR，写入 ByteBuffer，第一带在调用线程处理
+     */
+    public static void bitmapToRGB(@NonNull Bitmap bitmap, @NonNull ByteBuffer dst, int format,
+                                   @NonNull ExecutorService executor, int bandCount) {
+        checkRgbCapacity(bitmap, dst.remaining());
+        extractBands(bitmap, null, dst, dst.position(), format, executor, bandCount);
+    }
 
-        //Bitmap像素点的色彩通道排列顺序是RGBA
-        for (int i = 0; i < count; i++) {
+    private static void checkRgbCapacity(Bitmap bitmap, int capacity) {
+        int required = bitmap.getWidth() * bitmap.getHeight() * 3;
+        if (capacity < required) {
+            throw new IllegalArgumentException("dst too small: " + capacity + " < " + required);
+        }
+    }
 
-            pixels[i * 3] = rgba[i * 4];        //R
-            pixels[i * 3 + 1] = rgba[i * 4 + 1];    //G
-            pixels[i * 3 + 2] = rgba[i * 4 + 2];       //B
+    private static void extractBands(@NonNull final Bitmap bitmap, @Nullable final byte[] dst, @Nullable final ByteBuffer buffer,
+                                     final int offset, final int format, @NonNull ExecutorService executor, int bandCount) {
+        final int height = bitmap.getHeight();
+        final int bandRows = (height + Math.max(1, bandCount) - 1) / Math.max(1, bandCount);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int start = bandRows; start < height; start += bandRows) {
+                final int bandStart = start;
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        extractRows(bitmap, dst, buffer, offset, format, bandStart, Math.min(height, bandStart + bandRows));
+                    }
+                }));
+            }
+            extractRows(bitmap, dst, buffer, offset, format, 0, Math.min(height, bandRows));
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("bitmap to rgb interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("bitmap to rgb failed", e.getCause());
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
 
+    /**
+     * 转换 [rowStart, rowEnd) 行，dst 与 buffer 二选一
+     */
+    private static void extractRows(Bitmap bitmap, @Nullable byte[] dst, @Nullable ByteBuffer buffer, int offset, int format,
+                                    int rowStart, int rowEnd) {
+        int width = bitmap.getWidth();
+        int planeSize = width * bitmap.getHeight();
+        int[] row = ROW_PIXELS.get();
+        if (row.length < width) {
+            row = new int[width];
+            ROW_PIXELS.set(row);
+        }
+        boolean bgr = format == PIXEL_BGR || format == PIXEL_BGR_PLANAR;
+        boolean planar = format == PIXEL_RGB_PLANAR || format == PIXEL_BGR_PLANAR;
+        // 交错时相邻通道间隔1、像素间隔3；分平面时通道间隔 planeSize、像素间隔1
+        int channelStride = planar ? planeSize : 1;
+        int pixelStride = planar ? 1 : 3;
+        for (int y = rowStart; y < rowEnd; y++) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            int index = offset + y * width * pixelStride;
+            for (int x = 0; x < width; x++, index += pixelStride) {
+                int color = row[x];
+                byte r = (byte) (color >> 16);
+                byte g = (byte) (color >> 8);
+                byte b = (byte) color;
+                byte first = bgr ? b : r;
+                byte last = bgr ? r : b;
+                if (dst != null) {
+                    dst[index] = first;
+                    dst[index + channelStride] = g;
+                    dst[index + channelStride * 2] = last;
+                } else {
+                    buffer.put(index, first);
+                    buffer.put(index + channelStride, g);
+                    buffer.put(index + channelStride * 2, last);
+                }
+            }
         }
-        return pixels;
     }
 
     /**
-     * 用ByteArrayOutputStream方式把Bitmap转Byte
+     * 把Bitmap编码为JPEG的Byte，编码时使用当前线程复用的缓冲区
      */
     @NonNull
     public static byte[] bitmapToBytesByStream(Bitmap bitmap, int quality) {
         if (bitmap == null) {
             return new byte[]{};
         }
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, quality, byteArrayOutputStream);
-        return byteArrayOutputStream.toByteArray();
+        GrowableByteBuffer buffer = GrowableByteBuffer.getThreadBuffer();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, quality, buffer);
+        byte[] bytes = buffer.toByteArray();
+        GrowableByteBuffer.trimThreadBuffer();
+        return bytes;
+    }
+
+    /**
+     * 把Bitmap编码为JPEG写入缓冲区，不拷贝
+     *
+     * @param out 追加写入
+     * @return true 编码成功
+     */
+    public static boolean bitmapToBytesByStream(@NonNull Bitmap bitmap, int quality, @NonNull GrowableByteBuffer out) {
+        return bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out);
     }
 
     /**
@@ -182,10 +502,21 @@ public class BitmapUtils {
      */
     @NonNull
     public static byte[] bitmapToBytesByBuffer(Bitmap bitmap) {
-        int byteCount = bitmap.getByteCount();
-        ByteBuffer byteBuffer = ByteBuffer.allocate(byteCount);
-        bitmap.copyPixelsToBuffer(byteBuffer);
-        return byteBuffer.array();
+        byte[] bytes = new byte[bitmap.getByteCount()];
+        bitmap.copyPixelsToBuffer(ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * 原始像素数据（按 Bitmap.Config 的格式）复制到调用方的缓冲区，不分配内存
+     *
+     * @param dst 从当前 position 开始写入，写入后 position 前移 {@link Bitmap#getByteCount()}
+     */
+    public static void bitmapToBytesByBuffer(@NonNull Bitmap bitmap, @NonNull ByteBuffer dst) {
+        if (dst.remaining() < bitmap.getByteCount()) {
+            throw new IllegalArgumentException("dst too small: " + dst.remaining() + " < " + bitmap.getByteCount());
+        }
+        bitmap.copyPixelsToBuffer(dst);
     }
 
     /**
@@ -207,9 +538,8 @@ public class BitmapUtils {
         Matrix matrix = new Matrix();
         float scale = (float) newHeight / height;
         matrix.setScale(scale, scale);
-        srcBitmap = Bitmap.createBitmap(srcBitmap, 0, 0, width, height,
-                matrix, true);
-        return srcBitmap;
+        return BitmapTracker.track(Bitmap.createBitmap(srcBitmap, 0, 0, width, height, matrix, true), srcBitmap,
+                "BitmapUtils.zoomImageByHeight");
     }
 
     /**
@@ -231,9 +561,8 @@ public class BitmapUtils {
         Matrix matrix = new Matrix();
         float scale = (float) newWidth / width;
         matrix.setScale(scale, scale);
-        srcBitmap = Bitmap.createBitmap(srcBitmap, 0, 0, width, height,
-                matrix, true);
-        return srcBitmap;
+        return BitmapTracker.track(Bitmap.createBitmap(srcBitmap, 0, 0, width, height, matrix, true), srcBitmap,
+                "BitmapUtils.zoomImageByWidth");
     }
 
     /**
@@ -258,9 +587,65 @@ public class BitmapUtils {
         float scaleWidth = (float) newWidth / width;
         float scaleHeight = (float) newHeight / height;
         matrix.setScale(scaleWidth, scaleHeight);
-        srcBitmap = Bitmap.createBitmap(srcBitmap, 0, 0, width, height,
-                matrix, true);
-        return srcBitmap;
+        return BitmapTracker.track(Bitmap.createBitmap(srcBitmap, 0, 0, width, height, matrix, true), srcBitmap,
+                "BitmapUtils.zoomImage");
+    }
+
+    /**
+     * 根据高度缩放Bitmap，结果从 pool 中取出
+     */
+    @Nullable
+    public static Bitmap zoomImageByHeight(Bitmap srcBitmap, int newHeight, @NonNull BitmapPool pool) {
+        if (null == srcBitmap || 0 >= srcBitmap.getWidth()
+                || 0 >= srcBitmap.getHeight()
+                || 0 >= newHeight) {
+            return null;
+        }
+        int newWidth = Math.max(1, Math.round((float) srcBitmap.getWidth() * newHeight / srcBitmap.getHeight()));
+        return drawInto(srcBitmap, null, newWidth, newHeight, pool);
+    }
+
+    /**
+     * 根据宽度缩放Bitmap，结果从 pool 中取出
+     */
+    @Nullable
+    public static Bitmap zoomImageByWidth(Bitmap srcBitmap, int newWidth, @NonNull BitmapPool pool) {
+        if (null == srcBitmap || 0 >= srcBitmap.getWidth()
+                || 0 >= srcBitmap.getHeight()
+                || 0 >= newWidth) {
+            return null;
+        }
+        int newHeight = Math.max(1, Math.round((float) srcBitmap.getHeight() * newWidth / srcBitmap.getWidth()));
+        return drawInto(srcBitmap, null, newWidth, newHeight, pool);
+    }
+
+    /**
+     * 根据宽高缩放Bitmap，结果从 pool 中取出
+     */
+    @Nullable
+    public static Bitmap zoomImage(Bitmap srcBitmap, int newWidth, int newHeight, @NonNull BitmapPool pool) {
+        if (null == srcBitmap || 0 >= srcBitmap.getWidth()
+                || 0 >= srcBitmap.getHeight()
+                || 0 >= newWidth
+                || 0 >= newHeight) {
+            return null;
+        }
+        return drawInto(srcBitmap, null, newWidth, newHeight, pool);
+    }
+
+    /**
+     * 把 src 的 srcRect 区域缩放绘制到从 pool 取出的 width * height 目标中
+     *
+     * @param srcRect null 表示整张图
+     */
+    @NonNull
+    private static Bitmap drawInto(@NonNull Bitmap src, @Nullable Rect srcRect, int width, int height, @NonNull BitmapPool pool) {
+        Bitmap.Config config = src.getConfig() != null ? src.getConfig() : Bitmap.Config.ARGB_8888;
+        // 不透明的源会完整覆盖目标，不需要先清空
+        Bitmap target = src.hasAlpha() ? pool.get(width, height, config) : pool.getDirty(width, height, config);
+        Canvas canvas = new Canvas(target);
+        canvas.drawBitmap(src, srcRect, new Rect(0, 0, width, height), new Paint(Paint.FILTER_BITMAP_FLAG));
+        return target;
     }
 
     /**
@@ -271,13 +656,23 @@ public class BitmapUtils {
      */
     @Nullable
     public static String saveBytes(@NonNull byte[] bytes) {
+        return saveBytes(bytes, bytes.length);
+    }
+
+    /**
+     * 保存bytes的前 length 个字节，可以直接保存 {@link GrowableByteBuffer#getBuffer()}
+     *
+     * @return 返回保存图片路径，null 保存失败
+     */
+    @Nullable
+    public static String saveBytes(@NonNull byte[] bytes, int length) {
         File dir = new File(Environment.getExternalStorageDirectory(), "Album");
         if (!dir.exists() && !dir.mkdirs()) {
             return null;
         }
         String fileName = PrimaryUtils.createPrimary() + ".jpg";
         File file = new File(dir, fileName);
-        if (saveBytes(bytes, file.getAbsolutePath())) {
+        if (saveBytes(bytes, length, file.getAbsolutePath())) {
             return file.getPath();
         }
         return null;
@@ -290,6 +685,15 @@ public class BitmapUtils {
      * @return true 保存成功， false 保存失败
      */
     public static boolean saveBytes(byte[] bytes, String filePath) {
+        return saveBytes(bytes, bytes.length, filePath);
+    }
+
+    /**
+     * 保存bytes的前 length 个字节，可以直接保存 {@link GrowableByteBuffer#getBuffer()}
+     *
+     * @return true 保存成功， false 保存失败
+     */
+    public static boolean saveBytes(byte[] bytes, int length, String filePath) {
         boolean saveSuccess = false;
         File file = new File(filePath);
         if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
@@ -297,7 +701,7 @@ public class BitmapUtils {
         }
         try (FileOutputStream fileOutputStream = new FileOutputStream(file);
              BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(fileOutputStream)) {
-            bufferedOutputStream.write(bytes);
+            bufferedOutputStream.write(bytes, 0, length);
             bufferedOutputStream.flush();
             saveSuccess = true;
         } catch (IOException e) {
@@ -372,10 +776,18 @@ public class BitmapUtils {
      */
     public static void recycleBitmap(Bitmap bitmap) {
         if (bitmap != null && !bitmap.isRecycled()) {
+            BitmapTracker.release(bitmap, false);
             bitmap.recycle();
         }
     }
 
+    /**
+     * 归还bitmap到 pool，pool 放不下时回收
+     */
+    public static void recycleBitmap(Bitmap bitmap, @NonNull BitmapPool pool) {
+        pool.put(bitmap);
+    }
+
     /**
      * 裁剪
      */
@@ -384,25 +796,56 @@ public class BitmapUtils {
         LogUtils.d(TAG, "准备裁剪, previewRect = " + previewRect.toString() + ", cropRect = " + cropRect);
         long timestamp = System.currentTimeMillis();
 
-        int cropLeft = cropRect.left;
-        int cropTop = cropRect.top;
-        int cropWidth = cropRect.width();
-        int cropHeight = cropRect.height();
-
-        cropLeft = (int) (1.0f * cropLeft / previewRect.width() * bitmap.getWidth());
-        cropTop = (int) (1.0f * cropTop / previewRect.height() * bitmap.getHeight());
-        cropWidth = (int) (1.0f * cropWidth / previewRect.width() * bitmap.getWidth());
-        cropHeight = (int) (1.0f * cropHeight / previewRect.height() * bitmap.getHeight());
-        LogUtils.d(TAG, "开始裁剪, cropLeft = " + cropLeft + ", cropTop = " + cropTop + ", cropWidth = " + cropWidth + ", cropHeight = " + cropHeight + ", time = " + (System.currentTimeMillis() - timestamp));
-        Bitmap cropBitmap = Bitmap.createBitmap(bitmap, cropLeft, cropTop, cropWidth, cropHeight);
+        Rect rect = mapCropRect(bitmap.getWidth(), bitmap.getHeight(), previewRect, cropRect);
+        LogUtils.d(TAG, "开始裁剪, cropLeft = " + rect.left + ", cropTop = " + rect.top + ", cropWidth = " + rect.width() + ", cropHeight = " + rect.height() + ", time = " + (System.currentTimeMillis() - timestamp));
+        Bitmap cropBitmap = BitmapTracker.track(Bitmap.createBitmap(bitmap, rect.left, rect.top, rect.width(), rect.height()),
+                bitmap, "BitmapUtils.crop");
         LogUtils.d(TAG, "裁剪完成, time = " + (System.currentTimeMillis() - timestamp));
         return cropBitmap;
     }
 
+    /**
+     * 裁剪，结果从 pool 中取出
+     */
+    @NonNull
+    public static Bitmap crop(@NonNull Bitmap bitmap, Rect previewRect, Rect cropRect, @NonNull BitmapPool pool) {
+        Rect rect = mapCropRect(bitmap.getWidth(), bitmap.getHeight(), previewRect, cropRect);
+        return drawInto(bitmap, rect, rect.width(), rect.height(), pool);
+    }
+
+    /**
+     * 预览坐标的裁剪区域换算到图片坐标
+     */
+    private static Rect mapCropRect(int width, int height, Rect previewRect, Rect cropRect) {
+        int cropLeft = (int) (1.0f * cropRect.left / previewRect.width() * width);
+        int cropTop = (int) (1.0f * cropRect.top / previewRect.height() * height);
+        int cropWidth = (int) (1.0f * cropRect.width() / previewRect.width() * width);
+        int cropHeight = (int) (1.0f * cropRect.height() / previewRect.height() * height);
+        return new Rect(cropLeft, cropTop, cropLeft + cropWidth, cropTop + cropHeight);
+    }
+
     /**
      * 根据比例裁剪中心图片
      */
     public static Bitmap cropCenterByScale(Bitmap bitmap, int cropWidth, int cropHeight) {
+        Rect cropRect = calculateCenterCropRect(bitmap, cropWidth, cropHeight);
+        return BitmapTracker.track(Bitmap.createBitmap(bitmap, cropRect.left, cropRect.top, cropRect.width(), cropRect.height()),
+                bitmap, "BitmapUtils.cropCenterByScale");
+    }
+
+    /**
+     * 根据比例裁剪中心图片，结果从 pool 中取出
+     */
+    @NonNull
+    public static Bitmap cropCenterByScale(@NonNull Bitmap bitmap, int cropWidth, int cropHeight, @NonNull BitmapPool pool) {
+        Rect cropRect = calculateCenterCropRect(bitmap, cropWidth, cropHeight);
+        return drawInto(bitmap, cropRect, cropRect.width(), cropRect.height(), pool);
+    }
+
+    /**
+     * 按 cropWidth:cropHeight 的比例计算图片中心的裁剪区域
+     */
+    private static Rect calculateCenterCropRect(Bitmap bitmap, int cropWidth, int cropHeight) {
         // 高以图片的高算出比例的宽
         int rWidth = (int) (1.0f * bitmap.getHeight() / cropHeight * cropWidth);
         // 宽以图片的宽算出比例的高
@@ -422,15 +865,20 @@ public class BitmapUtils {
             cropRect.bottom = cropRect.top + rHeight;
             cropRect.right = bitmap.getWidth();
         }
-        return Bitmap.createBitmap(bitmap, cropRect.left, cropRect.top, cropRect.width(), cropRect.height());
+        return cropRect;
     }
 
     /**
      * 计算采样率
      */
     public static int calculateInSampleSize(BitmapFactory.Options options, int reqWidth, int reqHeight) {
-        final int width = options.outWidth;
-        final int height = options.outHeight;
+        return calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+    }
+
+    /**
+     * 计算采样率，采样后的宽高都不小于 reqWidth、reqHeight
+     */
+    public static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
         int inSampleSize = 1; // 宽或高大于预期就将采样率 *=2 进行缩放
         if (width > reqWidth || height > reqHeight) {
             final int halfHeight = height / 2;
@@ -454,34 +902,29 @@ public class BitmapUtils {
         // 获取想要缩放的matrix
         Matrix matrix = new Matrix();
         matrix.postScale(scaleWidth, scaleHeight);
-        // 获取新的bitmap
-        bitmap = Bitmap.createBitmap(bitmap, 0, 0, width, height, matrix, true);
-        return compressImageByte(bitmap, circulation);
+        // 获取新的bitmap，编码后回收
+        Bitmap scaled = Bitmap.createBitmap(bitmap, 0, 0, width, height, matrix, true);
+        try {
+            return compressImageByte(scaled, circulation);
+        } finally {
+            if (scaled != bitmap) {
+                scaled.recycle();
+            }
+        }
     }
 
     /**
      * 质量压缩方法（返回图片字节数组byte[]）
+     *
+     * @param circulation true 压缩到30kb以内，质量不限；false 压缩到100kb以内，质量不低于75
      */
     public static byte[] compressImageByte(Bitmap image, boolean circulation) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        if (circulation) {
-            image.compress(Bitmap.CompressFormat.JPEG, 100, baos);// 质量压缩方法，这里100表示不压缩，把压缩后的数据存放到baos中
-            int options = 90;
-            while (baos.toByteArray().length / 1024 > 30) { // 循环判断如果压缩后图片是否大于30kb,大于继续压缩
-                baos.reset(); // 重置baos即清空baos
-                image.compress(Bitmap.CompressFormat.JPEG, options, baos);// 这里压缩options%，把压缩后的数据存放到baos中
-                options -= 10;// 每次都减少10
-            }
-        } else {
-            int options = 90;
-            image.compress(Bitmap.CompressFormat.JPEG, 100, baos);// 质量压缩方法，这里100表示不压缩，把压缩后的数据存放到baos中
-            while (baos.toByteArray().length / 1024 > 100 && options >= 75) { // 循环判断如果压缩后图片是否大于100kb且压缩比例不小于0.75,满足继续压缩
-                baos.reset(); // 重置baos即清空baos
-                image.compress(Bitmap.CompressFormat.JPEG, options, baos);// 这里压缩options%，把压缩后的数据存放到baos中
-                options -= 5;// 每次都减少10
-            }
-        }
-        return baos.toByteArray();
+        JpegTargetSizeEncoder.Result result = circulation
+                ? BitmapCompressUtils.encodeToSizeKb(image, 30, 0)
+                : BitmapCompressUtils.encodeToSizeKb(image, 100, 75);
+        byte[] bytes = result.toByteArray();
+        JpegTargetSizeEncoder.getThreadEncoder().trimMemory();
+        return bytes;
     }
 
     /**
@@ -489,55 +932,12 @@ public class BitmapUtils {
      */
     public static Bitmap createBitmap(int w, int h) {
         Bitmap bitmapBlank = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
-        for (int i = 0; i < bitmapBlank.getHeight(); i++) {
-            for (int j = 0; j < bitmapBlank.getWidth(); j++) {
-                bitmapBlank.setPixel(j, i, Color.argb(255, 255, 255, 255));
-            }
-        }
-        return bitmapBlank;
+        bitmapBlank.eraseColor(Color.WHITE);
+        return BitmapTracker.track(bitmapBlank, "BitmapUtils.createBitmap");
     }
 
     /**
-     * 根据方向判断在不同位置拼接图片
-     */
-    private static Bitmap createBitmapForFateMix(Bitmap first, Bitmap second, int direction) {
-        if (first == null) {
-            return null;
-        }
-        if (second == null) {
-            return first;
-        }
-        int fw = first.getWidth();
-        int fh = first.getHeight();
-        int sw = second.getWidth();
-        int sh = second.getHeight();
-        Bitmap newBitmap = null;
-        if (direction == LEFT) {
-            newBitmap = Bitmap.createBitmap(fw + sw, Math.max(fh, sh), Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(newBitmap);
-            canvas.drawBitmap(first, sw, 0, null);
-            canvas.drawBitmap(second, 0, 0, null);
-        } else if (direction == RIGHT) {
-            newBitmap = Bitmap.createBitmap(fw + sw, Math.max(fh, sh), Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(newBitmap);
-            canvas.drawBitmap(first, 0, 0, null);
-            canvas.drawBitmap(second, fw, 0, null);
-        } else if (direction == TOP) {
-            newBitmap = Bitmap.createBitmap(Math.max(sw, fw), fh + sh, Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(newBitmap);
-            canvas.drawBitmap(first, 0, sh, null);
-            canvas.drawBitmap(second, 0, 0, null);
-        } else if (direction == BOTTOM) {
-            newBitmap = Bitmap.createBitmap(Math.max(sw, fw), fh + sh, Bitmap.Config.ARGB_8888);
-            Canvas canvas = new Canvas(newBitmap);
-            canvas.drawBitmap(first, 0, 0, null);
-            canvas.drawBitmap(second, 0, fh, null);
-        }
-        return newBitmap;
-    }
-
-    /**
-     * 检查bitmap是否正方形的图
+     * 检查bitmap是否正方形的图，不是时在右边或下边填充白色
      */
     public static Bitmap toSquareBitmap(Bitmap bitmap) {
         if (bitmap == null) {
@@ -547,22 +947,96 @@ public class BitmapUtils {
             // 正方形的图直接返回
             return bitmap;
         }
+        return padToAspect(bitmap, 1, 1, Color.WHITE, ANCHOR_START, null);
+    }
+
+    /**
+     * 不缩放，填充到 aspectWidth:aspectHeight 的比例，只分配一个目标Bitmap
+     *
+     * @param fillColor 填充颜色
+     * @param anchor    内容位置 {@link #ANCHOR_CENTER}, {@link #ANCHOR_START} or {@link #ANCHOR_END}
+     * @param pool      目标从 pool 取出，null 新建
+     */
+    @NonNull
+    public static Bitmap padToAspect(@NonNull Bitmap bitmap, int aspectWidth, int aspectHeight, int fillColor, int anchor,
+                                     @Nullable BitmapPool pool) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int destWidth = width;
+        int destHeight = height;
+        if ((long) width * aspectHeight > (long) height * aspectWidth) {
+            destHeight = (int) (((long) width * aspectHeight + aspectWidth - 1) / aspectWidth);
+        } else {
+            destWidth = (int) (((long) height * aspectWidth + aspectHeight - 1) / aspectHeight);
+        }
+        return drawLetterbox(bitmap, destWidth, destHeight, width, height, fillColor, anchor, pool);
+    }
+
+    /**
+     * 等比缩放到 destWidth * destHeight 以内，其余部分填充，只分配一个目标Bitmap
+     *
+     * @param fillColor 填充颜色
+     * @param anchor    内容位置 {@link #ANCHOR_CENTER}, {@link #ANCHOR_START} or {@link #ANCHOR_END}
+     * @param pool      目标从 pool 取出，null 新建
+     */
+    @NonNull
+    public static Bitmap letterbox(@NonNull Bitmap bitmap, int destWidth, int destHeight, int fillColor, int anchor,
+                                   @Nullable BitmapPool pool) {
+        float scale = Math.min((float) destWidth / bitmap.getWidth(), (float) destHeight / bitmap.getHeight());
+        int contentWidth = Math.max(1, Math.min(destWidth, Math.round(bitmap.getWidth() * scale)));
+        int contentHeight = Math.max(1, Math.min(destHeight, Math.round(bitmap.getHeight() * scale)));
+        return drawLetterbox(bitmap, destWidth, destHeight, contentWidth, contentHeight, fillColor, anchor, pool);
+    }
+
+    /**
+     * 按 anchor 计算内容在目标中的偏移
+     */
+    static int anchorOffset(int destSize, int contentSize, int anchor) {
+        switch (anchor) {
+            case ANCHOR_START:
+                return 0;
+            case ANCHOR_END:
+                return destSize - contentSize;
+            default:
+                return (destSize - contentSize) / 2;
+        }
+    }
 
-        int direction;
-        int spaceWidth;
-        int spaceHeight;
-        if (bitmap.getWidth() > bitmap.getHeight()) {
-            direction = BOTTOM;
-            spaceWidth = bitmap.getWidth();
-            spaceHeight = bitmap.getWidth() - bitmap.getHeight();
+    /**
+     * 内容缩放绘制到目标中，只对四周空白区域整块填充，不逐像素写入
+     */
+    @NonNull
+    private static Bitmap drawLetterbox(@NonNull Bitmap bitmap, int destWidth, int destHeight, int contentWidth, int contentHeight,
+                                        int fillColor, int anchor, @Nullable BitmapPool pool) {
+        boolean opaque = !bitmap.hasAlpha() && (fillColor >>> 24) == 0xFF;
+        Bitmap.Config config = bitmap.getConfig() != null && opaque ? bitmap.getConfig() : Bitmap.Config.ARGB_8888;
+        Bitmap destBitmap;
+        if (pool != null) {
+            // 不透明时内容和填充会覆盖所有像素，不需要先清空
+            destBitmap = opaque ? pool.getDirty(destWidth, destHeight, config) : pool.get(destWidth, destHeight, config);
         } else {
-            direction = RIGHT;
-            spaceWidth = bitmap.getHeight() - bitmap.getWidth();
-            spaceHeight = bitmap.getHeight();
+            destBitmap = BitmapTracker.track(Bitmap.createBitmap(destWidth, destHeight, config), "BitmapUtils.letterbox");
+        }
+        int left = anchorOffset(destWidth, contentWidth, anchor);
+        int top = anchorOffset(destHeight, contentHeight, anchor);
+        Rect content = new Rect(left, top, left + contentWidth, top + contentHeight);
+        Canvas canvas = new Canvas(destBitmap);
+        Paint paint = new Paint();
+        paint.setColor(fillColor);
+        if (top > 0) {
+            canvas.drawRect(new Rect(0, 0, destWidth, top), paint);
+        }
+        if (content.bottom < destHeight) {
+            canvas.drawRect(new Rect(0, content.bottom, destWidth, destHeight), paint);
+        }
+        if (left > 0) {
+            canvas.drawRect(new Rect(0, top, left, content.bottom), paint);
+        }
+        if (content.right < destWidth) {
+            canvas.drawRect(new Rect(content.right, top, destWidth, content.bottom), paint);
         }
-        Bitmap blackBitmap = createBitmap(spaceWidth, spaceHeight);
-        Bitmap destBitmap = createBitmapForFateMix(bitmap, blackBitmap, direction);
-        recycleBitmap(blackBitmap);
+        boolean scaled = contentWidth != bitmap.getWidth() || contentHeight != bitmap.getHeight();
+        canvas.drawBitmap(bitmap, null, content, scaled ? new Paint(Paint.FILTER_BITMAP_FLAG) : null);
         return destBitmap;
     }
 
@@ -1,6 +1,7 @@
 package com.rhino.camera.utils;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.os.Environment;
 import android.text.TextUtils;
 import android.util.Base64;
@@ -10,14 +11,19 @@ import androidx.annotation.Nullable;
 
 import com.rhino.log.LogUtils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -330,14 +336,10 @@ public class FileUtils {
      * @return byte[]
      */
     public static byte[] readFileToByte(String filePath) {
-        try (InputStream inputStream = new FileInputStream(filePath);
-             ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
-            int length;
-            byte[] bytes = new byte[1024];
-            while ((length = inputStream.read(bytes)) != -1) {
-                byteArrayOutputStream.write(bytes, 0, length);
-            }
-            return byteArrayOutputStream.toByteArray();
+        File file = new File(filePath);
+        try (InputStream inputStream = new FileInputStream(file)) {
+            // 按文件长度一次分配，不经过中转缓冲和拷贝
+            return GrowableByteBuffer.readFully(inputStream, (int) file.length());
         } catch (IOException e) {
             LogUtils.e(TAG, e.toString());
         }
@@ -368,20 +370,128 @@ public class FileUtils {
      * @return 返回读取结果
      */
     public static byte[] readModelBufferFromAssertToByte(Context context, String fileName) {
-        try (InputStream inputStream = context.getResources().getAssets().open(fileName);
-             ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
-            int length;
-            byte[] bytes = new byte[1024];
-            while ((length = inputStream.read(bytes)) != -1) {
-                byteArrayOutputStream.write(bytes, 0, length);
-            }
-            return byteArrayOutputStream.toByteArray();
+        try (InputStream inputStream = context.getResources().getAssets().open(fileName)) {
+            // AssetInputStream 的 available() 为剩余长度
+            return GrowableByteBuffer.readFully(inputStream, inputStream.available());
         } catch (Exception e) {
             LogUtils.e(TAG, e.toString());
         }
         return null;
     }
 
+    /**
+     * 只读内存映射文件，数据按需从页缓存读入，不占用 Java 堆，适合加载模型
+     *
+     * @param filePath 文件路径
+     * @return 映射的数据，失败返回null
+     */
+    @Nullable
+    public static MappedByteBuffer mapFile(String filePath) {
+        try (FileInputStream inputStream = new FileInputStream(filePath);
+             FileChannel channel = inputStream.getChannel()) {
+            // 映射在 channel 关闭后仍然有效
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            LogUtils.e(TAG, e.toString());
+        }
+        return null;
+    }
+
+    /**
+     * 只读内存映射assets目录下的文件，按 AssetFileDescriptor 的偏移直接映射 apk 中的数据。
+     * 只支持不压缩打包的文件（aaptOptions { noCompress "tflite" }），压缩的文件返回null
+     *
+     * @param context  上下文对象
+     * @param fileName 文件名
+     * @return 映射的数据，失败或文件被压缩返回null
+     */
+    @Nullable
+    public static MappedByteBuffer mapAsset(Context context, String fileName) {
+        try (AssetFileDescriptor fileDescriptor = context.getResources().getAssets().openFd(fileName);
+             FileInputStream inputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
+             FileChannel channel = inputStream.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, fileDescriptor.getStartOffset(), fileDescriptor.getDeclaredLength());
+        } catch (FileNotFoundException e) {
+            // 压缩的文件不能通过文件描述符打开
+            LogUtils.w(TAG, "asset is compressed, can not map: " + fileName);
+        } catch (IOException e) {
+            LogUtils.e(TAG, e.toString());
+        }
+        return null;
+    }
+
+    /**
+     * 读取assets目录下文件到按长度一次分配的直接缓冲区，不占用 Java 堆，用于不能映射的压缩文件
+     *
+     * @param context  上下文对象
+     * @param fileName 文件名
+     * @return 本地字节序的直接缓冲区，失败返回null
+     */
+    @Nullable
+    public static ByteBuffer readAssetToDirectBuffer(Context context, String fileName) {
+        try (InputStream inputStream = context.getResources().getAssets().open(fileName)) {
+            // AssetInputStream 的 available() 为剩余长度
+            return readFullyDirect(inputStream, inputStream.available());
+        } catch (IOException e) {
+            LogUtils.e(TAG, e.toString());
+        }
+        return null;
+    }
+
+    /**
+     * 加载assets目录下的模型，不压缩的文件内存映射，压缩的读到直接缓冲区，都不占用 Java 堆，
+     * 可直接交给 TensorFlow Lite 等需要 MappedByteBuffer 或本地字节序直接缓冲区的推理库
+     *
+     * @param context  上下文对象
+     * @param fileName 文件名
+     * @return 模型数据，失败返回null
+     */
+    @Nullable
+    public static ByteBuffer loadModelBufferFromAssets(Context context, String fileName) {
+        long timestamp = System.currentTimeMillis();
+        Runtime runtime = Runtime.getRuntime();
+        long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+        ByteBuffer buffer = mapAsset(context, fileName);
+        boolean mapped = buffer != null;
+        if (!mapped) {
+            buffer = readAssetToDirectBuffer(context, fileName);
+        }
+        if (buffer != null) {
+            // Java 堆增量不含 GC 回收的部分，只用于确认数据没有进入 Java 堆
+            LogUtils.d(TAG, "加载模型, fileName = " + fileName + ", mapped = " + mapped
+                    + ", length = " + buffer.remaining() + ", time = " + (System.currentTimeMillis() - timestamp)
+                    + ", heapDelta = " + (runtime.totalMemory() - runtime.freeMemory() - heapUsed) / 1024 + "KB");
+        }
+        return buffer;
+    }
+
+    /**
+     * 读取输入流直到结束到直接缓冲区，expectedLength 准确时只分配一次
+     */
+    @NonNull
+    static ByteBuffer readFullyDirect(@NonNull InputStream in, int expectedLength) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(1, expectedLength));
+        ReadableByteChannel channel = Channels.newChannel(in);
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                int next = in.read();
+                if (next == -1) {
+                    break;
+                }
+                // 实际比预计长时扩容
+                ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                larger.put((byte) next);
+                buffer = larger;
+            }
+            if (channel.read(buffer) == -1) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.order(ByteOrder.nativeOrder());
+    }
 
     /**
      * Write data to file.
@@ -403,8 +513,21 @@ public class FileUtils {
      * @return true write success
      */
     public static boolean writeFile(String filePath, byte[] b) {
+        return writeFile(filePath, b, 0, b.length);
+    }
+
+    /**
+     * Write part of the data to file, e.g. {@link GrowableByteBuffer#getBuffer()}.
+     *
+     * @param filePath the file path
+     * @param b        the byte[]
+     * @param off      the start offset
+     * @param len      the number of bytes to write
+     * @return true write success
+     */
+    public static boolean writeFile(String filePath, byte[] b, int off, int len) {
         try (FileOutputStream fileOutputStream = new FileOutputStream(filePath)) {
-            fileOutputStream.write(b);
+            fileOutputStream.write(b, off, len);
         } catch (IOException e) {
             LogUtils.e(TAG, e.toString());
             return false;
@@ -0,0 +1,113 @@
+package com.rhino.camera.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>帧缓存池，按长度复用 byte[] 和 int[]，避免每帧分配</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class FrameBufferPool {
+
+    /**
+     * 默认最多缓存 32MB
+     */
+    public static final int DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+    private final Map<Integer, ArrayDeque<byte[]>> bytePool = new HashMap<>();
+    private final Map<Integer, ArrayDeque<int[]>> intPool = new HashMap<>();
+    private final int maxBytes;
+    private int pooledBytes;
+
+    public FrameBufferPool() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes 池中最多缓存的字节数，超出后归还的数组直接丢弃
+     */
+    public FrameBufferPool(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 获取指定长度的 byte[]，内容不保证清零
+     */
+    @NonNull
+    public synchronized byte[] obtainBytes(int length) {
+        ArrayDeque<byte[]> queue = bytePool.get(length);
+        if (queue != null && !queue.isEmpty()) {
+            pooledBytes -= length;
+            return queue.poll();
+        }
+        return new byte[length];
+    }
+
+    /**
+     * 归还 byte[]
+     */
+    public synchronized void recycle(@Nullable byte[] bytes) {
+        if (bytes == null || pooledBytes + bytes.length > maxBytes) {
+            return;
+        }
+        ArrayDeque<byte[]> queue = bytePool.get(bytes.length);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            bytePool.put(bytes.length, queue);
+        }
+        queue.offer(bytes);
+        pooledBytes += bytes.length;
+    }
+
+    /**
+     * 获取指定长度的 int[]，内容不保证清零
+     */
+    @NonNull
+    public synchronized int[] obtainInts(int length) {
+        ArrayDeque<int[]> queue = intPool.get(length);
+        if (queue != null && !queue.isEmpty()) {
+            pooledBytes -= length * 4;
+            return queue.poll();
+        }
+        return new int[length];
+    }
+
+    /**
+     * 归还 int[]
+     */
+    public synchronized void recycle(@Nullable int[] ints) {
+        if (ints == null || pooledBytes + ints.length * 4 > maxBytes) {
+            return;
+        }
+        ArrayDeque<int[]> queue = intPool.get(ints.length);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            intPool.put(ints.length, queue);
+        }
+        queue.offer(ints);
+        pooledBytes += ints.length * 4;
+    }
+
+    /**
+     * 当前缓存的字节数
+     */
+    public synchronized int getPooledBytes() {
+        return pooledBytes;
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        bytePool.clear();
+        intPool.clear();
+        pooledBytes = 0;
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.rhino.camera.utils;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * <p>可复用、可增长的字节缓冲，替代 ByteArrayOutputStream</p>
+ * <p>直接暴露内部数组和有效长度，可以不拷贝地交给 BitmapFactory.decodeByteArray 或写入文件；
+ * 读取 InputStream 时直接读进内部数组，不需要中转缓冲区</p>
+ * <p>通过 {@link #obtain()} / {@link #recycle()} 在全局池中复用，或用 {@link #getThreadBuffer()} 取当前线程的实例。
+ * 池和线程实例只保留不超过 {@link #MAX_RETAINED_CAPACITY} 的数组，池中合计不超过 {@link #MAX_POOL_BYTES}。
+ * 单个实例不是线程安全的</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class GrowableByteBuffer extends OutputStream {
+
+    /**
+     * 默认初始容量
+     */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    /**
+     * 池中最多保留的实例数
+     */
+    private static final int MAX_POOL_SIZE = 4;
+    /**
+     * 池和线程实例保留的单个数组上限，不超过 4MB 且不超过最大堆的 1/64，超过的用完即丢弃，避免长期占用大块内存
+     */
+    public static final int MAX_RETAINED_CAPACITY = (int) Math.min(4 * 1024 * 1024, Runtime.getRuntime().maxMemory() / 64);
+    /**
+     * 池中保留的数组合计上限
+     */
+    public static final int MAX_POOL_BYTES = MAX_RETAINED_CAPACITY * 2;
+
+    private static final ArrayDeque<GrowableByteBuffer> POOL = new ArrayDeque<>();
+    private static int sPooledBytes;
+    private static final ThreadLocal<GrowableByteBuffer> THREAD_BUFFER = new ThreadLocal<GrowableByteBuffer>() {
+        @Override
+        protected GrowableByteBuffer initialValue() {
+            return new GrowableByteBuffer();
+        }
+    };
+
+    private byte[] buffer;
+    private int size;
+
+    public GrowableByteBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public GrowableByteBuffer(int initialCapacity) {
+        buffer = new byte[Math.max(0, initialCapacity)];
+    }
+
+    /**
+     * 从池中获取一个清空的实例，用完后调用 {@link #recycle()}
+     */
+    @NonNull
+    public static GrowableByteBuffer obtain() {
+        synchronized (POOL) {
+            GrowableByteBuffer buffer = POOL.poll();
+            if (buffer != null) {
+                sPooledBytes -= buffer.buffer.length;
+                return buffer;
+            }
+        }
+        return new GrowableByteBuffer();
+    }
+
+    /**
+     * 当前线程的实例，已清空；上次使用后超过 {@link #MAX_RETAINED_CAPACITY} 的数组在这里丢弃。
+     * 同一线程内嵌套使用时应改用 {@link #obtain()}
+     */
+    @NonNull
+    public static GrowableByteBuffer getThreadBuffer() {
+        trimThreadBuffer();
+        GrowableByteBuffer buffer = THREAD_BUFFER.get();
+        buffer.reset();
+        return buffer;
+    }
+
+    /**
+     * 当前线程的实例超过 {@link #MAX_RETAINED_CAPACITY} 时丢弃，用完线程实例中的数据后调用，之后实例不能再使用
+     */
+    public static void trimThreadBuffer() {
+        if (THREAD_BUFFER.get().buffer.length > MAX_RETAINED_CAPACITY) {
+            THREAD_BUFFER.remove();
+        }
+    }
+
+    /**
+     * 归还到池中，之后不能再使用
+     */
+    public void recycle() {
+        reset();
+        if (buffer.length > MAX_RETAINED_CAPACITY) {
+            return;
+        }
+        synchronized (POOL) {
+            if (POOL.size() < MAX_POOL_SIZE && sPooledBytes + buffer.length <= MAX_POOL_BYTES) {
+                POOL.offer(this);
+                sPooledBytes += buffer.length;
+            }
+        }
+    }
+
+    /**
+     * 读取输入流直到结束，数组由 expectedLength 精确分配时不发生拷贝
+     *
+     * @param expectedLength 预计长度，例如文件长度或 available()，不准确时仍能读完
+     */
+    @NonNull
+    public static byte[] readFully(@NonNull InputStream in, int expectedLength) throws IOException {
+        byte[] bytes = new byte[Math.max(0, expectedLength)];
+        int length = 0;
+        int read;
+        while (length < bytes.length && (read = in.read(bytes, length, bytes.length - length)) != -1) {
+            length += read;
+        }
+        if (length < bytes.length) {
+            return Arrays.copyOf(bytes, length);
+        }
+        int next = in.read();
+        if (next == -1) {
+            return bytes;
+        }
+        // 实际比预计长，余下部分读到池中的缓冲
+        GrowableByteBuffer rest = obtain();
+        try {
+            rest.write(bytes, 0, length);
+            rest.write(next);
+            rest.readFrom(in);
+            return rest.toByteArray();
+        } finally {
+            rest.recycle();
+        }
+    }
+
+    /**
+     * 追加读取输入流直到结束，不关闭输入流
+     *
+     * @return 读取的字节数
+     */
+    public int readFrom(@NonNull InputStream in) throws IOException {
+        int start = size;
+        while (true) {
+            if (size == buffer.length) {
+                ensureCapacity(size + 1);
+            }
+            int read = in.read(buffer, size, buffer.length - size);
+            if (read == -1) {
+                return size - start;
+            }
+            size += read;
+        }
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(size + 1);
+        buffer[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(@NonNull byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureCapacity(size + len);
+        System.arraycopy(b, off, buffer, size, len);
+        size += len;
+    }
+
+    /**
+     * 有效数据写入输出流
+     */
+    public void writeTo(@NonNull OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+
+    /**
+     * 保证容量，扩容时至少翻倍
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, Math.max(buffer.length * 2, 1024)));
+        }
+    }
+
+    /**
+     * 内部数组，有效长度为 {@link #size()}，扩容或下一次写入后可能变化
+     */
+    @NonNull
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * 清空，保留容量
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * 拷贝有效数据
+     */
+    @NonNull
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * 包装有效数据，不拷贝
+     */
+    @NonNull
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(buffer, 0, size);
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.rhino.camera.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <p>JPEG 熵编码数据写入，自动插入 0xFF 后的填充字节，按块做 Huffman 编码</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+final class JpegBitWriter {
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[16 * 1024];
+    private int position;
+    private long bitBuffer;
+    private int bitCount;
+
+    JpegBitWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * 写入 length 位，length 不超过 24
+     */
+    void writeBits(int bits, int length) throws IOException {
+        bitBuffer = (bitBuffer << length) | (bits & ((1 << length) - 1));
+        bitCount += length;
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            int b = (int) (bitBuffer >> bitCount) & 0xFF;
+            writeByte(b);
+            if (b == 0xFF) {
+                writeByte(0);
+            }
+        }
+    }
+
+    /**
+     * 按自然顺序的量化系数编码一个块
+     *
+     * @param block  64个量化后的系数，自然顺序
+     * @param dcDiff 与前一个同分量块 DC 的差值
+     */
+    void writeBlock(int[] block, int dcDiff, JpegTables.HuffmanCodes dc, JpegTables.HuffmanCodes ac) throws IOException {
+        int dcSize = bitLength(dcDiff);
+        writeBits(dc.codes[dcSize], dc.sizes[dcSize]);
+        if (dcSize > 0) {
+            writeBits(dcDiff < 0 ? dcDiff - 1 : dcDiff, dcSize);
+        }
+        int run = 0;
+        for (int k = 1; k < 64; k++) {
+            int value = block[JpegTables.ZIGZAG[k]];
+            if (value == 0) {
+                run++;
+                continue;
+            }
+            while (run > 15) {
+                writeBits(ac.codes[0xF0], ac.sizes[0xF0]);
+                run -= 16;
+            }
+            int size = bitLength(value);
+            int symbol = run << 4 | size;
+            writeBits(ac.codes[symbol], ac.sizes[symbol]);
+            writeBits(value < 0 ? value - 1 : value, size);
+            run = 0;
+        }
+        if (run > 0) {
+            writeBits(ac.codes[0], ac.sizes[0]);
+        }
+    }
+
+    /**
+     * 剩余位补1对齐到字节
+     */
+    void alignToByte() throws IOException {
+        if (bitCount > 0) {
+            writeBits(0x7F, 8 - bitCount);
+        }
+    }
+
+    /**
+     * 对齐后写入标记，例如 RSTn、EOI
+     */
+    void writeMarker(int marker) throws IOException {
+        alignToByte();
+        writeByte(0xFF);
+        writeByte(marker);
+    }
+
+    /**
+     * 对齐并把缓存写入输出流
+     */
+    void flush() throws IOException {
+        alignToByte();
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    /**
+     * 系数的位长（幅度类别）
+     */
+    static int bitLength(int value) {
+        return 32 - Integer.numberOfLeadingZeros(value < 0 ? -value : value);
+    }
+
+}
@@ -0,0 +1,360 @@
+package com.rhino.camera.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+
+/**
+ * <p>JPEG EXIF 方向写入，只改写 APP1 段，不解码像素；也可以读取方向和 IFD1 中嵌入的缩略图位置</p>
+ * <p>已有 Orientation 标签时原地修改；有 EXIF 但没有该标签时在 APP1 末尾追加新的 IFD0；
+ * 没有 EXIF 时在 SOI 之后插入一个只包含 Orientation 的最小 APP1</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class JpegExifWriter {
+
+    public static final int ORIENTATION_UNDEFINED = 0;
+    public static final int ORIENTATION_NORMAL = 1;
+    public static final int ORIENTATION_FLIP_HORIZONTAL = 2;
+    public static final int ORIENTATION_ROTATE_180 = 3;
+    public static final int ORIENTATION_FLIP_VERTICAL = 4;
+    public static final int ORIENTATION_TRANSPOSE = 5;
+    public static final int ORIENTATION_ROTATE_90 = 6;
+    public static final int ORIENTATION_TRANSVERSE = 7;
+    public static final int ORIENTATION_ROTATE_270 = 8;
+
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_APP0 = 0xE0;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_JPEG_INTERCHANGE_FORMAT = 0x0201;
+    private static final int TAG_JPEG_INTERCHANGE_FORMAT_LENGTH = 0x0202;
+    private static final int TYPE_SHORT = 3;
+    private static final int IFD_ENTRY_SIZE = 12;
+    private static final int MAX_SEGMENT_LENGTH = 0xFFFF;
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+    /**
+     * 顺时针旋转角度和镜像转换为 EXIF Orientation，镜像在旋转之后水平翻转
+     *
+     * @param rotateDegree 显示时需要顺时针旋转的角度，0、90、180、270
+     * @param mirror       旋转后是否水平镜像
+     */
+    public static int toExifOrientation(int rotateDegree, boolean mirror) {
+        switch ((rotateDegree % 360 + 360) % 360) {
+            case 90:
+                return mirror ? ORIENTATION_TRANSPOSE : ORIENTATION_ROTATE_90;
+            case 180:
+                return mirror ? ORIENTATION_FLIP_VERTICAL : ORIENTATION_ROTATE_180;
+            case 270:
+                return mirror ? ORIENTATION_TRANSVERSE : ORIENTATION_ROTATE_270;
+            default:
+                return mirror ? ORIENTATION_FLIP_HORIZONTAL : ORIENTATION_NORMAL;
+        }
+    }
+
+    /**
+     * 读取 EXIF Orientation
+     *
+     * @return Orientation，没有 EXIF 或没有该标签返回 {@link #ORIENTATION_UNDEFINED}
+     */
+    public static int getOrientation(@NonNull byte[] jpeg) throws IOException {
+        int app1 = findExifSegment(jpeg);
+        if (app1 < 0) {
+            return ORIENTATION_UNDEFINED;
+        }
+        int entry = findOrientationEntry(jpeg, app1);
+        if (entry < 0) {
+            return ORIENTATION_UNDEFINED;
+        }
+        return readShort(jpeg, entry + 8, isLittleEndian(jpeg, app1 + 10));
+    }
+
+    /**
+     * 查找 EXIF IFD1 中嵌入的 JPEG 缩略图，jpeg 可以只是文件开头包含完整 APP1 的部分
+     *
+     * @return {偏移, 长度}，偏移相对 jpeg 开头；没有缩略图返回 null
+     */
+    @Nullable
+    public static int[] getThumbnailRange(@NonNull byte[] jpeg) throws IOException {
+        int app1 = findExifSegment(jpeg);
+        if (app1 < 0) {
+            return null;
+        }
+        int tiff = app1 + 10;
+        int end = app1 + 2 + readShort(jpeg, app1 + 2, false);
+        boolean littleEndian = isLittleEndian(jpeg, tiff);
+        int ifd0 = tiff + readInt(jpeg, tiff + 4, littleEndian);
+        if (ifd0 < tiff + 8 || ifd0 + 2 > end) {
+            throw new IOException("invalid exif ifd0 offset");
+        }
+        int next = ifd0 + 2 + readShort(jpeg, ifd0, littleEndian) * IFD_ENTRY_SIZE;
+        if (next + 4 > end) {
+            return null;
+        }
+        int ifd1Offset = readInt(jpeg, next, littleEndian);
+        int ifd1 = tiff + ifd1Offset;
+        if (ifd1Offset <= 0 || ifd1 + 2 > end) {
+            return null;
+        }
+        int count = readShort(jpeg, ifd1, littleEndian);
+        int offset = -1;
+        int length = -1;
+        for (int i = 0; i < count && ifd1 + 2 + (i + 1) * IFD_ENTRY_SIZE <= end; i++) {
+            int entry = ifd1 + 2 + i * IFD_ENTRY_SIZE;
+            int tag = readShort(jpeg, entry, littleEndian);
+            if (tag == TAG_JPEG_INTERCHANGE_FORMAT) {
+                offset = readInt(jpeg, entry + 8, littleEndian);
+            } else if (tag == TAG_JPEG_INTERCHANGE_FORMAT_LENGTH) {
+                length = readInt(jpeg, entry + 8, littleEndian);
+            }
+        }
+        if (offset <= 0 || length <= 0 || tiff + offset + length > end) {
+            return null;
+        }
+        return new int[]{tiff + offset, length};
+    }
+
+    /**
+     * 写入 EXIF Orientation
+     *
+     * @param jpeg        JPEG数据，已有 Orientation 标签时直接修改这个数组
+     * @param orientation {@link #ORIENTATION_NORMAL} ~ {@link #ORIENTATION_ROTATE_270}
+     * @return 写入后的JPEG数据，原地修改时返回 jpeg 本身
+     * @throws IOException 不是JPEG或EXIF格式错误
+     */
+    @NonNull
+    public static byte[] setOrientation(@NonNull byte[] jpeg, int orientation) throws IOException {
+        if (orientation < ORIENTATION_NORMAL || orientation > ORIENTATION_ROTATE_270) {
+            throw new IllegalArgumentException("invalid orientation: " + orientation);
+        }
+        int app1 = findExifSegment(jpeg);
+        if (app1 < 0) {
+            return insertExifSegment(jpeg, orientation);
+        }
+        boolean littleEndian = isLittleEndian(jpeg, app1 + 10);
+        int entry = findOrientationEntry(jpeg, app1);
+        if (entry >= 0) {
+            // 只按 tag 匹配，类型不是 SHORT 时也原地改写为 SHORT，一个 SHORT 值总能放进条目的值域
+            writeOrientationEntry(jpeg, entry, orientation, littleEndian);
+            return jpeg;
+        }
+        return appendIfd0(jpeg, app1, orientation, littleEndian);
+    }
+
+    /**
+     * 查找 EXIF APP1 段
+     *
+     * @return APP1 标记 0xFF 的位置，没有返回 -1
+     */
+    private static int findExifSegment(byte[] jpeg) throws IOException {
+        checkSoi(jpeg);
+        int offset = 2;
+        while (offset + 4 <= jpeg.length) {
+            if ((jpeg[offset] & 0xFF) != 0xFF) {
+                throw new IOException("invalid jpeg marker at " + offset);
+            }
+            int marker = jpeg[offset + 1] & 0xFF;
+            if (marker == 0xFF) {
+                // 填充字节
+                offset++;
+                continue;
+            }
+            if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                return -1;
+            }
+            int length = readShort(jpeg, offset + 2, false);
+            if (length < 2 || offset + 2 + length > jpeg.length) {
+                throw new IOException("invalid jpeg segment length at " + offset);
+            }
+            if (marker == MARKER_APP1 && length >= 2 + EXIF_HEADER.length + 8 && startsWith(jpeg, offset + 4, EXIF_HEADER)) {
+                return offset;
+            }
+            offset += 2 + length;
+        }
+        return -1;
+    }
+
+    /**
+     * 查找 IFD0 中 Orientation 条目
+     *
+     * @return 条目位置，没有返回 -1
+     */
+    private static int findOrientationEntry(byte[] jpeg, int app1) throws IOException {
+        int tiff = app1 + 10;
+        int end = app1 + 2 + readShort(jpeg, app1 + 2, false);
+        boolean littleEndian = isLittleEndian(jpeg, tiff);
+        int ifd0 = tiff + readInt(jpeg, tiff + 4, littleEndian);
+        if (ifd0 < tiff + 8 || ifd0 + 2 > end) {
+            throw new IOException("invalid exif ifd0 offset");
+        }
+        int count = readShort(jpeg, ifd0, littleEndian);
+        if (ifd0 + 2 + count * IFD_ENTRY_SIZE > end) {
+            throw new IOException("invalid exif ifd0 entry count");
+        }
+        for (int i = 0; i < count; i++) {
+            int entry = ifd0 + 2 + i * IFD_ENTRY_SIZE;
+            if (readShort(jpeg, entry, littleEndian) == TAG_ORIENTATION) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 在 APP1 末尾追加包含 Orientation 的新 IFD0，只在原 IFD0 没有 Orientation 时调用，其它条目原样复制，
+     * 条目中的偏移都是相对 TIFF 头的，位置不变，不需要修改
+     */
+    private static byte[] appendIfd0(byte[] jpeg, int app1, int orientation, boolean littleEndian) throws IOException {
+        int tiff = app1 + 10;
+        int length = readShort(jpeg, app1 + 2, false);
+        int end = app1 + 2 + length;
+        int ifd0 = tiff + readInt(jpeg, tiff + 4, littleEndian);
+        int count = readShort(jpeg, ifd0, littleEndian);
+        // IFD 需要字对齐
+        int padding = (end - tiff) & 1;
+        int newIfd0 = end + padding;
+        int newLength = length + padding + 2 + (count + 1) * IFD_ENTRY_SIZE + 4;
+        if (newLength > MAX_SEGMENT_LENGTH) {
+            throw new IOException("exif segment too large");
+        }
+        int grow = newLength - length;
+        byte[] out = new byte[jpeg.length + grow];
+        System.arraycopy(jpeg, 0, out, 0, end);
+        System.arraycopy(jpeg, end, out, end + grow, jpeg.length - end);
+        writeShort(out, app1 + 2, newLength, false);
+        writeInt(out, tiff + 4, newIfd0 - tiff, littleEndian);
+        if (padding > 0) {
+            out[end] = 0;
+        }
+        writeShort(out, newIfd0, count + 1, littleEndian);
+        // 按 tag 升序插入
+        int dst = newIfd0 + 2;
+        boolean inserted = false;
+        for (int i = 0; i < count; i++) {
+            int src = ifd0 + 2 + i * IFD_ENTRY_SIZE;
+            if (!inserted && readShort(jpeg, src, littleEndian) > TAG_ORIENTATION) {
+                writeOrientationEntry(out, dst, orientation, littleEndian);
+                dst += IFD_ENTRY_SIZE;
+                inserted = true;
+            }
+            System.arraycopy(jpeg, src, out, dst, IFD_ENTRY_SIZE);
+            dst += IFD_ENTRY_SIZE;
+        }
+        if (!inserted) {
+            writeOrientationEntry(out, dst, orientation, littleEndian);
+            dst += IFD_ENTRY_SIZE;
+        }
+        // 下一个 IFD（IFD1 缩略图）偏移保持不变
+        System.arraycopy(jpeg, ifd0 + 2 + count * IFD_ENTRY_SIZE, out, dst, 4);
+        return out;
+    }
+
+    /**
+     * 插入最小的 EXIF APP1，有 JFIF APP0 时放在 APP0 之后
+     */
+    private static byte[] insertExifSegment(byte[] jpeg, int orientation) {
+        int position = 2;
+        if (jpeg.length >= 6 && (jpeg[2] & 0xFF) == 0xFF && (jpeg[3] & 0xFF) == MARKER_APP0) {
+            position = 4 + readShort(jpeg, 4, false);
+        }
+        int length = 2 + EXIF_HEADER.length + 8 + 2 + IFD_ENTRY_SIZE + 4;
+        byte[] out = new byte[jpeg.length + 2 + length];
+        System.arraycopy(jpeg, 0, out, 0, position);
+        int offset = position;
+        out[offset++] = (byte) 0xFF;
+        out[offset++] = (byte) MARKER_APP1;
+        writeShort(out, offset, length, false);
+        offset += 2;
+        System.arraycopy(EXIF_HEADER, 0, out, offset, EXIF_HEADER.length);
+        offset += EXIF_HEADER.length;
+        // 大端 TIFF 头，IFD0 紧跟其后
+        out[offset++] = 'M';
+        out[offset++] = 'M';
+        writeShort(out, offset, 42, false);
+        offset += 2;
+        writeInt(out, offset, 8, false);
+        offset += 4;
+        writeShort(out, offset, 1, false);
+        offset += 2;
+        writeOrientationEntry(out, offset, orientation, false);
+        offset += IFD_ENTRY_SIZE;
+        writeInt(out, offset, 0, false);
+        offset += 4;
+        System.arraycopy(jpeg, position, out, offset, jpeg.length - position);
+        return out;
+    }
+
+    private static void writeOrientationEntry(byte[] out, int offset, int orientation, boolean littleEndian) {
+        writeShort(out, offset, TAG_ORIENTATION, littleEndian);
+        writeShort(out, offset + 2, TYPE_SHORT, littleEndian);
+        writeInt(out, offset + 4, 1, littleEndian);
+        // SHORT 值放在值域的前两个字节
+        writeInt(out, offset + 8, 0, littleEndian);
+        writeShort(out, offset + 8, orientation, littleEndian);
+    }
+
+    private static void checkSoi(byte[] jpeg) throws IOException {
+        if (jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != MARKER_SOI) {
+            throw new IOException("not a jpeg");
+        }
+    }
+
+    private static boolean isLittleEndian(byte[] jpeg, int tiff) throws IOException {
+        if (jpeg[tiff] == 'I' && jpeg[tiff + 1] == 'I') {
+            return true;
+        }
+        if (jpeg[tiff] == 'M' && jpeg[tiff + 1] == 'M') {
+            return false;
+        }
+        throw new IOException("invalid tiff byte order");
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readShort(byte[] bytes, int offset, boolean littleEndian) {
+        if (littleEndian) {
+            return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+        }
+        return (bytes[offset] & 0xFF) << 8 | (bytes[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] bytes, int offset, boolean littleEndian) {
+        if (littleEndian) {
+            return readShort(bytes, offset, true) | readShort(bytes, offset + 2, true) << 16;
+        }
+        return readShort(bytes, offset, false) << 16 | readShort(bytes, offset + 2, false);
+    }
+
+    private static void writeShort(byte[] bytes, int offset, int value, boolean littleEndian) {
+        if (littleEndian) {
+            bytes[offset] = (byte) value;
+            bytes[offset + 1] = (byte) (value >> 8);
+        } else {
+            bytes[offset] = (byte) (value >> 8);
+            bytes[offset + 1] = (byte) value;
+        }
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value, boolean littleEndian) {
+        if (littleEndian) {
+            writeShort(bytes, offset, value, true);
+            writeShort(bytes, offset + 2, value >> 16, true);
+        } else {
+            writeShort(bytes, offset, value >> 16, false);
+            writeShort(bytes, offset + 2, value, false);
+        }
+    }
+
+}
@@ -0,0 +1,463 @@
+package com.rhino.camera.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Calendar;
+
+/**
+ * <p>JPEG 文件头解析，不解码像素：只遍历 SOF 之前的标记段，读取宽高、EXIF 方向、拍摄时间和嵌入的缩略图</p>
+ * <p>解析文件时逐段读取标记直到 SOF，SOF 在开头 {@link #HEADER_READ_SIZE} 内时读入 SOF 之前的数据，否则只读入 EXIF 和 SOF 段。
+ * 缩略图都以切片返回，不拷贝数据：解析文件时是读入的文件头的切片，解析 ByteBuffer 时是源数据的切片</p>
+ * <p>EXIF 数据损坏时忽略出错的部分，不影响宽高的读取</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class JpegHeaderParser {
+
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_TEM = 0x01;
+    private static final int MARKER_RST0 = 0xD0;
+    private static final int MARKER_RST7 = 0xD7;
+
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_DATE_TIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    private static final int TAG_JPEG_INTERCHANGE_FORMAT = 0x0201;
+    private static final int TAG_JPEG_INTERCHANGE_FORMAT_LENGTH = 0x0202;
+    private static final int IFD_ENTRY_SIZE = 12;
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+    /**
+     * 解析文件时 SOF 在这之内则一次读入 SOF 之前的全部数据，否则只读入 EXIF 和 SOF 段
+     */
+    private static final int HEADER_READ_SIZE = 64 * 1024;
+
+    /**
+     * 解析结果
+     */
+    public static class JpegHeader {
+        private int width;
+        private int height;
+        private int components;
+        private boolean progressive;
+        private int orientation = JpegExifWriter.ORIENTATION_UNDEFINED;
+        private String dateTime;
+        private long timestamp = -1;
+        private ByteBuffer thumbnail;
+
+        /**
+         * 存储的宽，未按 EXIF 方向旋转
+         */
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * 存储的高，未按 EXIF 方向旋转
+         */
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * 按 EXIF 方向旋转后显示的宽
+         */
+        public int getDisplayWidth() {
+            return isTransposed() ? height : width;
+        }
+
+        /**
+         * 按 EXIF 方向旋转后显示的高
+         */
+        public int getDisplayHeight() {
+            return isTransposed() ? width : height;
+        }
+
+        private boolean isTransposed() {
+            return orientation >= JpegExifWriter.ORIENTATION_TRANSPOSE && orientation <= JpegExifWriter.ORIENTATION_ROTATE_270;
+        }
+
+        /**
+         * 颜色分量数，1为灰度，3为YCbCr
+         */
+        public int getComponents() {
+            return components;
+        }
+
+        public boolean isProgressive() {
+            return progressive;
+        }
+
+        /**
+         * EXIF Orientation，没有时为 {@link JpegExifWriter#ORIENTATION_UNDEFINED}
+         */
+        public int getOrientation() {
+            return orientation;
+        }
+
+        /**
+         * EXIF 拍摄时间 "yyyy:MM:dd HH:mm:ss"，优先 DateTimeOriginal，没有时为 null
+         */
+        @Nullable
+        public String getDateTime() {
+            return dateTime;
+        }
+
+        /**
+         * 按本地时区解析的拍摄时间毫秒数，没有时为 -1
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * EXIF 中嵌入的 JPEG 缩略图，是读入的文件头或源数据的切片，没有时为 null
+         */
+        @Nullable
+        public ByteBuffer getThumbnail() {
+            return thumbnail == null ? null : thumbnail.duplicate();
+        }
+
+        @Override
+        public String toString() {
+            return "JpegHeader{" +
+                    "width=" + width +
+                    ", height=" + height +
+                    ", components=" + components +
+                    ", progressive=" + progressive +
+                    ", orientation=" + orientation +
+                    ", dateTime=" + dateTime +
+                    ", thumbnail=" + (thumbnail == null ? 0 : thumbnail.remaining()) +
+                    '}';
+        }
+    }
+
+    /**
+     * 读取文件头并解析，逐段读取标记直到 SOF，不读取图像数据
+     *
+     * @throws IOException 读取失败、不是JPEG或没有 SOF
+     */
+    @NonNull
+    public static JpegHeader parse(@NonNull File file) throws IOException {
+        try (FileInputStream inputStream = new FileInputStream(file);
+             FileChannel channel = inputStream.getChannel()) {
+            return parse(readHeader(channel));
+        }
+    }
+
+    /**
+     * 只读取各段的标记和长度，逐段找到 SOF。SOF 段在开头 {@link #HEADER_READ_SIZE} 内时一次读入 SOF 之前的全部数据；
+     * 否则（APPn、ICC 等段很大）只把 EXIF 的 APP1 段和 SOF 段拼成新的文件头，其余的段不读入
+     *
+     * @throws IOException 不是JPEG或没有 SOF
+     */
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer marker = ByteBuffer.allocate(4 + EXIF_HEADER.length).order(ByteOrder.BIG_ENDIAN);
+        marker.limit(4);
+        if (size < 4 || !readFully(channel, marker, 0)
+                || (marker.get(0) & 0xFF) != 0xFF || (marker.get(1) & 0xFF) != MARKER_SOI) {
+            throw new IOException("not a jpeg");
+        }
+        long exifOffset = -1;
+        int exifLength = 0;
+        long offset = 2;
+        while (offset + 4 <= size) {
+            marker.clear();
+            marker.limit(4);
+            readFully(channel, marker, offset);
+            if ((marker.get(0) & 0xFF) != 0xFF) {
+                throw new IOException("invalid jpeg marker at " + offset);
+            }
+            int type = marker.get(1) & 0xFF;
+            if (type == 0xFF) {
+                offset++;
+                continue;
+            }
+            if (type == MARKER_TEM || (type >= MARKER_RST0 && type <= MARKER_RST7)) {
+                offset += 2;
+                continue;
+            }
+            if (type == MARKER_SOS || type == MARKER_EOI) {
+                break;
+            }
+            int length = marker.getShort(2) & 0xFFFF;
+            if (length < 2 || offset + 2 + length > size) {
+                throw new IOException("invalid jpeg segment length at " + offset);
+            }
+            if (isSof(type)) {
+                ByteBuffer header;
+                if (offset + 2 + length <= HEADER_READ_SIZE) {
+                    header = ByteBuffer.allocate((int) offset + 2 + length);
+                    readFully(channel, header, 0);
+                } else {
+                    header = ByteBuffer.allocate(2 + exifLength + 2 + length);
+                    header.put((byte) 0xFF).put((byte) MARKER_SOI);
+                    if (exifOffset >= 0) {
+                        header.limit(2 + exifLength);
+                        readFully(channel, header, exifOffset);
+                        header.limit(header.capacity());
+                    }
+                    readFully(channel, header, offset);
+                }
+                header.flip();
+                return header;
+            }
+            if (type == MARKER_APP1 && exifOffset < 0 && length >= 2 + EXIF_HEADER.length + 8) {
+                marker.limit(marker.capacity());
+                readFully(channel, marker, offset + 4);
+                if (startsWith(marker, 4, EXIF_HEADER)) {
+                    exifOffset = offset;
+                    exifLength = 2 + length;
+                }
+            }
+            offset += 2 + length;
+        }
+        throw new IOException("sof not found");
+    }
+
+    /**
+     * 从文件 position 处读取，填满 buffer 剩余的空间
+     *
+     * @return 是否读满，文件提前结束时返回 false
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long end = position + buffer.remaining();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, end - buffer.remaining()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 解析 position 到 limit 之间的JPEG数据，不修改 jpeg 的 position
+     *
+     * @throws IOException 不是JPEG或没有 SOF
+     */
+    @NonNull
+    public static JpegHeader parse(@NonNull ByteBuffer jpeg) throws IOException {
+        ByteBuffer buffer = jpeg.slice().order(ByteOrder.BIG_ENDIAN);
+        int limit = buffer.limit();
+        if (limit < 4 || (buffer.get(0) & 0xFF) != 0xFF || (buffer.get(1) & 0xFF) != MARKER_SOI) {
+            throw new IOException("not a jpeg");
+        }
+        JpegHeader header = new JpegHeader();
+        boolean exifParsed = false;
+        int offset = 2;
+        while (offset + 4 <= limit) {
+            if ((buffer.get(offset) & 0xFF) != 0xFF) {
+                throw new IOException("invalid jpeg marker at " + offset);
+            }
+            int marker = buffer.get(offset + 1) & 0xFF;
+            if (marker == 0xFF) {
+                // 填充字节
+                offset++;
+                continue;
+            }
+            if (marker == MARKER_TEM || (marker >= MARKER_RST0 && marker <= MARKER_RST7)) {
+                offset += 2;
+                continue;
+            }
+            if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                break;
+            }
+            int length = buffer.getShort(offset + 2) & 0xFFFF;
+            if (length < 2 || offset + 2 + length > limit) {
+                throw new IOException("invalid jpeg segment length at " + offset);
+            }
+            if (isSof(marker)) {
+                if (length < 8) {
+                    throw new IOException("invalid sof length at " + offset);
+                }
+                header.height = buffer.getShort(offset + 5) & 0xFFFF;
+                header.width = buffer.getShort(offset + 7) & 0xFFFF;
+                header.components = buffer.get(offset + 9) & 0xFF;
+                header.progressive = marker == 0xC2 || marker == 0xC6 || marker == 0xCA || marker == 0xCE;
+                // APP 段都在 SOF 之前，后面的 DHT、DQT 等不需要
+                return header;
+            }
+            if (marker == MARKER_APP1 && !exifParsed && length >= 2 + EXIF_HEADER.length + 8
+                    && startsWith(buffer, offset + 4, EXIF_HEADER)) {
+                exifParsed = true;
+                parseExif(buffer, offset + 10, offset + 2 + length, header);
+            }
+            offset += 2 + length;
+        }
+        throw new IOException("sof not found");
+    }
+
+    private static boolean isSof(int marker) {
+        // C4 DHT、C8 保留、CC DAC 不是 SOF
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    /**
+     * 解析 TIFF 结构，越界的条目忽略
+     *
+     * @param tiff TIFF 头位置，EXIF 中的偏移都相对它
+     * @param end  APP1 段结束位置
+     */
+    private static void parseExif(ByteBuffer buffer, int tiff, int end, JpegHeader header) {
+        ByteBuffer exif = buffer.duplicate();
+        if (buffer.get(tiff) == 'I' && buffer.get(tiff + 1) == 'I') {
+            exif.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (buffer.get(tiff) != 'M' || buffer.get(tiff + 1) != 'M') {
+            return;
+        }
+        int ifd0 = offsetOf(exif, tiff, tiff + 4, end);
+        if (ifd0 < 0) {
+            return;
+        }
+        int count = exif.getShort(ifd0) & 0xFFFF;
+        int exifIfd = -1;
+        for (int i = 0; i < count; i++) {
+            int entry = ifd0 + 2 + i * IFD_ENTRY_SIZE;
+            if (entry + IFD_ENTRY_SIZE > end) {
+                return;
+            }
+            int tag = exif.getShort(entry) & 0xFFFF;
+            if (tag == TAG_ORIENTATION) {
+                header.orientation = exif.getShort(entry + 8) & 0xFFFF;
+            } else if (tag == TAG_DATE_TIME && header.dateTime == null) {
+                header.dateTime = readAscii(exif, tiff, entry, end);
+            } else if (tag == TAG_EXIF_IFD) {
+                exifIfd = offsetOf(exif, tiff, entry + 8, end);
+            }
+        }
+        if (exifIfd >= 0) {
+            String original = findAscii(exif, tiff, exifIfd, end, TAG_DATE_TIME_ORIGINAL);
+            if (original != null) {
+                header.dateTime = original;
+            }
+        }
+        header.timestamp = parseDateTime(header.dateTime);
+
+        int next = ifd0 + 2 + count * IFD_ENTRY_SIZE;
+        if (next + 4 > end) {
+            return;
+        }
+        int ifd1 = offsetOf(exif, tiff, next, end);
+        if (ifd1 < 0) {
+            return;
+        }
+        int thumbnailOffset = -1;
+        int thumbnailLength = -1;
+        int ifd1Count = exif.getShort(ifd1) & 0xFFFF;
+        for (int i = 0; i < ifd1Count && ifd1 + 2 + (i + 1) * IFD_ENTRY_SIZE <= end; i++) {
+            int entry = ifd1 + 2 + i * IFD_ENTRY_SIZE;
+            int tag = exif.getShort(entry) & 0xFFFF;
+            if (tag == TAG_JPEG_INTERCHANGE_FORMAT) {
+                thumbnailOffset = exif.getInt(entry + 8);
+            } else if (tag == TAG_JPEG_INTERCHANGE_FORMAT_LENGTH) {
+                thumbnailLength = exif.getInt(entry + 8);
+            }
+        }
+        if (thumbnailOffset > 0 && thumbnailLength > 0 && (long) tiff + thumbnailOffset + thumbnailLength <= end) {
+            ByteBuffer thumbnail = buffer.duplicate();
+            thumbnail.limit(tiff + thumbnailOffset + thumbnailLength);
+            thumbnail.position(tiff + thumbnailOffset);
+            header.thumbnail = thumbnail.slice();
+        }
+    }
+
+    /**
+     * 读取 position 处相对 TIFF 头的 IFD 偏移
+     *
+     * @return IFD 的绝对位置，无效时返回 -1
+     */
+    private static int offsetOf(ByteBuffer exif, int tiff, int position, int end) {
+        long ifd = tiff + (exif.getInt(position) & 0xFFFFFFFFL);
+        if (ifd < tiff + 8 || ifd + 2 > end) {
+            return -1;
+        }
+        return (int) ifd;
+    }
+
+    @Nullable
+    private static String findAscii(ByteBuffer exif, int tiff, int ifd, int end, int targetTag) {
+        int count = exif.getShort(ifd) & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int entry = ifd + 2 + i * IFD_ENTRY_SIZE;
+            if (entry + IFD_ENTRY_SIZE > end) {
+                return null;
+            }
+            if ((exif.getShort(entry) & 0xFFFF) == targetTag) {
+                return readAscii(exif, tiff, entry, end);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 读取 ASCII 类型条目，去掉结尾的 0
+     */
+    @Nullable
+    private static String readAscii(ByteBuffer exif, int tiff, int entry, int end) {
+        int count = exif.getInt(entry + 4);
+        if (count <= 0 || count > 256) {
+            return null;
+        }
+        // 不超过4字节时值直接存放在条目中
+        long start = count <= 4 ? entry + 8 : tiff + (exif.getInt(entry + 8) & 0xFFFFFFFFL);
+        if (start + count > end) {
+            return null;
+        }
+        char[] chars = new char[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int c = exif.get((int) start + i) & 0xFF;
+            if (c == 0) {
+                break;
+            }
+            chars[length++] = (char) c;
+        }
+        return length > 0 ? new String(chars, 0, length) : null;
+    }
+
+    /**
+     * 解析 "yyyy:MM:dd HH:mm:ss"，按本地时区
+     *
+     * @return 毫秒数，格式不对返回 -1
+     */
+    static long parseDateTime(@Nullable String dateTime) {
+        if (dateTime == null || dateTime.length() < 19) {
+            return -1;
+        }
+        try {
+            Calendar calendar = Calendar.getInstance();
+            calendar.clear();
+            calendar.set(Integer.parseInt(dateTime.substring(0, 4)),
+                    Integer.parseInt(dateTime.substring(5, 7)) - 1,
+                    Integer.parseInt(dateTime.substring(8, 10)),
+                    Integer.parseInt(dateTime.substring(11, 13)),
+                    Integer.parseInt(dateTime.substring(14, 16)),
+                    Integer.parseInt(dateTime.substring(17, 19)));
+            return calendar.getTimeInMillis();
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int offset, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(offset + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
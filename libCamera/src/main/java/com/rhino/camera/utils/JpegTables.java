@@ -0,0 +1,246 @@
+package com.rhino.camera.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <p>JPEG 编解码公用常量：Z字形顺序、标准量化表和标准 Huffman 表（ITU T.81 Annex K）</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+final class JpegTables {
+
+    static final int MARKER_SOI = 0xD8;
+    static final int MARKER_EOI = 0xD9;
+    static final int MARKER_SOS = 0xDA;
+    static final int MARKER_DQT = 0xDB;
+    static final int MARKER_DRI = 0xDD;
+    static final int MARKER_DHT = 0xC4;
+    static final int MARKER_SOF0 = 0xC0;
+    static final int MARKER_SOF1 = 0xC1;
+    static final int MARKER_RST0 = 0xD0;
+    static final int MARKER_COM = 0xFE;
+
+    /**
+     * Z字形序号对应的自然顺序（行优先）下标
+     */
+    static final int[] ZIGZAG = {
+            0, 1, 8, 16, 9, 2, 3, 10,
+            17, 24, 32, 25, 18, 11, 4, 5,
+            12, 19, 26, 33, 40, 48, 41, 34,
+            27, 20, 13, 6, 7, 14, 21, 28,
+            35, 42, 49, 56, 57, 50, 43, 36,
+            29, 22, 15, 23, 30, 37, 44, 51,
+            58, 59, 52, 45, 38, 31, 39, 46,
+            53, 60, 61, 54, 47, 55, 62, 63
+    };
+
+    /**
+     * 标准亮度量化表，自然顺序，质量50
+     */
+    static final int[] STD_LUMINANCE_QUANT = {
+            16, 11, 10, 16, 24, 40, 51, 61,
+            12, 12, 14, 19, 26, 58, 60, 55,
+            14, 13, 16, 24, 40, 57, 69, 56,
+            14, 17, 22, 29, 51, 87, 80, 62,
+            18, 22, 37, 56, 68, 109, 103, 77,
+            24, 35, 55, 64, 81, 104, 113, 92,
+            49, 64, 78, 87, 103, 121, 120, 101,
+            72, 92, 95, 98, 112, 100, 103, 99
+    };
+
+    /**
+     * 标准色度量化表，自然顺序，质量50
+     */
+    static final int[] STD_CHROMINANCE_QUANT = {
+            17, 18, 24, 47, 99, 99, 99, 99,
+            18, 21, 26, 66, 99, 99, 99, 99,
+            24, 26, 56, 99, 99, 99, 99, 99,
+            47, 66, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99,
+            99, 99, 99, 99, 99, 99, 99, 99
+    };
+
+    static final byte[] DC_LUMINANCE_BITS = {0, 1, 5, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0};
+    static final byte[] DC_LUMINANCE_VALUES = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+    static final byte[] DC_CHROMINANCE_BITS = {0, 3, 1, 1, 1, 1, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0};
+    static final byte[] DC_CHROMINANCE_VALUES = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11};
+    static final byte[] AC_LUMINANCE_BITS = {0, 2, 1, 3, 3, 2, 4, 3, 5, 5, 4, 4, 0, 0, 1, 0x7d};
+    static final byte[] AC_LUMINANCE_VALUES = toBytes(
+            0x01, 0x02, 0x03, 0x00, 0x04, 0x11, 0x05, 0x12, 0x21, 0x31, 0x41, 0x06, 0x13, 0x51, 0x61, 0x07,
+            0x22, 0x71, 0x14, 0x32, 0x81, 0x91, 0xa1, 0x08, 0x23, 0x42, 0xb1, 0xc1, 0x15, 0x52, 0xd1, 0xf0,
+            0x24, 0x33, 0x62, 0x72, 0x82, 0x09, 0x0a, 0x16, 0x17, 0x18, 0x19, 0x1a, 0x25, 0x26, 0x27, 0x28,
+            0x29, 0x2a, 0x34, 0x35, 0x36, 0x37, 0x38, 0x39, 0x3a, 0x43, 0x44, 0x45, 0x46, 0x47, 0x48, 0x49,
+            0x4a, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58, 0x59, 0x5a, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69,
+            0x6a, 0x73, 0x74, 0x75, 0x76, 0x77, 0x78, 0x79, 0x7a, 0x83, 0x84, 0x85, 0x86, 0x87, 0x88, 0x89,
+            0x8a, 0x92, 0x93, 0x94, 0x95, 0x96, 0x97, 0x98, 0x99, 0x9a, 0xa2, 0xa3, 0xa4, 0xa5, 0xa6, 0xa7,
+            0xa8, 0xa9, 0xaa, 0xb2, 0xb3, 0xb4, 0xb5, 0xb6, 0xb7, 0xb8, 0xb9, 0xba, 0xc2, 0xc3, 0xc4, 0xc5,
+            0xc6, 0xc7, 0xc8, 0xc9, 0xca, 0xd2, 0xd3, 0xd4, 0xd5, 0xd6, 0xd7, 0xd8, 0xd9, 0xda, 0xe1, 0xe2,
+            0xe3, 0xe4, 0xe5, 0xe6, 0xe7, 0xe8, 0xe9, 0xea, 0xf1, 0xf2, 0xf3, 0xf4, 0xf5, 0xf6, 0xf7, 0xf8,
+            0xf9, 0xfa);
+    static final byte[] AC_CHROMINANCE_BITS = {0, 2, 1, 2, 4, 4, 3, 4, 7, 5, 4, 4, 0, 1, 2, 0x77};
+    static final byte[] AC_CHROMINANCE_VALUES = toBytes(
+            0x00, 0x01, 0x02, 0x03, 0x11, 0x04, 0x05, 0x21, 0x31, 0x06, 0x12, 0x41, 0x51, 0x07, 0x61, 0x71,
+            0x13, 0x22, 0x32, 0x81, 0x08, 0x14, 0x42, 0x91, 0xa1, 0xb1, 0xc1, 0x09, 0x23, 0x33, 0x52, 0xf0,
+            0x15, 0x62, 0x72, 0xd1, 0x0a, 0x16, 0x24, 0x34, 0xe1, 0x25, 0xf1, 0x17, 0x18, 0x19, 0x1a, 0x26,
+            0x27, 0x28, 0x29, 0x2a, 0x35, 0x36, 0x37, 0x38, 0x39, 0x3a, 0x43, 0x44, 0x45, 0x46, 0x47, 0x48,
+            0x49, 0x4a, 0x53, 0x54, 0x55, 0x56, 0x57, 0x58, 0x59, 0x5a, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68,
+            0x69, 0x6a, 0x73, 0x74, 0x75, 0x76, 0x77, 0x78, 0x79, 0x7a, 0x82, 0x83, 0x84, 0x85, 0x86, 0x87,
+            0x88, 0x89, 0x8a, 0x92, 0x93, 0x94, 0x95, 0x96, 0x97, 0x98, 0x99, 0x9a, 0xa2, 0xa3, 0xa4, 0xa5,
+            0xa6, 0xa7, 0xa8, 0xa9, 0xaa, 0xb2, 0xb3, 0xb4, 0xb5, 0xb6, 0xb7, 0xb8, 0xb9, 0xba, 0xc2, 0xc3,
+            0xc4, 0xc5, 0xc6, 0xc7, 0xc8, 0xc9, 0xca, 0xd2, 0xd3, 0xd4, 0xd5, 0xd6, 0xd7, 0xd8, 0xd9, 0xda,
+            0xe2, 0xe3, 0xe4, 0xe5, 0xe6, 0xe7, 0xe8, 0xe9, 0xea, 0xf2, 0xf3, 0xf4, 0xf5, 0xf6, 0xf7, 0xf8,
+            0xf9, 0xfa);
+
+    static final HuffmanCodes DC_LUMINANCE = new HuffmanCodes(DC_LUMINANCE_BITS, DC_LUMINANCE_VALUES);
+    static final HuffmanCodes AC_LUMINANCE = new HuffmanCodes(AC_LUMINANCE_BITS, AC_LUMINANCE_VALUES);
+    static final HuffmanCodes DC_CHROMINANCE = new HuffmanCodes(DC_CHROMINANCE_BITS, DC_CHROMINANCE_VALUES);
+    static final HuffmanCodes AC_CHROMINANCE = new HuffmanCodes(AC_CHROMINANCE_BITS, AC_CHROMINANCE_VALUES);
+
+    private JpegTables() {
+    }
+
+    /**
+     * 编码用的 Huffman 码表，按符号查码字和码长
+     */
+    static final class HuffmanCodes {
+        final byte[] bits;
+        final byte[] values;
+        final int[] codes = new int[256];
+        final int[] sizes = new int[256];
+
+        HuffmanCodes(byte[] bits, byte[] values) {
+            this.bits = bits;
+            this.values = values;
+            int code = 0;
+            int k = 0;
+            for (int length = 1; length <= 16; length++) {
+                for (int i = 0; i < bits[length - 1]; i++) {
+                    int symbol = values[k++] & 0xFF;
+                    codes[symbol] = code++;
+                    sizes[symbol] = length;
+                }
+                code <<= 1;
+            }
+        }
+    }
+
+    /**
+     * 按质量缩放标准量化表，与 libjpeg 的 jpeg_quality_scaling 一致
+     *
+     * @param base    标准量化表
+     * @param quality 1~100
+     * @return 自然顺序的量化表，值在 1~255
+     */
+    static int[] scaleQuantTable(int[] base, int quality) {
+        quality = Math.max(1, Math.min(100, quality));
+        int scale = quality < 50 ? 5000 / quality : 200 - quality * 2;
+        int[] table = new int[64];
+        for (int i = 0; i < 64; i++) {
+            table[i] = Math.max(1, Math.min(255, (base[i] * scale + 50) / 100));
+        }
+        return table;
+    }
+
+    /**
+     * 写入 DQT 段
+     *
+     * @param table 自然顺序的量化表
+     * @param wide  true 16位精度
+     */
+    static void writeDqt(OutputStream out, int tableId, int[] table, boolean wide) throws IOException {
+        writeMarker(out, MARKER_DQT);
+        writeShort(out, 2 + 1 + (wide ? 128 : 64));
+        out.write((wide ? 0x10 : 0) | tableId);
+        for (int k = 0; k < 64; k++) {
+            int value = table[ZIGZAG[k]];
+            if (wide) {
+                out.write(value >> 8);
+            }
+            out.write(value);
+        }
+    }
+
+    /**
+     * 写入 DHT 段
+     *
+     * @param tableClass 0 DC, 1 AC
+     * @param tableId    表号
+     */
+    static void writeDht(OutputStream out, int tableClass, int tableId, HuffmanCodes table) throws IOException {
+        writeMarker(out, MARKER_DHT);
+        writeShort(out, 2 + 1 + 16 + table.values.length);
+        out.write(tableClass << 4 | tableId);
+        out.write(table.bits);
+        out.write(table.values);
+    }
+
+    /**
+     * 写入 SOF0 段
+     *
+     * @param componentIds 分量id
+     * @param sampling     每个分量的采样因子 (h << 4 | v)
+     * @param quantIds     每个分量的量化表号
+     */
+    static void writeSof0(OutputStream out, int width, int height, int[] componentIds, int[] sampling, int[] quantIds) throws IOException {
+        writeSof(out, MARKER_SOF0, width, height, componentIds, sampling, quantIds);
+    }
+
+    /**
+     * 写入 SOF 段，baseline 只允许8位量化表，有16位量化表时用 {@link #MARKER_SOF1}
+     *
+     * @param marker {@link #MARKER_SOF0} 或 {@link #MARKER_SOF1}
+     */
+    static void writeSof(OutputStream out, int marker, int width, int height, int[] componentIds, int[] sampling,
+                         int[] quantIds) throws IOException {
+        writeMarker(out, marker);
+        writeShort(out, 8 + componentIds.length * 3);
+        out.write(8);
+        writeShort(out, height);
+        writeShort(out, width);
+        out.write(componentIds.length);
+        for (int i = 0; i < componentIds.length; i++) {
+            out.write(componentIds[i]);
+            out.write(sampling[i]);
+            out.write(quantIds[i]);
+        }
+    }
+
+    /**
+     * 写入 SOS 段，第一个分量用0号 Huffman 表，其余用1号
+     */
+    static void writeSos(OutputStream out, int[] componentIds) throws IOException {
+        writeMarker(out, MARKER_SOS);
+        writeShort(out, 6 + componentIds.length * 2);
+        out.write(componentIds.length);
+        for (int i = 0; i < componentIds.length; i++) {
+            out.write(componentIds[i]);
+            out.write(i == 0 ? 0x00 : 0x11);
+        }
+        out.write(0);
+        out.write(63);
+        out.write(0);
+    }
+
+    static void writeMarker(OutputStream out, int marker) throws IOException {
+        out.write(0xFF);
+        out.write(marker);
+    }
+
+    static void writeShort(OutputStream out, int value) throws IOException {
+        out.write(value >> 8);
+        out.write(value);
+    }
+
+    private static byte[] toBytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+}
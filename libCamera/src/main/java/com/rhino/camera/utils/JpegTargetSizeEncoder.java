@@ -0,0 +1,419 @@
+package com.rhino.camera.utils;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+
+import com.rhino.log.LogUtils;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * <p>按目标大小编码 JPEG</p>
+ * <p>先把图片缩小为长边不超过 {@link #DEFAULT_PROXY_MAX_SIDE} 的代理图，根据代理图的亮度梯度（图片复杂度）预测起始质量，
+ * 在代理图上二分查找质量，代理图只统计编码长度不保存数据；再用原图编码确认，
+ * 按确认结果校正代理图与原图大小的比例后重新查找，一般1~2次原图编码即可</p>
+ * <p>输出缓冲区在多次编码间复用，{@link Result#getData()} 在下一次编码或 {@link #trimMemory()} 前有效；实例不是线程安全的。
+ * 编码间只保留不超过 {@link #MAX_RETAINED_CAPACITY} 的缓冲，结果所在的大缓冲在使用完后调用 {@link #trimMemory()} 释放，
+ * 否则在下一次编码开始时释放</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class JpegTargetSizeEncoder {
+
+    private static final String TAG = JpegTargetSizeEncoder.class.getSimpleName();
+
+    /**
+     * 默认代理图长边
+     */
+    public static final int DEFAULT_PROXY_MAX_SIDE = 512;
+    /**
+     * 默认最多原图编码次数，超过后结果仍大于目标时会继续降低质量直到满足或达到最低质量
+     */
+    public static final int DEFAULT_MAX_FULL_ENCODES = 3;
+    /**
+     * 默认容差，结果不小于目标的 95% 时不再尝试更高质量
+     */
+    public static final float DEFAULT_TOLERANCE = 0.05f;
+
+    /**
+     * 代理图缩小后每像素字节数比原图高，原图大小 ≈ 代理图大小 * 像素比 * 该系数，首次原图编码后按实际校正
+     */
+    private static final float INITIAL_PROXY_FACTOR = 0.7f;
+    /**
+     * 质量 70 时代理图 bpp ≈ COMPLEXITY_BPP * sqrt(平均梯度)
+     */
+    private static final float COMPLEXITY_BPP = 0.37f;
+    /**
+     * 不同质量下 bpp 相对质量 70 的倍数，线性插值
+     */
+    private static final int[] MODEL_QUALITIES = {0, 30, 50, 70, 85, 95, 100};
+    private static final float[] MODEL_FACTORS = {0.3f, 0.55f, 0.77f, 1f, 1.4f, 2.2f, 3.2f};
+    /**
+     * 编码间保留的输出缓冲容量上限，线程复用的实例不会一直持有原图大小的缓冲
+     */
+    public static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    /**
+     * 编码结果
+     */
+    public static class Result {
+        private byte[] data;
+        private int length;
+        private int quality;
+        private boolean reachedTarget;
+        private int fullEncodeCount;
+        private int proxyEncodeCount;
+        private int predictedQuality;
+        private float complexity;
+        private long elapsedMs;
+
+        /**
+         * 编码数据，有效长度为 {@link #getLength()}，下一次编码或 {@link #trimMemory()} 前有效
+         */
+        @NonNull
+        public byte[] getData() {
+            return data;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * 拷贝一份编码数据
+         */
+        @NonNull
+        public byte[] toByteArray() {
+            return Arrays.copyOf(data, length);
+        }
+
+        public int getQuality() {
+            return quality;
+        }
+
+        /**
+         * 是否不超过目标大小，false 表示最低质量仍超过目标
+         */
+        public boolean isReachedTarget() {
+            return reachedTarget;
+        }
+
+        /**
+         * 原图编码次数
+         */
+        public int getFullEncodeCount() {
+            return fullEncodeCount;
+        }
+
+        /**
+         * 代理图编码次数
+         */
+        public int getProxyEncodeCount() {
+            return proxyEncodeCount;
+        }
+
+        /**
+         * 根据复杂度预测的起始质量
+         */
+        public int getPredictedQuality() {
+            return predictedQuality;
+        }
+
+        /**
+         * 代理图平均亮度梯度
+         */
+        public float getComplexity() {
+            return complexity;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" +
+                    "length=" + length +
+                    ", quality=" + quality +
+                    ", reachedTarget=" + reachedTarget +
+                    ", fullEncodeCount=" + fullEncodeCount +
+                    ", proxyEncodeCount=" + proxyEncodeCount +
+                    ", predictedQuality=" + predictedQuality +
+                    ", complexity=" + complexity +
+                    ", elapsedMs=" + elapsedMs +
+                    '}';
+        }
+    }
+
+    /**
+     * 只统计长度的输出流
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        int count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    private static final ThreadLocal<JpegTargetSizeEncoder> THREAD_ENCODER = new ThreadLocal<JpegTargetSizeEncoder>() {
+        @Override
+        protected JpegTargetSizeEncoder initialValue() {
+            return new JpegTargetSizeEncoder();
+        }
+    };
+
+    private final int proxyMaxSide;
+    private final int maxFullEncodes;
+    private final float tolerance;
+    private final CountingOutputStream counter = new CountingOutputStream();
+    private GrowableByteBuffer best = new GrowableByteBuffer();
+    private GrowableByteBuffer scratch = new GrowableByteBuffer();
+    private final int[] proxySizes = new int[101];
+    /**
+     * 计算复杂度时的相邻两行像素
+     */
+    private int[] rows = new int[0];
+    private final Result result = new Result();
+
+    public JpegTargetSizeEncoder() {
+        this(DEFAULT_PROXY_MAX_SIDE, DEFAULT_MAX_FULL_ENCODES, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * @param proxyMaxSide   代理图长边，原图不大于它时直接在原图上查找
+     * @param maxFullEncodes 最多原图编码次数
+     * @param tolerance      结果不小于 target * (1 - tolerance) 时停止
+     */
+    public JpegTargetSizeEncoder(int proxyMaxSide, int maxFullEncodes, float tolerance) {
+        this.proxyMaxSide = Math.max(16, proxyMaxSide);
+        this.maxFullEncodes = Math.max(1, maxFullEncodes);
+        this.tolerance = Math.max(0f, tolerance);
+    }
+
+    /**
+     * 当前线程复用的默认实例，随线程保留的缓冲不超过 {@link #MAX_RETAINED_CAPACITY}
+     */
+    @NonNull
+    public static JpegTargetSizeEncoder getThreadEncoder() {
+        return THREAD_ENCODER.get();
+    }
+
+    /**
+     * 编码到不超过 targetBytes 的最高质量
+     *
+     * @param targetBytes 目标字节数
+     * @param minQuality  最低质量，达到后即使超过目标也返回
+     * @param maxQuality  最高质量
+     * @return 复用的结果对象，下一次编码前有效
+     */
+    @NonNull
+    public Result encode(@NonNull Bitmap bitmap, int targetBytes, int minQuality, int maxQuality) {
+        long start = System.nanoTime();
+        minQuality = Math.max(0, Math.min(100, minQuality));
+        maxQuality = Math.max(minQuality, Math.min(100, maxQuality));
+        Arrays.fill(proxySizes, -1);
+        trimMemory();
+        best.reset();
+        result.fullEncodeCount = 0;
+        result.proxyEncodeCount = 0;
+
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        Bitmap proxy = createProxy(bitmap);
+        try {
+            float pixelRatio = (float) width * height / ((float) proxy.getWidth() * proxy.getHeight());
+            float proxyFactor = proxy == bitmap ? 1f : INITIAL_PROXY_FACTOR;
+            result.complexity = calculateComplexity(proxy);
+            result.predictedQuality = predictQuality(result.complexity, targetBytes / (pixelRatio * proxyFactor),
+                    proxy.getWidth() * proxy.getHeight(), minQuality, maxQuality);
+
+            int bestQuality = -1;
+            int low = minQuality;
+            int high = maxQuality;
+            int predicted = result.predictedQuality;
+            while (low <= high && (result.fullEncodeCount < maxFullEncodes || bestQuality < 0)) {
+                int quality = searchProxy(proxy, targetBytes / (pixelRatio * proxyFactor), low, high, predicted);
+                int size = encodeFull(bitmap, quality);
+                if (size <= targetBytes || quality == minQuality) {
+                    if (quality > bestQuality) {
+                        bestQuality = quality;
+                        GrowableByteBuffer temp = best;
+                        best = scratch;
+                        scratch = temp;
+                    }
+                    if (size > targetBytes || size >= targetBytes * (1f - tolerance)) {
+                        break;
+                    }
+                    low = quality + 1;
+                } else {
+                    high = quality - 1;
+                }
+                // 按实际大小校正代理图比例
+                proxyFactor = size / (proxySize(proxy, quality) * pixelRatio);
+                predicted = quality;
+            }
+            result.data = best.getBuffer();
+            result.length = best.size();
+            result.quality = bestQuality;
+            result.reachedTarget = best.size() <= targetBytes;
+        } finally {
+            if (proxy != bitmap) {
+                proxy.recycle();
+            }
+            if (scratch.capacity() > MAX_RETAINED_CAPACITY) {
+                scratch = new GrowableByteBuffer();
+            }
+        }
+        result.elapsedMs = (System.nanoTime() - start) / 1000000L;
+        LogUtils.d(TAG, "target " + targetBytes + ", " + result);
+        return result;
+    }
+
+    /**
+     * 只在代理图上查找不超过 targetBytes 的最高质量，不编码原图，比 {@link #encode} 快但只是估计值，
+     * 代理图与原图大小的比例使用初始估计，没有原图编码校正；会覆盖上一次 {@link Result} 的统计
+     *
+     * @return 估计的质量
+     */
+    public int estimateQuality(@NonNull Bitmap bitmap, int targetBytes, int minQuality, int maxQuality) {
+        minQuality = Math.max(0, Math.min(100, minQuality));
+        maxQuality = Math.max(minQuality, Math.min(100, maxQuality));
+        Arrays.fill(proxySizes, -1);
+        result.proxyEncodeCount = 0;
+        Bitmap proxy = createProxy(bitmap);
+        try {
+            float pixelRatio = (float) bitmap.getWidth() * bitmap.getHeight() / ((float) proxy.getWidth() * proxy.getHeight());
+            float proxyTarget = targetBytes / (pixelRatio * (proxy == bitmap ? 1f : INITIAL_PROXY_FACTOR));
+            int predicted = predictQuality(calculateComplexity(proxy), proxyTarget, proxy.getWidth() * proxy.getHeight(),
+                    minQuality, maxQuality);
+            return searchProxy(proxy, proxyTarget, minQuality, maxQuality, predicted);
+        } finally {
+            if (proxy != bitmap) {
+                proxy.recycle();
+            }
+        }
+    }
+
+    /**
+     * 长边缩小到不超过 proxyMaxSide 的代理图，原图不大于它时返回原图
+     */
+    private Bitmap createProxy(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        float scale = Math.min(1f, (float) proxyMaxSide / Math.max(width, height));
+        return scale < 1f
+                ? Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale)), true)
+                : bitmap;
+    }
+
+    /**
+     * 释放超过 {@link #MAX_RETAINED_CAPACITY} 的输出缓冲，之后上一次的 {@link Result#getData()} 无效
+     */
+    public void trimMemory() {
+        if (best.capacity() > MAX_RETAINED_CAPACITY) {
+            best = new GrowableByteBuffer();
+            result.data = best.getBuffer();
+            result.length = 0;
+        }
+        if (scratch.capacity() > MAX_RETAINED_CAPACITY) {
+            scratch = new GrowableByteBuffer();
+        }
+    }
+
+    /**
+     * 代理图上查找不超过目标的最高质量，找不到返回 low
+     */
+    private int searchProxy(Bitmap proxy, float proxyTarget, int low, int high, int firstProbe) {
+        int found = low;
+        int probe = Math.max(low, Math.min(high, firstProbe));
+        while (low <= high) {
+            if (proxySize(proxy, probe) <= proxyTarget) {
+                found = probe;
+                low = probe + 1;
+            } else {
+                high = probe - 1;
+            }
+            probe = (low + high) >>> 1;
+        }
+        return found;
+    }
+
+    private int proxySize(Bitmap proxy, int quality) {
+        if (proxySizes[quality] < 0) {
+            counter.count = 0;
+            proxy.compress(Bitmap.CompressFormat.JPEG, quality, counter);
+            proxySizes[quality] = counter.count;
+            result.proxyEncodeCount++;
+        }
+        return proxySizes[quality];
+    }
+
+    private int encodeFull(Bitmap bitmap, int quality) {
+        scratch.reset();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, quality, scratch);
+        result.fullEncodeCount++;
+        return scratch.size();
+    }
+
+    /**
+     * 平均亮度梯度，水平与垂直相邻像素差的绝对值之和；逐行读取，只保留相邻两行像素
+     */
+    private float calculateComplexity(Bitmap proxy) {
+        int width = proxy.getWidth();
+        int height = proxy.getHeight();
+        if (rows.length < width * 2) {
+            rows = new int[width * 2];
+        }
+        long sum = 0;
+        if (height > 1) {
+            proxy.getPixels(rows, 0, width, 0, 0, width, 1);
+        }
+        for (int y = 0; y < height - 1; y++) {
+            int row = (y & 1) * width;
+            int next = width - row;
+            proxy.getPixels(rows, next, width, 0, y + 1, width, 1);
+            for (int x = 0; x < width - 1; x++) {
+                int luma = luma(rows[row + x]);
+                sum += Math.abs(luma - luma(rows[row + x + 1])) + Math.abs(luma - luma(rows[next + x]));
+            }
+        }
+        int count = (width - 1) * (height - 1);
+        return count > 0 ? (float) sum / count : 0f;
+    }
+
+    private static int luma(int color) {
+        return ((color >> 16 & 0xFF) * 77 + (color >> 8 & 0xFF) * 150 + (color & 0xFF) * 29) >> 8;
+    }
+
+    /**
+     * 按复杂度模型预测代理图达到 proxyTarget 字节的质量
+     */
+    static int predictQuality(float complexity, float proxyTarget, int proxyPixels, int minQuality, int maxQuality) {
+        float baseBpp = COMPLEXITY_BPP * (float) Math.sqrt(Math.max(1f, complexity));
+        float factor = proxyTarget * 8f / proxyPixels / baseBpp;
+        int quality = MODEL_QUALITIES[MODEL_QUALITIES.length - 1];
+        if (factor <= MODEL_FACTORS[0]) {
+            quality = MODEL_QUALITIES[0];
+        } else {
+            for (int i = 1; i < MODEL_FACTORS.length; i++) {
+                if (factor <= MODEL_FACTORS[i]) {
+                    float t = (factor - MODEL_FACTORS[i - 1]) / (MODEL_FACTORS[i] - MODEL_FACTORS[i - 1]);
+                    quality = Math.round(MODEL_QUALITIES[i - 1] + t * (MODEL_QUALITIES[i] - MODEL_QUALITIES[i - 1]));
+                    break;
+                }
+            }
+        }
+        return Math.max(minQuality, Math.min(maxQuality, quality));
+    }
+
+}
@@ -0,0 +1,703 @@
+package com.rhino.camera.utils;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * <p>JPEG 无损旋转和裁剪，类似 jpegtran，在 DCT 系数上完成变换，不解码像素，没有二次压缩损失</p>
+ * <p>只支持 8 位 baseline（顺序 Huffman）JPEG。先扫描一遍熵编码数据，记录每个 MCU 的起始位置和 DC 预测值，
+ * 之后按输出顺序逐个解码对应的源 MCU 并写出，内存只有 MCU 索引和一个 MCU 的系数，不保存整幅图的系数</p>
+ * <p>旋转后会移到左边或上边的不完整 MCU 会被裁掉（同 jpegtran -trim），裁剪的左上角向下对齐到 MCU 边界</p>
+ * <p>输入是 byte[] 而不是 InputStream：旋转后按输出顺序读取的源 MCU 分散在整个扫描数据中（例如旋转90度时输出第一行
+ * 来自源图的第一列），需要随机访问，流式读取也只能先读入完整数据。输出是顺序写出的，直接写入 OutputStream</p>
+ * <p>量化表的值都不超过255时按8位写出并使用 SOF0，否则按16位写出并使用 SOF1</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class JpegTransformer {
+
+    private JpegTransformer() {
+    }
+
+    /**
+     * 无损旋转
+     *
+     * @param jpeg         baseline JPEG
+     * @param rotateDegree 顺时针旋转角度，0、90、180、270
+     * @param out          输出流，不会关闭
+     */
+    public static void transform(@NonNull byte[] jpeg, int rotateDegree, @NonNull OutputStream out) throws IOException {
+        transform(jpeg, rotateDegree, 0, 0, 0, 0, out);
+    }
+
+    /**
+     * 无损旋转并裁剪
+     *
+     * @param jpeg         baseline JPEG
+     * @param rotateDegree 顺时针旋转角度，0、90、180、270
+     * @param cropX        旋转后图片上的裁剪区域，向下对齐到 MCU 边界
+     * @param cropY        旋转后图片上的裁剪区域，向下对齐到 MCU 边界
+     * @param cropWidth    裁剪宽，小于等于0不裁剪
+     * @param cropHeight   裁剪高，小于等于0不裁剪
+     * @param out          输出流，不会关闭
+     * @throws IOException 不支持的JPEG格式或数据错误
+     */
+    public static void transform(@NonNull byte[] jpeg, int rotateDegree, int cropX, int cropY, int cropWidth, int cropHeight,
+                                 @NonNull OutputStream out) throws IOException {
+        int degree = (rotateDegree % 360 + 360) % 360;
+        if (degree % 90 != 0) {
+            throw new IllegalArgumentException("invalid rotate degree: " + rotateDegree);
+        }
+        Frame frame = Frame.parse(jpeg);
+        boolean swap = degree == 90 || degree == 270;
+
+        // 会移到左边或上边的不完整 MCU 行列裁掉
+        int fullCols = frame.width / frame.mcuWidth;
+        int fullRows = frame.height / frame.mcuHeight;
+        int srcWidth = degree == 180 || degree == 270 ? fullCols * frame.mcuWidth : frame.width;
+        int srcHeight = degree == 90 || degree == 180 ? fullRows * frame.mcuHeight : frame.height;
+        if (srcWidth == 0 || srcHeight == 0) {
+            throw new IOException("image smaller than one MCU");
+        }
+        int outWidth = swap ? srcHeight : srcWidth;
+        int outHeight = swap ? srcWidth : srcHeight;
+        int outMcuWidth = swap ? frame.mcuHeight : frame.mcuWidth;
+        int outMcuHeight = swap ? frame.mcuWidth : frame.mcuHeight;
+
+        int left = 0;
+        int top = 0;
+        int width = outWidth;
+        int height = outHeight;
+        if (cropWidth > 0 && cropHeight > 0) {
+            left = Math.max(0, Math.min(cropX, outWidth - 1)) / outMcuWidth * outMcuWidth;
+            top = Math.max(0, Math.min(cropY, outHeight - 1)) / outMcuHeight * outMcuHeight;
+            width = Math.min(cropX + cropWidth, outWidth) - left;
+            height = Math.min(cropY + cropHeight, outHeight) - top;
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("crop out of image");
+            }
+        }
+
+        McuIndex index = McuIndex.build(jpeg, frame);
+        writeHeaders(jpeg, frame, degree != 0, swap, width, height, out);
+
+        int componentCount = frame.components.length;
+        int[][][] srcBlocks = new int[componentCount][][];
+        for (int c = 0; c < componentCount; c++) {
+            srcBlocks[c] = new int[frame.components[c].h * frame.components[c].v][64];
+        }
+        int[] outBlock = new int[64];
+        int[] permutation = new int[64];
+        int[] sign = new int[64];
+        buildCoefficientTransform(degree, permutation, sign);
+        int[] outPred = new int[componentCount];
+        BitReader reader = new BitReader(jpeg, frame.scanStart);
+        JpegBitWriter writer = new JpegBitWriter(out);
+
+        int mcuX0 = left / outMcuWidth;
+        int mcuY0 = top / outMcuHeight;
+        int outMcusX = (width + outMcuWidth - 1) / outMcuWidth;
+        int outMcusY = (height + outMcuHeight - 1) / outMcuHeight;
+        for (int oy = 0; oy < outMcusY; oy++) {
+            for (int ox = 0; ox < outMcusX; ox++) {
+                int gx = mcuX0 + ox;
+                int gy = mcuY0 + oy;
+                int mx;
+                int my;
+                switch (degree) {
+                    case 90:
+                        mx = gy;
+                        my = fullRows - 1 - gx;
+                        break;
+                    case 180:
+                        mx = fullCols - 1 - gx;
+                        my = fullRows - 1 - gy;
+                        break;
+                    case 270:
+                        mx = fullCols - 1 - gy;
+                        my = gx;
+                        break;
+                    default:
+                        mx = gx;
+                        my = gy;
+                        break;
+                }
+                index.seek(reader, my * frame.mcusX + mx, frame);
+                frame.decodeMcu(reader, srcBlocks);
+                for (int c = 0; c < componentCount; c++) {
+                    Component component = frame.components[c];
+                    int h = component.h;
+                    int v = component.v;
+                    int outH = swap ? v : h;
+                    int outV = swap ? h : v;
+                    for (int j = 0; j < outV; j++) {
+                        for (int i = 0; i < outH; i++) {
+                            int si;
+                            int sj;
+                            switch (degree) {
+                                case 90:
+                                    si = j;
+                                    sj = v - 1 - i;
+                                    break;
+                                case 180:
+                                    si = h - 1 - i;
+                                    sj = v - 1 - j;
+                                    break;
+                                case 270:
+                                    si = h - 1 - j;
+                                    sj = i;
+                                    break;
+                                default:
+                                    si = i;
+                                    sj = j;
+                                    break;
+                            }
+                            int[] src = srcBlocks[c][sj * h + si];
+                            for (int n = 0; n < 64; n++) {
+                                outBlock[n] = sign[n] * src[permutation[n]];
+                            }
+                            int dcDiff = outBlock[0] - outPred[c];
+                            outPred[c] = outBlock[0];
+                            writer.writeBlock(outBlock, dcDiff,
+                                    c == 0 ? JpegTables.DC_LUMINANCE : JpegTables.DC_CHROMINANCE,
+                                    c == 0 ? JpegTables.AC_LUMINANCE : JpegTables.AC_CHROMINANCE);
+                        }
+                    }
+                }
+            }
+        }
+        writer.writeMarker(JpegTables.MARKER_EOI);
+        writer.flush();
+    }
+
+    /**
+     * 块内系数变换：输出系数 D[n] = sign[n] * S[permutation[n]]，下标为自然顺序 v * 8 + u
+     * 转置对应交换 u、v，水平翻转对应奇数 u 取反，垂直翻转对应奇数 v 取反
+     */
+    private static void buildCoefficientTransform(int degree, int[] permutation, int[] sign) {
+        for (int v = 0; v < 8; v++) {
+            for (int u = 0; u < 8; u++) {
+                int n = v * 8 + u;
+                switch (degree) {
+                    case 90:
+                        permutation[n] = u * 8 + v;
+                        sign[n] = (u & 1) == 0 ? 1 : -1;
+                        break;
+                    case 180:
+                        permutation[n] = n;
+                        sign[n] = ((u + v) & 1) == 0 ? 1 : -1;
+                        break;
+                    case 270:
+                        permutation[n] = u * 8 + v;
+                        sign[n] = (v & 1) == 0 ? 1 : -1;
+                        break;
+                    default:
+                        permutation[n] = n;
+                        sign[n] = 1;
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入 SOI、原 APPn/COM 段、量化表（旋转90/270时转置）、SOF0 或 SOF1、标准 Huffman 表和 SOS
+     */
+    private static void writeHeaders(byte[] jpeg, Frame frame, boolean rotated, boolean swap, int width, int height,
+                                     OutputStream out) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream(2 + frame.appLength);
+        JpegTables.writeMarker(header, JpegTables.MARKER_SOI);
+        for (int i = 0; i < frame.appCount; i++) {
+            header.write(jpeg, frame.appOffsets[i], frame.appLengths[i]);
+        }
+        byte[] headerBytes = header.toByteArray();
+        if (rotated && headerBytes.length > 2) {
+            try {
+                if (JpegExifWriter.getOrientation(headerBytes) != JpegExifWriter.ORIENTATION_UNDEFINED) {
+                    // 像素已经转正
+                    headerBytes = JpegExifWriter.setOrientation(headerBytes, JpegExifWriter.ORIENTATION_NORMAL);
+                }
+            } catch (IOException ignored) {
+                // EXIF 损坏时原样复制
+            }
+        }
+        out.write(headerBytes);
+
+        boolean[] written = new boolean[4];
+        boolean extended = false;
+        int componentCount = frame.components.length;
+        int[] ids = new int[componentCount];
+        int[] sampling = new int[componentCount];
+        int[] quantIds = new int[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            Component component = frame.components[c];
+            ids[c] = component.id;
+            sampling[c] = swap ? component.v << 4 | component.h : component.h << 4 | component.v;
+            quantIds[c] = component.quantId;
+            if (written[component.quantId]) {
+                continue;
+            }
+            written[component.quantId] = true;
+            int[] table = frame.quantTables[component.quantId];
+            if (table == null) {
+                throw new IOException("missing quantization table " + component.quantId);
+            }
+            if (swap) {
+                int[] transposed = new int[64];
+                for (int n = 0; n < 64; n++) {
+                    transposed[n] = table[(n & 7) * 8 + (n >> 3)];
+                }
+                table = transposed;
+            }
+            // 源文件可能用16位精度存放不超过255的值，baseline 只允许8位
+            boolean wide = false;
+            for (int value : table) {
+                if (value > 255) {
+                    wide = true;
+                    break;
+                }
+            }
+            extended |= wide;
+            JpegTables.writeDqt(out, component.quantId, table, wide);
+        }
+        JpegTables.writeSof(out, extended ? JpegTables.MARKER_SOF1 : JpegTables.MARKER_SOF0, width, height, ids, sampling, quantIds);
+        JpegTables.writeDht(out, 0, 0, JpegTables.DC_LUMINANCE);
+        JpegTables.writeDht(out, 1, 0, JpegTables.AC_LUMINANCE);
+        if (componentCount > 1) {
+            JpegTables.writeDht(out, 0, 1, JpegTables.DC_CHROMINANCE);
+            JpegTables.writeDht(out, 1, 1, JpegTables.AC_CHROMINANCE);
+        }
+        JpegTables.writeSos(out, ids);
+    }
+
+    /**
+     * 分量
+     */
+    private static final class Component {
+        int id;
+        /**
+         * MCU 内水平、垂直块数，单分量图片为1
+         */
+        int h;
+        int v;
+        int quantId;
+        HuffmanDecoder dcDecoder;
+        HuffmanDecoder acDecoder;
+    }
+
+    /**
+     * 帧头和扫描头信息
+     */
+    private static final class Frame {
+        int width;
+        int height;
+        Component[] components;
+        int mcuWidth;
+        int mcuHeight;
+        int mcusX;
+        int mcusY;
+        int restartInterval;
+        int scanStart;
+        final int[][] quantTables = new int[4][];
+        int appCount;
+        int appLength;
+        int[] appOffsets = new int[8];
+        int[] appLengths = new int[8];
+        /**
+         * 每个分量当前的 DC 预测值
+         */
+        int[] pred;
+
+        static Frame parse(byte[] jpeg) throws IOException {
+            if (jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != JpegTables.MARKER_SOI) {
+                throw new IOException("not a jpeg");
+            }
+            Frame frame = new Frame();
+            HuffmanDecoder[] dcTables = new HuffmanDecoder[4];
+            HuffmanDecoder[] acTables = new HuffmanDecoder[4];
+            int offset = 2;
+            while (true) {
+                if (offset + 4 > jpeg.length || (jpeg[offset] & 0xFF) != 0xFF) {
+                    throw new IOException("invalid jpeg marker at " + offset);
+                }
+                int marker = jpeg[offset + 1] & 0xFF;
+                if (marker == 0xFF) {
+                    offset++;
+                    continue;
+                }
+                int length = readShort(jpeg, offset + 2);
+                int data = offset + 4;
+                int end = offset + 2 + length;
+                if (length < 2 || end > jpeg.length) {
+                    throw new IOException("invalid jpeg segment length at " + offset);
+                }
+                if (marker == JpegTables.MARKER_SOS) {
+                    frame.parseScan(jpeg, data, dcTables, acTables);
+                    frame.scanStart = end;
+                    return frame;
+                }
+                if (marker == JpegTables.MARKER_SOF0 || marker == JpegTables.MARKER_SOF1) {
+                    frame.parseFrame(jpeg, data);
+                } else if (marker >= 0xC2 && marker <= 0xCF && marker != JpegTables.MARKER_DHT && marker != 0xC8 && marker != 0xCC) {
+                    throw new IOException("unsupported jpeg process: " + Integer.toHexString(marker));
+                } else if (marker == JpegTables.MARKER_DQT) {
+                    frame.parseQuantTables(jpeg, data, end);
+                } else if (marker == JpegTables.MARKER_DHT) {
+                    parseHuffmanTables(jpeg, data, end, dcTables, acTables);
+                } else if (marker == JpegTables.MARKER_DRI) {
+                    frame.restartInterval = readShort(jpeg, data);
+                } else if ((marker >= 0xE0 && marker <= 0xEF) || marker == JpegTables.MARKER_COM) {
+                    frame.addAppSegment(offset, 2 + length);
+                }
+                offset = end;
+            }
+        }
+
+        private void parseFrame(byte[] jpeg, int data) throws IOException {
+            if ((jpeg[data] & 0xFF) != 8) {
+                throw new IOException("unsupported sample precision: " + (jpeg[data] & 0xFF));
+            }
+            height = readShort(jpeg, data + 1);
+            width = readShort(jpeg, data + 3);
+            int count = jpeg[data + 5] & 0xFF;
+            if (width == 0 || height == 0 || count == 0 || count > 4) {
+                throw new IOException("invalid jpeg frame");
+            }
+            components = new Component[count];
+            int hMax = 1;
+            int vMax = 1;
+            for (int i = 0; i < count; i++) {
+                int p = data + 6 + i * 3;
+                Component component = new Component();
+                component.id = jpeg[p] & 0xFF;
+                component.h = (jpeg[p + 1] >> 4) & 0x0F;
+                component.v = jpeg[p + 1] & 0x0F;
+                component.quantId = jpeg[p + 2] & 0x03;
+                if (component.h < 1 || component.h > 4 || component.v < 1 || component.v > 4) {
+                    throw new IOException("invalid sampling factor");
+                }
+                hMax = Math.max(hMax, component.h);
+                vMax = Math.max(vMax, component.v);
+                components[i] = component;
+            }
+            if (count == 1) {
+                // 单分量非交错扫描，一个块就是一个 MCU
+                components[0].h = 1;
+                components[0].v = 1;
+                hMax = 1;
+                vMax = 1;
+            }
+            mcuWidth = hMax * 8;
+            mcuHeight = vMax * 8;
+            mcusX = (width + mcuWidth - 1) / mcuWidth;
+            mcusY = (height + mcuHeight - 1) / mcuHeight;
+            pred = new int[count];
+        }
+
+        private void parseScan(byte[] jpeg, int data, HuffmanDecoder[] dcTables, HuffmanDecoder[] acTables) throws IOException {
+            if (components == null) {
+                throw new IOException("missing SOF before SOS");
+            }
+            int count = jpeg[data] & 0xFF;
+            if (count != components.length) {
+                throw new IOException("unsupported non-interleaved multi-scan jpeg");
+            }
+            Component[] ordered = new Component[count];
+            for (int i = 0; i < count; i++) {
+                int id = jpeg[data + 1 + i * 2] & 0xFF;
+                int tables = jpeg[data + 2 + i * 2] & 0xFF;
+                Component component = null;
+                for (Component c : components) {
+                    if (c.id == id) {
+                        component = c;
+                    }
+                }
+                if (component == null) {
+                    throw new IOException("unknown scan component " + id);
+                }
+                component.dcDecoder = dcTables[(tables >> 4) & 0x03];
+                component.acDecoder = acTables[tables & 0x03];
+                if (component.dcDecoder == null || component.acDecoder == null) {
+                    throw new IOException("missing huffman table for component " + id);
+                }
+                ordered[i] = component;
+            }
+            // 按扫描顺序解码和输出
+            components = ordered;
+        }
+
+        private void parseQuantTables(byte[] jpeg, int data, int end) throws IOException {
+            int p = data;
+            while (p < end) {
+                int pq = (jpeg[p] >> 4) & 0x0F;
+                int tq = jpeg[p] & 0x03;
+                p++;
+                if (p + (pq == 0 ? 64 : 128) > end) {
+                    throw new IOException("invalid DQT");
+                }
+                int[] table = new int[64];
+                for (int k = 0; k < 64; k++) {
+                    if (pq == 0) {
+                        table[JpegTables.ZIGZAG[k]] = jpeg[p++] & 0xFF;
+                    } else {
+                        table[JpegTables.ZIGZAG[k]] = readShort(jpeg, p);
+                        p += 2;
+                    }
+                }
+                quantTables[tq] = table;
+            }
+        }
+
+        private static void parseHuffmanTables(byte[] jpeg, int data, int end, HuffmanDecoder[] dcTables,
+                                               HuffmanDecoder[] acTables) throws IOException {
+            int p = data;
+            while (p < end) {
+                int tc = (jpeg[p] >> 4) & 0x0F;
+                int th = jpeg[p] & 0x03;
+                byte[] bits = Arrays.copyOfRange(jpeg, p + 1, p + 17);
+                int total = 0;
+                for (byte b : bits) {
+                    total += b & 0xFF;
+                }
+                p += 17;
+                if (total > 256 || p + total > end) {
+                    throw new IOException("invalid DHT");
+                }
+                byte[] values = Arrays.copyOfRange(jpeg, p, p + total);
+                p += total;
+                if (tc == 0) {
+                    dcTables[th] = new HuffmanDecoder(bits, values);
+                } else {
+                    acTables[th] = new HuffmanDecoder(bits, values);
+                }
+            }
+        }
+
+        private void addAppSegment(int offset, int length) {
+            if (appCount == appOffsets.length) {
+                appOffsets = Arrays.copyOf(appOffsets, appCount * 2);
+                appLengths = Arrays.copyOf(appLengths, appCount * 2);
+            }
+            appOffsets[appCount] = offset;
+            appLengths[appCount] = length;
+            appCount++;
+            appLength += length;
+        }
+
+        /**
+         * 解码一个 MCU 的所有块，blocks[分量][块]，块内为自然顺序的量化系数
+         */
+        void decodeMcu(BitReader reader, int[][][] blocks) throws IOException {
+            for (int c = 0; c < components.length; c++) {
+                Component component = components[c];
+                int[][] componentBlocks = blocks[c];
+                for (int[] block : componentBlocks) {
+                    Arrays.fill(block, 0);
+                    int s = reader.decode(component.dcDecoder);
+                    pred[c] += reader.receiveExtend(s);
+                    block[0] = pred[c];
+                    for (int k = 1; k < 64; k++) {
+                        int rs = reader.decode(component.acDecoder);
+                        int run = rs >> 4;
+                        s = rs & 0x0F;
+                        if (s == 0) {
+                            if (run != 15) {
+                                break;
+                            }
+                            k += 15;
+                            continue;
+                        }
+                        k += run;
+                        if (k > 63) {
+                            throw new IOException("invalid AC run length");
+                        }
+                        block[JpegTables.ZIGZAG[k]] = reader.receiveExtend(s);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 每个 MCU 开始解码时的读取状态和 DC 预测值，用于随机访问 MCU
+     */
+    private static final class McuIndex {
+        final int[] positions;
+        final long[] buffers;
+        final byte[] bitCounts;
+        final short[][] preds;
+
+        private McuIndex(int mcuCount, int componentCount) {
+            positions = new int[mcuCount];
+            buffers = new long[mcuCount];
+            bitCounts = new byte[mcuCount];
+            preds = new short[componentCount][mcuCount];
+        }
+
+        static McuIndex build(byte[] jpeg, Frame frame) throws IOException {
+            int mcuCount = frame.mcusX * frame.mcusY;
+            int componentCount = frame.components.length;
+            McuIndex index = new McuIndex(mcuCount, componentCount);
+            int[][][] scratch = new int[componentCount][][];
+            for (int c = 0; c < componentCount; c++) {
+                scratch[c] = new int[frame.components[c].h * frame.components[c].v][64];
+            }
+            BitReader reader = new BitReader(jpeg, frame.scanStart);
+            Arrays.fill(frame.pred, 0);
+            for (int m = 0; m < mcuCount; m++) {
+                if (frame.restartInterval > 0 && m > 0 && m % frame.restartInterval == 0) {
+                    reader.restart();
+                    Arrays.fill(frame.pred, 0);
+                }
+                index.positions[m] = reader.position;
+                index.buffers[m] = reader.buffer;
+                index.bitCounts[m] = (byte) reader.bitCount;
+                for (int c = 0; c < componentCount; c++) {
+                    index.preds[c][m] = (short) frame.pred[c];
+                }
+                frame.decodeMcu(reader, scratch);
+            }
+            return index;
+        }
+
+        void seek(BitReader reader, int mcu, Frame frame) {
+            reader.position = positions[mcu];
+            reader.buffer = buffers[mcu];
+            reader.bitCount = bitCounts[mcu];
+            for (int c = 0; c < frame.pred.length; c++) {
+                frame.pred[c] = preds[c][mcu];
+            }
+        }
+    }
+
+    /**
+     * Huffman 解码表，码长不超过 {@link #LOOKUP_BITS} 的直接查表
+     */
+    private static final class HuffmanDecoder {
+        static final int LOOKUP_BITS = 9;
+        /**
+         * (码长 << 8 | 符号)，0 表示码长超过 LOOKUP_BITS
+         */
+        final int[] lookup = new int[1 << LOOKUP_BITS];
+        final int[] maxCode = new int[17];
+        final int[] valueOffset = new int[17];
+        final byte[] values;
+
+        HuffmanDecoder(byte[] bits, byte[] values) {
+            this.values = values;
+            int code = 0;
+            int k = 0;
+            for (int length = 1; length <= 16; length++) {
+                int count = bits[length - 1] & 0xFF;
+                valueOffset[length] = k - code;
+                for (int i = 0; i < count; i++) {
+                    if (length <= LOOKUP_BITS) {
+                        int shift = LOOKUP_BITS - length;
+                        int entry = length << 8 | (values[k] & 0xFF);
+                        for (int j = code << shift, n = (code + 1) << shift; j < n; j++) {
+                            lookup[j] = entry;
+                        }
+                    }
+                    code++;
+                    k++;
+                }
+                maxCode[length] = count > 0 ? code - 1 : -1;
+                code <<= 1;
+            }
+        }
+    }
+
+    /**
+     * 熵编码数据读取，去掉 0xFF 后的填充字节，遇到标记后补0
+     */
+    private static final class BitReader {
+        final byte[] data;
+        int position;
+        long buffer;
+        int bitCount;
+
+        BitReader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        private void fill() {
+            while (bitCount <= 56) {
+                int b = 0;
+                if (position < data.length) {
+                    b = data[position] & 0xFF;
+                    if (b != 0xFF) {
+                        position++;
+                    } else if (position + 1 < data.length && data[position + 1] == 0) {
+                        position += 2;
+                    } else {
+                        // 标记，不再前进
+                        b = 0;
+                    }
+                }
+                buffer = (buffer << 8) | b;
+                bitCount += 8;
+            }
+        }
+
+        int decode(HuffmanDecoder table) throws IOException {
+            if (bitCount < 16) {
+                fill();
+            }
+            int entry = table.lookup[(int) (buffer >>> (bitCount - HuffmanDecoder.LOOKUP_BITS)) & ((1 << HuffmanDecoder.LOOKUP_BITS) - 1)];
+            if (entry != 0) {
+                bitCount -= entry >> 8;
+                return entry & 0xFF;
+            }
+            for (int length = HuffmanDecoder.LOOKUP_BITS + 1; length <= 16; length++) {
+                int code = (int) (buffer >>> (bitCount - length)) & ((1 << length) - 1);
+                if (code <= table.maxCode[length]) {
+                    bitCount -= length;
+                    return table.values[table.valueOffset[length] + code] & 0xFF;
+                }
+            }
+            throw new IOException("invalid huffman code");
+        }
+
+        int receiveExtend(int size) {
+            if (size == 0) {
+                return 0;
+            }
+            if (bitCount < size) {
+                fill();
+            }
+            int value = (int) (buffer >>> (bitCount - size)) & ((1 << size) - 1);
+            bitCount -= size;
+            if (value < 1 << (size - 1)) {
+                value -= (1 << size) - 1;
+            }
+            return value;
+        }
+
+        /**
+         * 丢弃剩余位并跳过 RSTn 标记
+         */
+        void restart() throws IOException {
+            buffer = 0;
+            bitCount = 0;
+            while (position + 1 < data.length) {
+                if ((data[position] & 0xFF) == 0xFF && (data[position + 1] & 0xF8) == JpegTables.MARKER_RST0) {
+                    position += 2;
+                    return;
+                }
+                position++;
+            }
+            throw new IOException("missing restart marker");
+        }
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 8 | (bytes[offset + 1] & 0xFF);
+    }
+
+}
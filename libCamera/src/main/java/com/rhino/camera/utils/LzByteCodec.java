@@ -0,0 +1,177 @@
+package com.rhino.camera.utils;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * <p>面向字节的快速 LZ 压缩（LZ4 风格的序列格式），无损，适合帧差这类大段重复或全0的数据</p>
+ * <p>序列格式：token(高4位字面量长度，低4位匹配长度-4) + 扩展字面量长度 + 字面量 + 2字节偏移(小端) + 扩展匹配长度，
+ * 长度字段为15时后面跟若干字节累加，字节为255时继续；最后一个序列只有字面量</p>
+ * <p>实例持有哈希表，不是线程安全的</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class LzByteCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_BITS = 16;
+    /**
+     * 连续未命中时加大步长，不可压缩的数据也能快速跳过
+     */
+    private static final int SKIP_TRIGGER = 6;
+
+    private final int[] hashTable = new int[1 << HASH_BITS];
+
+    /**
+     * 压缩后的最大长度
+     */
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * 压缩
+     *
+     * @param src    源数据
+     * @param length 源数据长度
+     * @param dst    输出，长度不小于 {@link #maxCompressedLength(int)}
+     * @return 压缩后的长度
+     */
+    public int compress(@NonNull byte[] src, int length, @NonNull byte[] dst) {
+        Arrays.fill(hashTable, -1);
+        int ip = 0;
+        int anchor = 0;
+        int op = 0;
+        int limit = length - MIN_MATCH;
+        int misses = 0;
+        while (ip <= limit) {
+            int sequence = readInt(src, ip);
+            int hash = (sequence * 0x9E3779B1) >>> (32 - HASH_BITS);
+            int ref = hashTable[hash];
+            hashTable[hash] = ip;
+            if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                ip += 1 + (misses++ >> SKIP_TRIGGER);
+                continue;
+            }
+            misses = 0;
+            int matchLength = MIN_MATCH;
+            while (ip + matchLength < length && src[ref + matchLength] == src[ip + matchLength]) {
+                matchLength++;
+            }
+            op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dst, op);
+            ip += matchLength;
+            anchor = ip;
+        }
+        // 剩余字面量
+        int literalLength = length - anchor;
+        int token = Math.min(literalLength, 15) << 4;
+        dst[op++] = (byte) token;
+        op = writeLength(literalLength, dst, op);
+        System.arraycopy(src, anchor, dst, op, literalLength);
+        return op + literalLength;
+    }
+
+    /**
+     * 解压
+     *
+     * @param src    压缩数据
+     * @param length 压缩数据长度
+     * @param dst    输出，长度不小于原始长度
+     * @return 解压后的长度
+     */
+    public static int decompress(@NonNull byte[] src, int length, @NonNull byte[] dst) {
+        return decompress(src, 0, length, dst);
+    }
+
+    /**
+     * 解压
+     *
+     * @param src    压缩数据
+     * @param offset 压缩数据起始位置
+     * @param length 压缩数据长度
+     * @param dst    输出，长度不小于原始长度
+     * @return 解压后的长度
+     */
+    public static int decompress(@NonNull byte[] src, int offset, int length, @NonNull byte[] dst) {
+        int ip = offset;
+        int end = offset + length;
+        int op = 0;
+        while (ip < end) {
+            int token = src[ip++] & 0xFF;
+            int literalLength = token >>> 4;
+            if (literalLength == 15) {
+                int b;
+                do {
+                    b = src[ip++] & 0xFF;
+                    literalLength += b;
+                } while (b == 255);
+            }
+            System.arraycopy(src, ip, dst, op, literalLength);
+            ip += literalLength;
+            op += literalLength;
+            if (ip >= end) {
+                break;
+            }
+            int matchOffset = (src[ip] & 0xFF) | (src[ip + 1] & 0xFF) << 8;
+            ip += 2;
+            int matchLength = (token & 0x0F) + MIN_MATCH;
+            if ((token & 0x0F) == 15) {
+                int b;
+                do {
+                    b = src[ip++] & 0xFF;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            int ref = op - matchOffset;
+            if (matchOffset >= matchLength) {
+                System.arraycopy(dst, ref, dst, op, matchLength);
+            } else if (matchOffset == 1) {
+                Arrays.fill(dst, op, op + matchLength, dst[ref]);
+            } else {
+                // 重叠复制，逐字节
+                for (int i = 0; i < matchLength; i++) {
+                    dst[op + i] = dst[ref + i];
+                }
+            }
+            op += matchLength;
+        }
+        return op;
+    }
+
+    private static int writeSequence(byte[] src, int literalStart, int literalLength, int matchOffset, int matchLength,
+                                     byte[] dst, int op) {
+        int matchCode = matchLength - MIN_MATCH;
+        dst[op++] = (byte) (Math.min(literalLength, 15) << 4 | Math.min(matchCode, 15));
+        op = writeLength(literalLength, dst, op);
+        System.arraycopy(src, literalStart, dst, op, literalLength);
+        op += literalLength;
+        dst[op++] = (byte) matchOffset;
+        dst[op++] = (byte) (matchOffset >> 8);
+        return writeLength(matchCode, dst, op);
+    }
+
+    /**
+     * 长度不小于15时写入扩展长度字节
+     */
+    private static int writeLength(int length, byte[] dst, int op) {
+        if (length < 15) {
+            return op;
+        }
+        int remaining = length - 15;
+        while (remaining >= 255) {
+            dst[op++] = (byte) 255;
+            remaining -= 255;
+        }
+        dst[op++] = (byte) remaining;
+        return op;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8
+                | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+}
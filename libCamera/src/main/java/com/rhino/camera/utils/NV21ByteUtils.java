@@ -12,7 +12,8 @@ import androidx.annotation.Nullable;
 
 import com.rhino.log.LogUtils;
 
-import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
 
 /**
  * @author LuoLin
@@ -37,22 +38,25 @@ public class NV21ByteUtils {
      */
     @Nullable
     public static Bitmap byteToBitmap(byte[] bytes, int imageWidth, int imageHeight, int format, int rotateOrientation) {
+        GrowableByteBuffer out = GrowableByteBuffer.obtain();
         try {
             YuvImage yuv = new YuvImage(bytes, format, imageWidth, imageHeight, null);
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
             yuv.compressToJpeg(new Rect(0, 0, imageWidth, imageHeight), 100, out);
-            byte[] b = out.toByteArray();
-            Bitmap bitmap = BitmapFactory.decodeByteArray(b, 0, b.length);
+            Bitmap bitmap = BitmapFactory.decodeByteArray(out.getBuffer(), 0, out.size());
             if (rotateOrientation == 0) {
-                return bitmap;
+                return BitmapTracker.track(bitmap, "NV21ByteUtils.byteToBitmap");
             }
             Matrix matrix = new Matrix();
             matrix.postRotate(rotateOrientation);
             Bitmap matrixBitmap = Bitmap.createBitmap(bitmap, 0, 0, imageWidth, imageHeight, matrix, true);
-            bitmap.recycle();
-            return matrixBitmap;
+            if (matrixBitmap != bitmap) {
+                bitmap.recycle();
+            }
+            return BitmapTracker.track(matrixBitmap, "NV21ByteUtils.byteToBitmap");
         } catch (Exception e) {
             LogUtils.e(e.toString());
+        } finally {
+            out.recycle();
         }
         return null;
     }
@@ -62,10 +66,16 @@ public class NV21ByteUtils {
      */
     @Nullable
     public static byte[] rotate270(byte[] nv21_data, int width, int height) {
+        return rotate270(nv21_data, width, height, new byte[width * height * 3 / 2]);
+    }
+
+    /**
+     * 旋转270度，结果写入 nv21_rotated
+     */
+    @Nullable
+    public static byte[] rotate270(byte[] nv21_data, int width, int height, byte[] nv21_rotated) {
         try {
             int y_size = width * height;
-            int buffser_size = y_size * 3 / 2;
-            byte[] nv21_rotated = new byte[buffser_size];
             int i = 0;
 
             // Rotate the Y luma
@@ -102,10 +112,17 @@ public class NV21ByteUtils {
      */
     @Nullable
     public static byte[] rotate180(byte[] nv21_data, int width, int height) {
+        return rotate180(nv21_data, width, height, new byte[width * height * 3 / 2]);
+    }
+
+    /**
+     * 旋转180度，结果写入 nv21_rotated
+     */
+    @Nullable
+    public static byte[] rotate180(byte[] nv21_data, int width, int height, byte[] nv21_rotated) {
         try {
             int y_size = width * height;
             int buffser_size = y_size * 3 / 2;
-            byte[] nv21_rotated = new byte[buffser_size];
             int i = 0;
             int count = 0;
             for (i = y_size - 1; i >= 0; i--) {
@@ -128,10 +145,17 @@ public class NV21ByteUtils {
      */
     @Nullable
     public static byte[] rotate90(byte[] nv21_data, int width, int height) {
+        return rotate90(nv21_data, width, height, new byte[width * height * 3 / 2]);
+    }
+
+    /**
+     * 旋转90度，结果写入 nv21_rotated
+     */
+    @Nullable
+    public static byte[] rotate90(byte[] nv21_data, int width, int height, byte[] nv21_rotated) {
         try {
             int y_size = width * height;
             int buffser_size = y_size * 3 / 2;
-            byte[] nv21_rotated = new byte[buffser_size];
 
             // Rotate the Y luma
             int i = 0;
@@ -188,6 +212,333 @@ public class NV21ByteUtils {
         return result;
     }
 
+    /**
+     * 旋转到固定角度，结果写入 dst，dst 长度不小于 width * height * 3 / 2，角度为0时直接返回源数据
+     */
+    @NonNull
+    public static NV21Result rotate(@NonNull byte[] bytes, int width, int height, int rotateDegree, @NonNull byte[] dst) {
+        if (rotateDegree == 270) {
+            return new NV21Result(rotate270(bytes, width, height, dst), height, width);
+        } else if (rotateDegree == 180) {
+            return new NV21Result(rotate180(bytes, width, height, dst), width, height);
+        } else if (rotateDegree == 90) {
+            return new NV21Result(rotate90(bytes, width, height, dst), height, width);
+        }
+        return new NV21Result(bytes, width, height);
+    }
+
+    /**
+     * 水平镜像
+     */
+    @NonNull
+    public static NV21Result mirrorHorizontal(@NonNull byte[] bytes, int width, int height) {
+        return rotateAndMirror(bytes, width, height, 0, true, false, new byte[width * height * 3 / 2]);
+    }
+
+    /**
+     * 垂直镜像
+     */
+    @NonNull
+    public static NV21Result mirrorVertical(@NonNull byte[] bytes, int width, int height) {
+        return rotateAndMirror(bytes, width, height, 0, false, true, new byte[width * height * 3 / 2]);
+    }
+
+    /**
+     * 旋转后水平镜像，一次遍历完成，前置摄像头用于得到与预览显示一致的方向
+     */
+    @NonNull
+    public static NV21Result rotateAndMirror(@NonNull byte[] bytes, int width, int height, int rotateDegree) {
+        return rotateAndMirror(bytes, width, height, rotateDegree, true, false, new byte[width * height * 3 / 2]);
+    }
+
+    /**
+     * 顺时针旋转后再镜像，一次遍历完成，VU顺序保持不变
+     *
+     * @param bytes            NV21数据，宽高需为偶数
+     * @param width            宽
+     * @param height           高
+     * @param rotateDegree     顺时针旋转角度，0/90/180/270
+     * @param mirrorHorizontal 旋转后是否水平镜像
+     * @param mirrorVertical   旋转后是否垂直镜像
+     * @param dst              输出，长度不小于 width * height * 3 / 2，不能与 bytes 相同
+     * @return 结果
+     */
+    @NonNull
+    public static NV21Result rotateAndMirror(@NonNull byte[] bytes, int width, int height, int rotateDegree,
+                                             boolean mirrorHorizontal, boolean mirrorVertical, @NonNull byte[] dst) {
+        rotateDegree = (rotateDegree % 360 + 360) % 360;
+        boolean swap = rotateDegree == 90 || rotateDegree == 270;
+        int dstWidth = swap ? height : width;
+        int dstHeight = swap ? width : height;
+        int ySize = width * height;
+
+        // 输出坐标(row, col)对应的源下标是线性的：index = base + row * rowStep + col * colStep
+        int base = sourceIndex(0, 0, width, height, 1, width, dstWidth, dstHeight, rotateDegree, mirrorHorizontal, mirrorVertical);
+        int rowStep = sourceIndex(1, 0, width, height, 1, width, dstWidth, dstHeight, rotateDegree, mirrorHorizontal, mirrorVertical) - base;
+        int colStep = sourceIndex(0, 1, width, height, 1, width, dstWidth, dstHeight, rotateDegree, mirrorHorizontal, mirrorVertical) - base;
+        int out = 0;
+        for (int row = 0; row < dstHeight; row++) {
+            int index = base + row * rowStep;
+            for (int col = 0; col < dstWidth; col++) {
+                dst[out++] = bytes[index];
+                index += colStep;
+            }
+        }
+
+        // 色度平面按VU对处理，每对占2字节
+        int uvWidth = width / 2;
+        int uvHeight = height / 2;
+        int dstUvWidth = dstWidth / 2;
+        int dstUvHeight = dstHeight / 2;
+        base = sourceIndex(0, 0, uvWidth, uvHeight, 2, width, dstUvWidth, dstUvHeight, rotateDegree, mirrorHorizontal, mirrorVertical);
+        rowStep = sourceIndex(1, 0, uvWidth, uvHeight, 2, width, dstUvWidth, dstUvHeight, rotateDegree, mirrorHorizontal, mirrorVertical) - base;
+        colStep = sourceIndex(0, 1, uvWidth, uvHeight, 2, width, dstUvWidth, dstUvHeight, rotateDegree, mirrorHorizontal, mirrorVertical) - base;
+        out = ySize;
+        for (int row = 0; row < dstUvHeight; row++) {
+            int index = ySize + base + row * rowStep;
+            for (int col = 0; col < dstUvWidth; col++) {
+                dst[out++] = bytes[index];
+                dst[out++] = bytes[index + 1];
+                index += colStep;
+            }
+        }
+        return new NV21Result(dst, dstWidth, dstHeight);
+    }
+
+    /**
+     * 输出坐标(row, col)对应的源下标
+     */
+    private static int sourceIndex(int row, int col, int width, int height, int pixelBytes, int stride, int dstWidth, int dstHeight,
+                                   int rotateDegree, boolean mirrorHorizontal, boolean mirrorVertical) {
+        // 先撤销镜像，再撤销旋转
+        int r = mirrorVertical ? dstHeight - 1 - row : row;
+        int c = mirrorHorizontal ? dstWidth - 1 - col : col;
+        int sx;
+        int sy;
+        switch (rotateDegree) {
+            case 90:
+                sx = r;
+                sy = height - 1 - c;
+                break;
+            case 180:
+                sx = width - 1 - c;
+                sy = height - 1 - r;
+                break;
+            case 270:
+                sx = width - 1 - r;
+                sy = c;
+                break;
+            default:
+                sx = c;
+                sy = r;
+                break;
+        }
+        return sy * stride + sx * pixelBytes;
+    }
+
+    /**
+     * 宽高各缩小一半，Y取2x2均值，VU取相邻两组的均值，结果写入 dst
+     *
+     * @param bytes  NV21数据
+     * @param width  宽
+     * @param height 高
+     * @param dst    长度不小于 {@link #getHalfSize(int)} * {@link #getHalfSize(int)} * 3 / 2
+     * @return 缩小后的数据
+     */
+    @NonNull
+    public static NV21Result downscale2x(@NonNull byte[] bytes, int width, int height, @NonNull byte[] dst) {
+        int dstWidth = getHalfSize(width);
+        int dstHeight = getHalfSize(height);
+        int ySize = width * height;
+        int dstYSize = dstWidth * dstHeight;
+        for (int y = 0; y < dstHeight; y++) {
+            int src0 = (y * 2) * width;
+            int src1 = src0 + width;
+            int out = y * dstWidth;
+            for (int x = 0; x < dstWidth; x++) {
+                int sx = x * 2;
+                dst[out + x] = (byte) (((bytes[src0 + sx] & 0xFF) + (bytes[src0 + sx + 1] & 0xFF)
+                        + (bytes[src1 + sx] & 0xFF) + (bytes[src1 + sx + 1] & 0xFF) + 2) >> 2);
+            }
+        }
+        // 色度平面宽 width / 2 组 VU，高 height / 2 行，缩小后每2x2组取均值，保持VU顺序
+        for (int y = 0; y < dstHeight / 2; y++) {
+            int src0 = ySize + (y * 2) * width;
+            int src1 = src0 + width;
+            int out = dstYSize + y * dstWidth;
+            for (int x = 0; x < dstWidth; x += 2) {
+                int sx = x * 2;
+                dst[out + x] = (byte) (((bytes[src0 + sx] & 0xFF) + (bytes[src0 + sx + 2] & 0xFF)
+                        + (bytes[src1 + sx] & 0xFF) + (bytes[src1 + sx + 2] & 0xFF) + 2) >> 2);
+                dst[out + x + 1] = (byte) (((bytes[src0 + sx + 1] & 0xFF) + (bytes[src0 + sx + 3] & 0xFF)
+                        + (bytes[src1 + sx + 1] & 0xFF) + (bytes[src1 + sx + 3] & 0xFF) + 2) >> 2);
+            }
+        }
+        return new NV21Result(dst, dstWidth, dstHeight);
+    }
+
+    /**
+     * 缩小一半后的尺寸，保证为偶数
+     */
+    public static int getHalfSize(int size) {
+        return size / 4 * 2;
+    }
+
+    /**
+     * NV21转ARGB_8888像素，BT.601整数运算，结果写入 argb
+     *
+     * @param bytes  NV21数据
+     * @param width  宽
+     * @param height 高
+     * @param argb   长度不小于 width * height，可以直接用于 Bitmap.setPixels
+     */
+    public static void toArgb(@NonNull byte[] bytes, int width, int height, @NonNull int[] argb) {
+        int ySize = width * height;
+        for (int y = 0; y < height; y++) {
+            int yIndex = y * width;
+            int uvIndex = ySize + (y >> 1) * width;
+            for (int x = 0; x < width; x++) {
+                int uvOffset = uvIndex + (x & ~1);
+                int yValue = Math.max(0, (bytes[yIndex + x] & 0xFF) - 16);
+                int v = (bytes[uvOffset] & 0xFF) - 128;
+                int u = (bytes[uvOffset + 1] & 0xFF) - 128;
+                int y1192 = 1192 * yValue;
+                int r = clamp((y1192 + 1634 * v) >> 10);
+                int g = clamp((y1192 - 833 * v - 400 * u) >> 10);
+                int b = clamp((y1192 + 2066 * u) >> 10);
+                argb[yIndex + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    /**
+     * 不缩放，把NV21图片放到 dstWidth * dstHeight 中，其余部分填充颜色，结果写入 dst
+     *
+     * @param bytes     NV21数据
+     * @param width     宽，偶数
+     * @param height    高，偶数
+     * @param dstWidth  目标宽，偶数且不小于 width
+     * @param dstHeight 目标高，偶数且不小于 height
+     * @param fillColor 填充颜色 RGB，忽略透明度
+     * @param anchor    内容位置 {@link BitmapUtils#ANCHOR_CENTER}, {@link BitmapUtils#ANCHOR_START} or {@link BitmapUtils#ANCHOR_END}，偏移取偶
+     * @param dst       长度不小于 dstWidth * dstHeight * 3 / 2
+     * @return 填充后的数据
+     */
+    @NonNull
+    public static NV21Result pad(@NonNull byte[] bytes, int width, int height, int dstWidth, int dstHeight,
+                                 int fillColor, int anchor, @NonNull byte[] dst) {
+        if (dstWidth < width || dstHeight < height) {
+            throw new IllegalArgumentException("pad size " + dstWidth + "x" + dstHeight + " smaller than " + width + "x" + height);
+        }
+        return letterbox(bytes, width, height, dstWidth, dstHeight, width, height, fillColor, anchor, dst);
+    }
+
+    /**
+     * 等比缩放（最近邻）到 dstWidth * dstHeight 以内，其余部分填充颜色，结果写入 dst，用于模型输入前的预处理
+     *
+     * @param bytes     NV21数据
+     * @param width     宽，偶数
+     * @param height    高，偶数
+     * @param dstWidth  目标宽，偶数
+     * @param dstHeight 目标高，偶数
+     * @param fillColor 填充颜色 RGB，忽略透明度
+     * @param anchor    内容位置 {@link BitmapUtils#ANCHOR_CENTER}, {@link BitmapUtils#ANCHOR_START} or {@link BitmapUtils#ANCHOR_END}，偏移取偶
+     * @param dst       长度不小于 dstWidth * dstHeight * 3 / 2
+     * @return 填充后的数据
+     */
+    @NonNull
+    public static NV21Result letterbox(@NonNull byte[] bytes, int width, int height, int dstWidth, int dstHeight,
+                                       int fillColor, int anchor, @NonNull byte[] dst) {
+        float scale = Math.min((float) dstWidth / width, (float) dstHeight / height);
+        int contentWidth = Math.max(2, Math.min(dstWidth, Math.round(width * scale) / 2 * 2));
+        int contentHeight = Math.max(2, Math.min(dstHeight, Math.round(height * scale) / 2 * 2));
+        return letterbox(bytes, width, height, dstWidth, dstHeight, contentWidth, contentHeight, fillColor, anchor, dst);
+    }
+
+    private static NV21Result letterbox(byte[] bytes, int width, int height, int dstWidth, int dstHeight,
+                                        int contentWidth, int contentHeight, int fillColor, int anchor, byte[] dst) {
+        if ((width | height | dstWidth | dstHeight) % 2 != 0) {
+            throw new IllegalArgumentException("NV21 size must be even");
+        }
+        int dstYSize = dstWidth * dstHeight;
+        if (dst.length < dstYSize * 3 / 2) {
+            throw new IllegalArgumentException("dst too small: " + dst.length);
+        }
+        int r = (fillColor >> 16) & 0xFF;
+        int g = (fillColor >> 8) & 0xFF;
+        int b = fillColor & 0xFF;
+        // BT.601 有限范围，与 toArgb 互逆
+        byte fillY = (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+        byte fillU = (byte) (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128);
+        byte fillV = (byte) (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128);
+
+        int left = BitmapUtils.anchorOffset(dstWidth, contentWidth, anchor) & ~1;
+        int top = BitmapUtils.anchorOffset(dstHeight, contentHeight, anchor) & ~1;
+        int right = left + contentWidth;
+        int bottom = top + contentHeight;
+        boolean scaled = contentWidth != width || contentHeight != height;
+        int[] columns = null;
+        if (scaled) {
+            columns = new int[contentWidth];
+            for (int x = 0; x < contentWidth; x++) {
+                columns[x] = (int) ((long) x * width / contentWidth);
+            }
+        }
+
+        // Y平面：上下空白整块填充，内容行左右空白按段填充
+        Arrays.fill(dst, 0, top * dstWidth, fillY);
+        Arrays.fill(dst, bottom * dstWidth, dstYSize, fillY);
+        for (int y = top; y < bottom; y++) {
+            int out = y * dstWidth;
+            Arrays.fill(dst, out, out + left, fillY);
+            Arrays.fill(dst, out + right, out + dstWidth, fillY);
+            int sy = scaled ? (int) ((long) (y - top) * height / contentHeight) : y - top;
+            int src = sy * width;
+            if (scaled) {
+                for (int x = 0; x < contentWidth; x++) {
+                    dst[out + left + x] = bytes[src + columns[x]];
+                }
+            } else {
+                System.arraycopy(bytes, src, dst, out + left, contentWidth);
+            }
+        }
+
+        // VU平面：先生成一行填充模板，空白部分从模板拷贝
+        int ySize = width * height;
+        byte[] fillRow = new byte[dstWidth];
+        for (int x = 0; x < dstWidth; x += 2) {
+            fillRow[x] = fillV;
+            fillRow[x + 1] = fillU;
+        }
+        int chromaTop = top / 2;
+        int chromaBottom = bottom / 2;
+        for (int y = 0; y < dstHeight / 2; y++) {
+            int out = dstYSize + y * dstWidth;
+            if (y < chromaTop || y >= chromaBottom) {
+                System.arraycopy(fillRow, 0, dst, out, dstWidth);
+                continue;
+            }
+            System.arraycopy(fillRow, 0, dst, out, left);
+            System.arraycopy(fillRow, right, dst, out + right, dstWidth - right);
+            int sy = scaled ? (int) ((long) (y - chromaTop) * 2 * height / contentHeight) >> 1 : y - chromaTop;
+            int src = ySize + sy * width;
+            if (scaled) {
+                for (int x = 0; x < contentWidth; x += 2) {
+                    int sx = src + (columns[x] & ~1);
+                    dst[out + left + x] = bytes[sx];
+                    dst[out + left + x + 1] = bytes[sx + 1];
+                }
+            } else {
+                System.arraycopy(bytes, src, dst, out + left, contentWidth);
+            }
+        }
+        return new NV21Result(dst, dstWidth, dstHeight);
+    }
+
     /**
      * NV21裁剪
      *
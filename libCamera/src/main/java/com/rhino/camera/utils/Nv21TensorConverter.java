@@ -0,0 +1,427 @@
+package com.rhino.camera.utils;
+
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * <p>NV21 直接转换为模型输入，一次遍历完成裁剪、旋转、镜像、缩放、YUV转RGB/BGR、归一化和 HWC/CHW 排列</p>
+ * <p>替代 NV21 → JPEG → Bitmap → RGB byte[] → float 的多次整帧拷贝：每个输出像素直接从 NV21 采样，
+ * 亮度双线性插值，色度取最近点，颜色转换与 {@link NV21ByteUtils#toArgb} 一致；归一化通过每通道 256 项的查找表完成</p>
+ * <p>输出写入调用方提供的 ByteBuffer（float32 或 uint8）或 FloatBuffer，从当前 position 开始按绝对下标写入，position 不变；
+ * 设置线程池后按输出行分带并行。配置完成后 convert 可以多线程同时调用</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class Nv21TensorConverter {
+
+    public static final int ORDER_RGB = 0;
+    public static final int ORDER_BGR = 1;
+
+    /**
+     * [H][W][C]
+     */
+    public static final int LAYOUT_HWC = 0;
+    /**
+     * [C][H][W]
+     */
+    public static final int LAYOUT_CHW = 1;
+
+    public static final int TYPE_FLOAT32 = 0;
+    public static final int TYPE_UINT8 = 1;
+
+    /**
+     * 一次转换的采样表，只与源尺寸、角度、镜像和裁剪区域有关，相同参数的连续调用复用
+     */
+    private static final class Geometry {
+        int width;
+        int height;
+        int rotateDegree;
+        boolean mirror;
+        boolean bilinear;
+        int roiLeft;
+        int roiTop;
+        int roiWidth;
+        int roiHeight;
+        /**
+         * 90/270度时源x由输出行决定，源y由输出列决定
+         */
+        boolean swap;
+        int[] x0;
+        int[] x1;
+        int[] xWeight;
+        int[] chromaX;
+        int[] y0;
+        int[] y1;
+        int[] yWeight;
+        int[] chromaY;
+
+        boolean matches(int width, int height, int rotateDegree, boolean mirror, boolean bilinear,
+                        int left, int top, int roiWidth, int roiHeight) {
+            return this.width == width && this.height == height && this.rotateDegree == rotateDegree && this.mirror == mirror
+                    && this.bilinear == bilinear && roiLeft == left && roiTop == top && this.roiWidth == roiWidth && this.roiHeight == roiHeight;
+        }
+    }
+
+    private final int outWidth;
+    private final int outHeight;
+    private int channelOrder = ORDER_RGB;
+    private int layout = LAYOUT_HWC;
+    private int dataType = TYPE_FLOAT32;
+    private final float[][] lut = new float[3][256];
+    private boolean bilinear = true;
+    @Nullable
+    private ExecutorService executor;
+    private int bandCount = 1;
+    private volatile Geometry geometry;
+
+    /**
+     * @param outWidth  模型输入宽
+     * @param outHeight 模型输入高
+     */
+    public Nv21TensorConverter(int outWidth, int outHeight) {
+        if (outWidth <= 0 || outHeight <= 0) {
+            throw new IllegalArgumentException("invalid output size: " + outWidth + "x" + outHeight);
+        }
+        this.outWidth = outWidth;
+        this.outHeight = outHeight;
+        setNormalization(new float[]{0f, 0f, 0f}, new float[]{1f, 1f, 1f});
+    }
+
+    /**
+     * {@link #ORDER_RGB} or {@link #ORDER_BGR}
+     */
+    public Nv21TensorConverter setChannelOrder(int channelOrder) {
+        this.channelOrder = channelOrder;
+        return this;
+    }
+
+    /**
+     * {@link #LAYOUT_HWC} or {@link #LAYOUT_CHW}
+     */
+    public Nv21TensorConverter setLayout(int layout) {
+        this.layout = layout;
+        return this;
+    }
+
+    /**
+     * 写入 ByteBuffer 时的数据类型，{@link #TYPE_FLOAT32} or {@link #TYPE_UINT8}，uint8 不做归一化
+     */
+    public Nv21TensorConverter setDataType(int dataType) {
+        this.dataType = dataType;
+        return this;
+    }
+
+    /**
+     * 归一化 (value - mean) / std，value 为 0~255 的像素值，按输出通道顺序给出，默认不归一化
+     * <p>例如 [0,1] 为 mean 0、std 255；[-1,1] 为 mean 127.5、std 127.5</p>
+     */
+    public Nv21TensorConverter setNormalization(@NonNull float[] mean, @NonNull float[] std) {
+        if (mean.length != 3 || std.length != 3) {
+            throw new IllegalArgumentException("mean and std must have 3 channels");
+        }
+        for (int c = 0; c < 3; c++) {
+            for (int v = 0; v < 256; v++) {
+                lut[c][v] = (v - mean[c]) / std[c];
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 缩放时亮度是否双线性插值，false 取最近点，默认 true
+     */
+    public Nv21TensorConverter setBilinear(boolean bilinear) {
+        this.bilinear = bilinear;
+        return this;
+    }
+
+    /**
+     * 按输出行分带并行，第一带在调用线程处理
+     *
+     * @param executor  null 单线程
+     * @param bandCount 分带数，一般取CPU核数
+     */
+    public Nv21TensorConverter setExecutor(@Nullable ExecutorService executor, int bandCount) {
+        this.executor = executor;
+        this.bandCount = Math.max(1, bandCount);
+        return this;
+    }
+
+    public int getOutWidth() {
+        return outWidth;
+    }
+
+    public int getOutHeight() {
+        return outHeight;
+    }
+
+    /**
+     * 写入 ByteBuffer 需要的字节数
+     */
+    public int getOutputBytes() {
+        return outWidth * outHeight * 3 * (dataType == TYPE_FLOAT32 ? 4 : 1);
+    }
+
+    /**
+     * 转换到 ByteBuffer，float32 按 buffer 的字节序写入，一般为 {@link java.nio.ByteOrder#nativeOrder()} 的直接缓冲
+     *
+     * @param rotateDegree 转正需要顺时针旋转的角度
+     * @param mirror       转正后是否水平镜像
+     * @param roi          转正（及镜像）后图像上的裁剪区域，null 为整幅
+     */
+    public void convert(@NonNull byte[] nv21, int width, int height, int rotateDegree, boolean mirror,
+                        @Nullable Rect roi, @NonNull ByteBuffer out) {
+        if (out.remaining() < getOutputBytes()) {
+            throw new IllegalArgumentException("output buffer too small: " + out.remaining() + " < " + getOutputBytes());
+        }
+        run(nv21, width, height, rotateDegree, mirror, roi, out, null);
+    }
+
+    /**
+     * 转换到 FloatBuffer，总是按归一化后的 float 写入
+     */
+    public void convert(@NonNull byte[] nv21, int width, int height, int rotateDegree, boolean mirror,
+                        @Nullable Rect roi, @NonNull FloatBuffer out) {
+        if (out.remaining() < outWidth * outHeight * 3) {
+            throw new IllegalArgumentException("output buffer too small: " + out.remaining() + " < " + outWidth * outHeight * 3);
+        }
+        run(nv21, width, height, rotateDegree, mirror, roi, null, out);
+    }
+
+    private void run(@NonNull final byte[] nv21, final int width, final int height, int rotateDegree, boolean mirror,
+                     @Nullable Rect roi, @Nullable final ByteBuffer byteOut, @Nullable final FloatBuffer floatOut) {
+        if (nv21.length < width * height * 3 / 2) {
+            throw new IllegalArgumentException("nv21 data too short");
+        }
+        final Geometry geometry = obtainGeometry(width, height, rotateDegree, mirror, roi);
+        ExecutorService executor = this.executor;
+        int bands = executor == null ? 1 : Math.min(bandCount, outHeight);
+        final int bandRows = (outHeight + bands - 1) / bands;
+        List<Future<?>> futures = new ArrayList<>(bands);
+        try {
+            for (int i = 1; i * bandRows < outHeight; i++) {
+                final int start = i * bandRows;
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        convertRows(nv21, width, height, geometry, start, Math.min(outHeight, start + bandRows), byteOut, floatOut);
+                    }
+                }));
+            }
+            convertRows(nv21, width, height, geometry, 0, Math.min(outHeight, bandRows), byteOut, floatOut);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("tensor convert interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("tensor convert failed", e.getCause());
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private void convertRows(byte[] nv21, int width, int height, Geometry g, int rowStart, int rowEnd,
+                             @Nullable ByteBuffer byteOut, @Nullable FloatBuffer floatOut) {
+        int ySize = width * height;
+        int planeSize = outWidth * outHeight;
+        boolean chw = layout == LAYOUT_CHW;
+        boolean bgr = channelOrder == ORDER_BGR;
+        float[] lut0 = lut[0];
+        float[] lut1 = lut[1];
+        float[] lut2 = lut[2];
+        boolean uint8 = byteOut != null && dataType == TYPE_UINT8;
+        boolean bilinear = g.bilinear;
+        int base = byteOut != null ? byteOut.position() : floatOut.position();
+        for (int oy = rowStart; oy < rowEnd; oy++) {
+            for (int ox = 0; ox < outWidth; ox++) {
+                int xi = g.swap ? oy : ox;
+                int yi = g.swap ? ox : oy;
+                int sx0 = g.x0[xi];
+                int sy0 = g.y0[yi];
+                int luma;
+                if (bilinear) {
+                    int sx1 = g.x1[xi];
+                    int wx = g.xWeight[xi];
+                    int wy = g.yWeight[yi];
+                    int row0 = sy0 * width;
+                    int row1 = g.y1[yi] * width;
+                    int top = (nv21[row0 + sx0] & 0xFF) * (256 - wx) + (nv21[row0 + sx1] & 0xFF) * wx;
+                    int bottom = (nv21[row1 + sx0] & 0xFF) * (256 - wx) + (nv21[row1 + sx1] & 0xFF) * wx;
+                    luma = (top * (256 - wy) + bottom * wy + 32768) >> 16;
+                } else {
+                    luma = nv21[sy0 * width + sx0] & 0xFF;
+                }
+                int uvIndex = ySize + g.chromaY[yi] * width + g.chromaX[xi];
+                int yValue = Math.max(0, luma - 16);
+                int v = (nv21[uvIndex] & 0xFF) - 128;
+                int u = (nv21[uvIndex + 1] & 0xFF) - 128;
+                int y1192 = 1192 * yValue;
+                int r = clamp((y1192 + 1634 * v) >> 10);
+                int c1 = clamp((y1192 - 833 * v - 400 * u) >> 10);
+                int b = clamp((y1192 + 2066 * u) >> 10);
+                int c0 = bgr ? b : r;
+                int c2 = bgr ? r : b;
+
+                int pixel = oy * outWidth + ox;
+                int i0;
+                int i1;
+                int i2;
+                if (chw) {
+                    i0 = pixel;
+                    i1 = planeSize + pixel;
+                    i2 = planeSize * 2 + pixel;
+                } else {
+                    i0 = pixel * 3;
+                    i1 = i0 + 1;
+                    i2 = i0 + 2;
+                }
+                if (floatOut != null) {
+                    floatOut.put(base + i0, lut0[c0]);
+                    floatOut.put(base + i1, lut1[c1]);
+                    floatOut.put(base + i2, lut2[c2]);
+                } else if (uint8) {
+                    byteOut.put(base + i0, (byte) c0);
+                    byteOut.put(base + i1, (byte) c1);
+                    byteOut.put(base + i2, (byte) c2);
+                } else {
+                    byteOut.putFloat(base + i0 * 4, lut0[c0]);
+                    byteOut.putFloat(base + i1 * 4, lut1[c1]);
+                    byteOut.putFloat(base + i2 * 4, lut2[c2]);
+                }
+            }
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    /**
+     * 获取采样表，参数与上一次相同时复用
+     */
+    @NonNull
+    private Geometry obtainGeometry(int width, int height, int rotateDegree, boolean mirror, @Nullable Rect roi) {
+        rotateDegree = (rotateDegree % 360 + 360) % 360;
+        if (rotateDegree % 90 != 0) {
+            throw new IllegalArgumentException("rotateDegree must be a multiple of 90: " + rotateDegree);
+        }
+        boolean swap = rotateDegree == 90 || rotateDegree == 270;
+        int rotatedWidth = swap ? height : width;
+        int rotatedHeight = swap ? width : height;
+        int left = roi == null ? 0 : Math.max(0, roi.left);
+        int top = roi == null ? 0 : Math.max(0, roi.top);
+        int right = roi == null ? rotatedWidth : Math.min(rotatedWidth, roi.right);
+        int bottom = roi == null ? rotatedHeight : Math.min(rotatedHeight, roi.bottom);
+        if (right <= left || bottom <= top) {
+            throw new IllegalArgumentException("empty roi");
+        }
+        Geometry cached = geometry;
+        if (cached != null && cached.matches(width, height, rotateDegree, mirror, bilinear, left, top, right - left, bottom - top)) {
+            return cached;
+        }
+        Geometry g = new Geometry();
+        g.width = width;
+        g.height = height;
+        g.rotateDegree = rotateDegree;
+        g.mirror = mirror;
+        g.bilinear = bilinear;
+        g.roiLeft = left;
+        g.roiTop = top;
+        g.roiWidth = right - left;
+        g.roiHeight = bottom - top;
+        g.swap = swap;
+
+        // 输出列 -> 转正图像的 u，输出行 -> 转正图像的 v；再按角度换算到源坐标
+        float uScale = (float) g.roiWidth / outWidth;
+        float vScale = (float) g.roiHeight / outHeight;
+        float uOffset = left + 0.5f * uScale - 0.5f;
+        float vOffset = top + 0.5f * vScale - 0.5f;
+        if (mirror) {
+            // u' = rotatedWidth - 1 - u
+            uOffset = rotatedWidth - 1 - uOffset;
+            uScale = -uScale;
+        }
+        // 源 x、源 y 各自关于驱动它的输出轴的线性函数：source = offset + index * scale
+        float xOffset;
+        float xScale;
+        float yOffset;
+        float yScale;
+        switch (rotateDegree) {
+            case 90:
+                // 转正(u, v) = 源(v, height - 1 - u)
+                xOffset = vOffset;
+                xScale = vScale;
+                yOffset = height - 1 - uOffset;
+                yScale = -uScale;
+                break;
+            case 180:
+                xOffset = width - 1 - uOffset;
+                xScale = -uScale;
+                yOffset = height - 1 - vOffset;
+                yScale = -vScale;
+                break;
+            case 270:
+                // 转正(u, v) = 源(width - 1 - v, u)
+                xOffset = width - 1 - vOffset;
+                xScale = -vScale;
+                yOffset = uOffset;
+                yScale = uScale;
+                break;
+            default:
+                xOffset = uOffset;
+                xScale = uScale;
+                yOffset = vOffset;
+                yScale = vScale;
+                break;
+        }
+        int xCount = swap ? outHeight : outWidth;
+        int yCount = swap ? outWidth : outHeight;
+        g.x0 = new int[xCount];
+        g.x1 = new int[xCount];
+        g.xWeight = new int[xCount];
+        g.chromaX = new int[xCount];
+        buildAxis(xOffset, xScale, width, g.x0, g.x1, g.xWeight, g.chromaX);
+        // chromaX 为 VU 交错行内的字节偏移
+        for (int i = 0; i < xCount; i++) {
+            g.chromaX[i] <<= 1;
+        }
+        g.y0 = new int[yCount];
+        g.y1 = new int[yCount];
+        g.yWeight = new int[yCount];
+        g.chromaY = new int[yCount];
+        buildAxis(yOffset, yScale, height, g.y0, g.y1, g.yWeight, g.chromaY);
+        geometry = g;
+        return g;
+    }
+
+    private void buildAxis(float offset, float scale, int size, int[] index0, int[] index1, int[] weight, int[] chroma) {
+        for (int i = 0; i < index0.length; i++) {
+            float position = offset + i * scale;
+            position = Math.max(0f, Math.min(size - 1, position));
+            int floor = (int) position;
+            index0[i] = floor;
+            index1[i] = Math.min(size - 1, floor + 1);
+            weight[i] = Math.round((position - floor) * 256);
+            if (!bilinear) {
+                index0[i] = Math.min(size - 1, Math.round(position));
+            }
+            chroma[i] = Math.min(size / 2 - 1, Math.round(position) >> 1);
+        }
+    }
+
+}
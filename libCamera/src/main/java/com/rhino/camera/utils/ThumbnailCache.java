@@ -0,0 +1,481 @@
+package com.rhino.camera.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.rhino.log.LogUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>拍照文件缩略图两级缓存：内存 LRU 按字节数限制，磁盘缓存保存小 JPEG，键为路径、修改时间和文件大小</p>
+ * <p>缩略图在后台线程生成：依次查找磁盘缓存、EXIF 中嵌入的缩略图（{@link JpegHeaderParser}）、按采样率解码原图，
+ * 结果按 EXIF 方向旋转后写入两级缓存。同一文件的并发请求只生成一次，所有请求都取消后停止生成</p>
+ * <p>回调在后台线程执行</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class ThumbnailCache {
+
+    private static final String TAG = ThumbnailCache.class.getSimpleName();
+
+    /**
+     * 默认缩略图长边
+     */
+    public static final int DEFAULT_MAX_SIDE = 256;
+    /**
+     * 默认磁盘缓存大小
+     */
+    public static final long DEFAULT_DISK_BYTES = 32L * 1024 * 1024;
+    /**
+     * 磁盘缓存 JPEG 质量
+     */
+    private static final int DISK_QUALITY = 85;
+    private static final String DISK_SUFFIX = ".jpg";
+
+    /**
+     * 缩略图回调，在后台线程执行
+     */
+    public interface Callback {
+        void onThumbnailLoaded(@NonNull String path, @NonNull Bitmap thumbnail);
+
+        void onThumbnailFailed(@NonNull String path, @NonNull Exception e);
+    }
+
+    /**
+     * 一次请求，可以取消；同一文件的其它请求不受影响
+     */
+    public final class Request {
+        private final LoadTask task;
+        private final Callback callback;
+
+        private Request(@Nullable LoadTask task, @Nullable Callback callback) {
+            this.task = task;
+            this.callback = callback;
+        }
+
+        /**
+         * 取消请求，不再回调；同一文件没有其它请求时停止生成
+         */
+        public void cancel() {
+            if (task != null) {
+                task.removeCallback(callback);
+            }
+        }
+    }
+
+    private final LruCache<String, Bitmap> memoryCache;
+    private final File diskDir;
+    private final long maxDiskBytes;
+    private final int maxSide;
+    private final ExecutorService executor;
+    private final Map<String, LoadTask> tasks = new HashMap<>();
+    private long diskBytes = -1;
+
+    /**
+     * 内存缓存为最大堆内存的 1/8，后台2个线程
+     *
+     * @param diskDir 磁盘缓存目录
+     */
+    public ThumbnailCache(@NonNull File diskDir) {
+        this(diskDir, DEFAULT_MAX_SIDE, (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8),
+                DEFAULT_DISK_BYTES, newLoadExecutor(2));
+    }
+
+    /**
+     * @param diskDir      磁盘缓存目录
+     * @param maxSide      缩略图长边
+     * @param memoryBytes  内存缓存字节数
+     * @param maxDiskBytes 磁盘缓存字节数
+     * @param executor     生成缩略图的线程池
+     */
+    public ThumbnailCache(@NonNull File diskDir, int maxSide, int memoryBytes, long maxDiskBytes, @NonNull ExecutorService executor) {
+        this.diskDir = diskDir;
+        this.maxSide = Math.max(1, maxSide);
+        this.maxDiskBytes = maxDiskBytes;
+        this.executor = executor;
+        this.memoryCache = new LruCache<String, Bitmap>(Math.max(1, memoryBytes)) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    private static ExecutorService newLoadExecutor(int threadCount) {
+        final AtomicInteger index = new AtomicInteger();
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable r) {
+                        Thread thread = new Thread(r, "thumbnail-" + index.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * 内存缓存中的缩略图，只读取文件属性不解码，可以在主线程调用
+     */
+    @Nullable
+    public Bitmap getFromMemory(@NonNull String path) {
+        return memoryCache.get(getKey(new File(path)));
+    }
+
+    /**
+     * 加载缩略图，内存缓存命中时在当前线程直接回调
+     *
+     * @param path     图片文件路径
+     * @param callback 回调
+     * @return 请求，用于取消
+     */
+    @NonNull
+    public Request load(@NonNull String path, @NonNull Callback callback) {
+        String key = getKey(new File(path));
+        Bitmap bitmap = memoryCache.get(key);
+        if (bitmap != null) {
+            callback.onThumbnailLoaded(path, bitmap);
+            return new Request(null, null);
+        }
+        LoadTask task;
+        synchronized (tasks) {
+            task = tasks.get(key);
+            if (task == null) {
+                task = new LoadTask(path, key);
+                tasks.put(key, task);
+                task.callbacks.add(callback);
+                try {
+                    task.future = executor.submit(task);
+                } catch (RejectedExecutionException e) {
+                    tasks.remove(key);
+                    callback.onThumbnailFailed(path, e);
+                    return new Request(null, null);
+                }
+            } else {
+                task.callbacks.add(callback);
+            }
+        }
+        return new Request(task, callback);
+    }
+
+    /**
+     * 清空内存缓存
+     */
+    public void clearMemory() {
+        memoryCache.evictAll();
+    }
+
+    /**
+     * 停止后台线程，未开始的请求不再执行
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 缓存键：路径、修改时间、文件大小，文件被覆盖后自动失效
+     */
+    @NonNull
+    private static String getKey(@NonNull File file) {
+        return file.getAbsolutePath() + '|' + file.lastModified() + '|' + file.length();
+    }
+
+    @NonNull
+    private File getDiskFile(@NonNull String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(key.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(hash.length * 2 + DISK_SUFFIX.length());
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return new File(diskDir, name.append(DISK_SUFFIX).toString());
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return new File(diskDir, Integer.toHexString(key.hashCode()) + DISK_SUFFIX);
+        }
+    }
+
+    private final class LoadTask implements Runnable {
+        private final String path;
+        private final String key;
+        private final List<Callback> callbacks = new ArrayList<>();
+        private Future<?> future;
+        private volatile boolean cancelled;
+
+        LoadTask(String path, String key) {
+            this.path = path;
+            this.key = key;
+        }
+
+        void removeCallback(Callback callback) {
+            synchronized (tasks) {
+                if (!callbacks.remove(callback) || !callbacks.isEmpty()) {
+                    return;
+                }
+                cancelled = true;
+                if (tasks.get(key) == this) {
+                    tasks.remove(key);
+                }
+                if (future != null) {
+                    future.cancel(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            Bitmap bitmap = null;
+            Exception error = null;
+            try {
+                bitmap = loadThumbnail(this);
+            } catch (Exception e) {
+                error = e;
+            }
+            List<Callback> targets;
+            synchronized (tasks) {
+                if (tasks.get(key) == this) {
+                    tasks.remove(key);
+                }
+                targets = new ArrayList<>(callbacks);
+                callbacks.clear();
+            }
+            for (Callback callback : targets) {
+                if (bitmap != null) {
+                    callback.onThumbnailLoaded(path, bitmap);
+                } else {
+                    callback.onThumbnailFailed(path, error != null ? error : new IOException("decode thumbnail failed"));
+                }
+            }
+        }
+
+        void checkCancelled() {
+            if (cancelled) {
+                throw new CancellationException(path);
+            }
+        }
+    }
+
+    /**
+     * 依次查找内存、磁盘、EXIF 缩略图，最后采样解码原图
+     */
+    @Nullable
+    private Bitmap loadThumbnail(@NonNull LoadTask task) throws IOException {
+        long timestamp = System.currentTimeMillis();
+        Bitmap bitmap = memoryCache.get(task.key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        File diskFile = getDiskFile(task.key);
+        if (diskFile.isFile()) {
+            bitmap = BitmapFactory.decodeFile(diskFile.getAbsolutePath());
+            if (bitmap != null) {
+                diskFile.setLastModified(System.currentTimeMillis());
+                memoryCache.put(task.key, bitmap);
+                LogUtils.d(TAG, "磁盘缓存命中, path = " + task.path + ", time = " + (System.currentTimeMillis() - timestamp));
+                return bitmap;
+            }
+        }
+        task.checkCancelled();
+
+        String source = "exif";
+        int orientation = JpegExifWriter.ORIENTATION_UNDEFINED;
+        try {
+            JpegHeaderParser.JpegHeader header = JpegHeaderParser.parse(new File(task.path));
+            orientation = header.getOrientation();
+            ByteBuffer thumbnail = header.getThumbnail();
+            if (thumbnail != null) {
+                bitmap = decodeEmbedded(thumbnail);
+            }
+        } catch (IOException e) {
+            // 不是JPEG或文件头损坏，按原图解码
+        }
+        task.checkCancelled();
+        if (bitmap == null) {
+            source = "sampled";
+            bitmap = BitmapUtils.decodeSampledBitmapFromFile(task.path, maxSide, maxSide, null);
+        }
+        if (bitmap == null) {
+            return null;
+        }
+        bitmap = applyOrientation(bitmap, orientation);
+        task.checkCancelled();
+        writeDiskCache(diskFile, bitmap);
+        memoryCache.put(task.key, bitmap);
+        LogUtils.d(TAG, "生成缩略图, source = " + source + ", path = " + task.path + ", size = " + bitmap.getWidth() + "x" + bitmap.getHeight()
+                + ", time = " + (System.currentTimeMillis() - timestamp));
+        return bitmap;
+    }
+
+    /**
+     * 解码 EXIF 中嵌入的缩略图，长边不足 maxSide 的一半时认为太模糊，不使用
+     */
+    @Nullable
+    private Bitmap decodeEmbedded(@NonNull ByteBuffer thumbnail) {
+        byte[] data;
+        int offset;
+        int length = thumbnail.remaining();
+        if (thumbnail.hasArray()) {
+            data = thumbnail.array();
+            offset = thumbnail.arrayOffset() + thumbnail.position();
+        } else {
+            // 内存映射的缩略图只有几KB到几十KB，拷贝出来交给 BitmapFactory
+            data = new byte[length];
+            thumbnail.get(data);
+            offset = 0;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, offset, length, options);
+        if (Math.max(options.outWidth, options.outHeight) * 2 < maxSide) {
+            return null;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = BitmapUtils.calculateInSampleSize(options.outWidth, options.outHeight, maxSide, maxSide);
+        Bitmap bitmap = BitmapFactory.decodeByteArray(data, offset, length, options);
+        if (bitmap == null || Math.max(bitmap.getWidth(), bitmap.getHeight()) <= maxSide) {
+            return bitmap;
+        }
+        float scale = (float) maxSide / Math.max(bitmap.getWidth(), bitmap.getHeight());
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+
+    /**
+     * 按 EXIF 方向旋转，镜像在旋转之后水平翻转，与 {@link JpegExifWriter#toExifOrientation} 一致
+     */
+    @NonNull
+    private static Bitmap applyOrientation(@NonNull Bitmap bitmap, int orientation) {
+        int degree;
+        boolean mirror;
+        switch (orientation) {
+            case JpegExifWriter.ORIENTATION_FLIP_HORIZONTAL:
+                degree = 0;
+                mirror = true;
+                break;
+            case JpegExifWriter.ORIENTATION_ROTATE_180:
+                degree = 180;
+                mirror = false;
+                break;
+            case JpegExifWriter.ORIENTATION_FLIP_VERTICAL:
+                degree = 180;
+                mirror = true;
+                break;
+            case JpegExifWriter.ORIENTATION_TRANSPOSE:
+                degree = 90;
+                mirror = true;
+                break;
+            case JpegExifWriter.ORIENTATION_ROTATE_90:
+                degree = 90;
+                mirror = false;
+                break;
+            case JpegExifWriter.ORIENTATION_TRANSVERSE:
+                degree = 270;
+                mirror = true;
+                break;
+            case JpegExifWriter.ORIENTATION_ROTATE_270:
+                degree = 270;
+                mirror = false;
+                break;
+            default:
+                return bitmap;
+        }
+        Matrix matrix = new Matrix();
+        matrix.postRotate(degree);
+        if (mirror) {
+            matrix.postScale(-1, 1);
+        }
+        Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (rotated != bitmap) {
+            bitmap.recycle();
+        }
+        return rotated;
+    }
+
+    /**
+     * 先写临时文件再重命名，写入后超过磁盘缓存大小时删除最久未使用的文件
+     */
+    private void writeDiskCache(@NonNull File diskFile, @NonNull Bitmap bitmap) {
+        if (!diskDir.isDirectory() && !diskDir.mkdirs()) {
+            return;
+        }
+        File tempFile = new File(diskFile.getAbsolutePath() + ".tmp");
+        boolean success;
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            success = bitmap.compress(Bitmap.CompressFormat.JPEG, DISK_QUALITY, out);
+        } catch (IOException e) {
+            LogUtils.e(TAG, e.toString());
+            success = false;
+        }
+        if (!success || !tempFile.renameTo(diskFile)) {
+            tempFile.delete();
+            return;
+        }
+        trimDiskCache(diskFile.length());
+    }
+
+    private synchronized void trimDiskCache(long addedBytes) {
+        File[] files = diskDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        if (diskBytes < 0) {
+            diskBytes = 0;
+            for (File file : files) {
+                diskBytes += file.length();
+            }
+        } else {
+            diskBytes += addedBytes;
+        }
+        if (diskBytes <= maxDiskBytes) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return Long.compare(f1.lastModified(), f2.lastModified());
+            }
+        });
+        for (File file : files) {
+            if (diskBytes <= maxDiskBytes) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                diskBytes -= length;
+            }
+        }
+    }
+
+}
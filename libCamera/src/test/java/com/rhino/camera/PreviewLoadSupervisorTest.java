@@ -0,0 +1,297 @@
+package com.rhino.camera;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <p>用模拟时钟和目标注入帧间隔、处理耗时，验证 {@link PreviewLoadSupervisor} 的升降级；
+ * 模拟相机按 CameraTextureView 分发预览帧的方式驱动，处理耗时随分辨率变化，切换分辨率需要重启预览</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class PreviewLoadSupervisorTest {
+
+    private static final long FRAME_INTERVAL_MS = 33;
+
+    private static class FakeClock implements PreviewLoadSupervisor.Clock {
+        long nanos = 1_000_000_000L;
+
+        @Override
+        public long nanoTime() {
+            return nanos;
+        }
+
+        void advanceMs(long ms) {
+            nanos += ms * 1_000_000L;
+        }
+    }
+
+    private static class FakeTarget implements PreviewLoadSupervisor.Target {
+        final List<int[]> applied = new ArrayList<>();
+        boolean accept = true;
+
+        @Override
+        public void applyExpectPreviewSize(int width, int height, @NonNull PreviewLoadSupervisor.ApplyCallback callback) {
+            applied.add(new int[]{width, height});
+            callback.onApplied(accept);
+        }
+    }
+
+    /**
+     * 模拟相机：按帧间隔回调，分发是串行的，处理慢时下一帧推迟；处理耗时与像素数成正比，可以额外注入延迟；
+     * 切换分辨率时异步重启预览，期间没有帧
+     */
+    private static class FakeCamera implements PreviewLoadSupervisor.Target {
+        final FakeClock clock;
+        final List<int[]> applied = new ArrayList<>();
+        int width = 1920;
+        int height = 1080;
+        float msPerMegapixel;
+        long extraDelayMs;
+        long restartMs = 300;
+        boolean accept = true;
+        private int[] pendingSize;
+        private PreviewLoadSupervisor.ApplyCallback pendingCallback;
+
+        FakeCamera(FakeClock clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public void applyExpectPreviewSize(int width, int height, @NonNull PreviewLoadSupervisor.ApplyCallback callback) {
+            applied.add(new int[]{width, height});
+            if (!accept) {
+                // 例如录像中，直接拒绝
+                callback.onApplied(false);
+                return;
+            }
+            // 像 CameraTextureView 一样投递到UI线程执行，不在回调中同步完成
+            pendingSize = new int[]{width, height};
+            pendingCallback = callback;
+        }
+
+        long processingMs() {
+            return (long) (msPerMegapixel * width * height / 1_000_000f) + extraDelayMs;
+        }
+
+        /**
+         * 运行 durationMs，每帧按 CameraTextureView#dispatchPreviewFrame 的方式调用 supervisor
+         */
+        void run(PreviewLoadSupervisor supervisor, long durationMs) {
+            long end = clock.nanos + durationMs * 1_000_000L;
+            while (clock.nanos < end) {
+                if (pendingCallback != null) {
+                    clock.advanceMs(restartMs);
+                    width = pendingSize[0];
+                    height = pendingSize[1];
+                    PreviewLoadSupervisor.ApplyCallback callback = pendingCallback;
+                    pendingCallback = null;
+                    callback.onApplied(true);
+                    continue;
+                }
+                long arrival = supervisor.onFrameArrived();
+                long processing = processingMs();
+                clock.advanceMs(processing);
+                supervisor.onFrameProcessed(arrival);
+                clock.advanceMs(Math.max(0, FRAME_INTERVAL_MS - processing));
+            }
+        }
+    }
+
+    private FakeClock clock;
+    private FakeTarget target;
+    private PreviewLoadSupervisor supervisor;
+    private final List<Integer> changedLevels = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock();
+        target = new FakeTarget();
+        supervisor = new PreviewLoadSupervisor(target, PreviewLoadSupervisor.DEFAULT_LEVELS, 0, clock);
+        // 降级持续1秒，升级持续5秒，冷却2秒
+        supervisor.setHoldTime(1000, 5000, 2000);
+        supervisor.setSmoothing(1f);
+        supervisor.setOnLevelChangeListener(new PreviewLoadSupervisor.OnLevelChangeListener() {
+            @Override
+            public void onLevelChanged(int fromLevel, int toLevel, int width, int height, float load) {
+                changedLevels.add(toLevel);
+            }
+        });
+    }
+
+    private PreviewLoadSupervisor createCameraSupervisor(FakeCamera camera) {
+        PreviewLoadSupervisor cameraSupervisor = new PreviewLoadSupervisor(camera, PreviewLoadSupervisor.DEFAULT_LEVELS, 0, clock);
+        cameraSupervisor.setHoldTime(1000, 5000, 2000);
+        cameraSupervisor.setSmoothing(0.2f);
+        cameraSupervisor.setOnLevelChangeListener(new PreviewLoadSupervisor.OnLevelChangeListener() {
+            @Override
+            public void onLevelChanged(int fromLevel, int toLevel, int width, int height, float load) {
+                changedLevels.add(toLevel);
+            }
+        });
+        return cameraSupervisor;
+    }
+
+    /**
+     * 按固定帧间隔模拟 durationMs，每帧处理耗时 lagMs
+     */
+    private void runFrames(long durationMs, long lagMs) {
+        for (long elapsed = 0; elapsed < durationMs; elapsed += FRAME_INTERVAL_MS) {
+            long arrival = supervisor.onFrameArrived();
+            clock.advanceMs(lagMs);
+            supervisor.onFrameProcessed(arrival);
+            clock.advanceMs(FRAME_INTERVAL_MS - lagMs);
+        }
+    }
+
+    @Test
+    public void stepDownAfterSustainedHighLoad() {
+        // 负载约 0.97，不到1秒不降级
+        runFrames(900, 32);
+        assertEquals(0, supervisor.getLevel());
+        runFrames(300, 32);
+        assertEquals(1, supervisor.getLevel());
+        assertEquals(1, target.applied.size());
+        assertArrayEquals(PreviewLoadSupervisor.DEFAULT_LEVELS[1], target.applied.get(0));
+        assertEquals(1, changedLevels.size());
+        assertEquals(1, (int) changedLevels.get(0));
+    }
+
+    @Test
+    public void noChangeDuringCooldown() {
+        runFrames(1200, 32);
+        assertEquals(1, supervisor.getLevel());
+        // 冷却期间持续高负载也不再降级
+        runFrames(1900, 32);
+        assertEquals(1, supervisor.getLevel());
+        // 冷却结束后再持续1秒降级
+        runFrames(1300, 32);
+        assertEquals(2, supervisor.getLevel());
+    }
+
+    @Test
+    public void stepUpAfterCooldownAndLongerHold() {
+        runFrames(1200, 32);
+        assertEquals(1, supervisor.getLevel());
+        // 冷却2秒 + 持续低负载5秒后才升级
+        runFrames(6500, 5);
+        assertEquals(1, supervisor.getLevel());
+        runFrames(700, 5);
+        assertEquals(0, supervisor.getLevel());
+        assertEquals(2, changedLevels.size());
+        assertEquals(0, (int) changedLevels.get(1));
+    }
+
+    @Test
+    public void hysteresisBandKeepsLevel() {
+        // 负载约 0.7，在阈值之间
+        runFrames(20000, 23);
+        assertEquals(0, supervisor.getLevel());
+        assertEquals(0, target.applied.size());
+    }
+
+    @Test
+    public void alternatingLoadResetsHoldTimer() {
+        // 高负载不连续满1秒，不降级
+        for (int i = 0; i < 10; i++) {
+            runFrames(800, 32);
+            runFrames(100, 20);
+        }
+        assertEquals(0, supervisor.getLevel());
+        assertEquals(0, target.applied.size());
+    }
+
+    @Test
+    public void refusedApplyKeepsLevelAndRetriesAfterCooldown() {
+        target.accept = false;
+        runFrames(1200, 32);
+        assertEquals(0, supervisor.getLevel());
+        assertEquals(1, target.applied.size());
+        assertEquals(0, changedLevels.size());
+        // 冷却期间不重试
+        runFrames(1800, 32);
+        assertEquals(1, target.applied.size());
+        // 冷却后仍是同一等级，不会连续降级
+        target.accept = true;
+        runFrames(300, 32);
+        assertEquals(2, target.applied.size());
+        assertArrayEquals(PreviewLoadSupervisor.DEFAULT_LEVELS[1], target.applied.get(1));
+        assertEquals(1, supervisor.getLevel());
+        assertEquals(1, changedLevels.size());
+    }
+
+    @Test
+    public void fakeCameraSettlesAtSustainableSize() {
+        FakeCamera camera = new FakeCamera(clock);
+        PreviewLoadSupervisor cameraSupervisor = createCameraSupervisor(camera);
+        // 1080p 处理约 50ms，跟不上 33ms 的帧间隔；720p 约 22ms，负载约 0.67，在阈值之间
+        camera.msPerMegapixel = 24;
+        camera.run(cameraSupervisor, 30000);
+        assertEquals(1, cameraSupervisor.getLevel());
+        assertEquals(1, camera.applied.size());
+        assertEquals(1280, camera.width);
+        assertEquals(720, camera.height);
+    }
+
+    @Test
+    public void fakeCameraIgnoresShortInjectedDelay() {
+        FakeCamera camera = new FakeCamera(clock);
+        PreviewLoadSupervisor cameraSupervisor = createCameraSupervisor(camera);
+        camera.msPerMegapixel = 5;
+        camera.run(cameraSupervisor, 3000);
+        // 注入 500ms 的处理延迟，不到降级的持续时间
+        camera.extraDelayMs = 40;
+        camera.run(cameraSupervisor, 500);
+        camera.extraDelayMs = 0;
+        camera.run(cameraSupervisor, 3000);
+        assertEquals(0, cameraSupervisor.getLevel());
+        assertEquals(0, camera.applied.size());
+        // 持续注入延迟后降级
+        camera.extraDelayMs = 40;
+        camera.run(cameraSupervisor, 3000);
+        assertEquals(1, cameraSupervisor.getLevel());
+    }
+
+    @Test
+    public void fakeCameraStepsBackUpWhenLoadDrops() {
+        FakeCamera camera = new FakeCamera(clock);
+        PreviewLoadSupervisor cameraSupervisor = createCameraSupervisor(camera);
+        camera.msPerMegapixel = 24;
+        camera.run(cameraSupervisor, 5000);
+        assertEquals(1, cameraSupervisor.getLevel());
+        // 处理变快后，冷却加持续低负载之后恢复 1080p，并保持
+        camera.msPerMegapixel = 5;
+        camera.run(cameraSupervisor, 20000);
+        assertEquals(0, cameraSupervisor.getLevel());
+        assertEquals(1920, camera.width);
+        assertEquals(2, camera.applied.size());
+        assertEquals(2, changedLevels.size());
+    }
+
+    @Test
+    public void fakeCameraRefusingApplyKeepsSize() {
+        FakeCamera camera = new FakeCamera(clock);
+        PreviewLoadSupervisor cameraSupervisor = createCameraSupervisor(camera);
+        camera.msPerMegapixel = 24;
+        camera.accept = false;
+        camera.run(cameraSupervisor, 10000);
+        assertEquals(0, cameraSupervisor.getLevel());
+        assertEquals(1920, camera.width);
+        // 被拒绝后等级不会越过被拒绝的一级
+        for (int[] size : camera.applied) {
+            assertArrayEquals(PreviewLoadSupervisor.DEFAULT_LEVELS[1], size);
+        }
+        // 1秒时第一次请求，之后每次冷却结束立即重试：1、3、5、7、9秒
+        assertEquals(5, camera.applied.size());
+    }
+
+}
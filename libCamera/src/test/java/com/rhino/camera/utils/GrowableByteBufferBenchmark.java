@@ -0,0 +1,130 @@
+package com.rhino.camera.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * <p>在开发机 JVM 上对比 {@link GrowableByteBuffer} 与 ByteArrayOutputStream 的每次调用分配量和耗时，不作为单元测试运行</p>
+ * <p>运行：编译 libCamera 的 main 和 test 源码后执行 main 方法，参数为文件大小 MB 和 编码输出大小 MB，默认 5 和 1.5。
+ * 每次调用分配量通过 com.sun.management.ThreadMXBean#getThreadAllocatedBytes 统计，预热后取多次平均</p>
+ * <p>记录（JDK 17，默认堆，5MB 文件，1.5MB 编码输出）：</p>
+ * <pre>
+ * 读文件  旧 1KB 循环 + ByteArrayOutputStream  21.0MB/次  4.0ms
+ *         FileUtils.readFileToByte             5.0MB/次   0.9ms
+ * 编码输出 ByteArrayOutputStream + toByteArray  5.5MB/次   0.38ms
+ *         obtain() 池中缓冲                    0          0.03ms
+ *         线程缓冲 + toByteArray                1.5MB/次   0.18ms
+ * </pre>
+ * <p>编码输出超过 {@link GrowableByteBuffer#MAX_RETAINED_CAPACITY} 时缓冲用完即丢弃，每次重新扩容，
+ * 例如 -Xmx256m、3MB 输出时 obtain() 为 7.9MB/次，以此换取不长期占用大块内存</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class GrowableByteBufferBenchmark {
+
+    private static final int WARMUP = 20;
+    private static final int ROUNDS = 50;
+    private static final int CHUNK = 4096;
+
+    private interface Task {
+        void run() throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int fileBytes = (int) ((args.length > 0 ? Float.parseFloat(args[0]) : 5f) * 1024 * 1024);
+        final int encodeBytes = (int) ((args.length > 1 ? Float.parseFloat(args[1]) : 1.5f) * 1024 * 1024);
+        final File file = File.createTempFile("growable", ".bin");
+        file.deleteOnExit();
+        byte[] content = new byte[fileBytes];
+        new Random(1).nextBytes(content);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content);
+        }
+        final byte[] chunk = new byte[CHUNK];
+
+        measure("读文件 旧 1KB 循环 + ByteArrayOutputStream", new Task() {
+            @Override
+            public void run() throws IOException {
+                try (InputStream in = new FileInputStream(file)) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[1024];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+                    out.toByteArray();
+                }
+            }
+        });
+        measure("读文件 FileUtils.readFileToByte", new Task() {
+            @Override
+            public void run() {
+                FileUtils.readFileToByte(file.getAbsolutePath());
+            }
+        });
+        // 按 Bitmap.compress 的方式分块写入
+        measure("编码输出 ByteArrayOutputStream + toByteArray", new Task() {
+            @Override
+            public void run() {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                writeChunks(out, chunk, encodeBytes);
+                out.toByteArray();
+            }
+        });
+        measure("编码输出 obtain() 池中缓冲", new Task() {
+            @Override
+            public void run() {
+                GrowableByteBuffer out = GrowableByteBuffer.obtain();
+                writeChunks(out, chunk, encodeBytes);
+                out.recycle();
+            }
+        });
+        measure("编码输出 线程缓冲 + toByteArray", new Task() {
+            @Override
+            public void run() {
+                GrowableByteBuffer out = GrowableByteBuffer.getThreadBuffer();
+                writeChunks(out, chunk, encodeBytes);
+                out.toByteArray();
+                GrowableByteBuffer.trimThreadBuffer();
+            }
+        });
+        System.out.println("MAX_RETAINED_CAPACITY=" + GrowableByteBuffer.MAX_RETAINED_CAPACITY
+                + ", MAX_POOL_BYTES=" + GrowableByteBuffer.MAX_POOL_BYTES);
+    }
+
+    private static void writeChunks(OutputStream out, byte[] chunk, int total) {
+        try {
+            for (int written = 0; written < total; written += chunk.length) {
+                out.write(chunk, 0, Math.min(chunk.length, total - written));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void measure(String name, Task task) throws IOException {
+        for (int i = 0; i < WARMUP; i++) {
+            task.run();
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocated = bean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            task.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = bean.getThreadAllocatedBytes(threadId) - allocated;
+        System.out.println(String.format("%-40s %8.2f MB/次 %8.2f ms/次", name,
+                allocated / (float) ROUNDS / 1024 / 1024, elapsed / (float) ROUNDS / 1000000));
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.rhino.camera.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * <p>在开发机 JVM 上对比模型文件各加载方式的耗时、Java 堆峰值增量和直接缓冲区增量，不作为单元测试运行</p>
+ * <p>运行：编译 libCamera 的 main 和 test 源码后执行 main 方法，参数为文件大小 MB，默认 50。
+ * 堆峰值为各堆内存池 peak usage 之和相对加载前的增量，每种方式运行前 GC 并重置峰值；
+ * assets 的直接缓冲路径用文件输入流代替 AssetInputStream，读取逻辑相同</p>
+ * <p>记录（JDK 17，50MB 文件，第二轮页缓存已热）：</p>
+ * <pre>
+ * 旧 1KB 循环 + ByteArrayOutputStream    68ms   堆峰值 +146MB
+ * FileUtils.readFileToByte               26ms   堆峰值  +50MB
+ * FileUtils.mapFile                      0.1ms  堆峰值   +0MB  映射，首次访问时才读入
+ * readFullyDirect（assets 压缩文件路径）   21ms   堆峰值   +0MB  直接缓冲 +50MB
+ * </pre>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class ModelLoadBenchmark {
+
+    private interface Loader {
+        Object load(File file) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        File file = File.createTempFile("model", ".bin");
+        file.deleteOnExit();
+        byte[] chunk = new byte[1024 * 1024];
+        Random random = new Random(1);
+        try (OutputStream out = new FileOutputStream(file)) {
+            for (int i = 0; i < sizeMb; i++) {
+                random.nextBytes(chunk);
+                out.write(chunk);
+            }
+        }
+        chunk = null;
+        for (int round = 1; round <= 2; round++) {
+            System.out.println("round " + round);
+            measure("旧 1KB 循环 + ByteArrayOutputStream", file, new Loader() {
+                @Override
+                public Object load(File file) throws IOException {
+                    try (InputStream in = new FileInputStream(file)) {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        byte[] buffer = new byte[1024];
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                        }
+                        return out.toByteArray();
+                    }
+                }
+            });
+            measure("FileUtils.readFileToByte", file, new Loader() {
+                @Override
+                public Object load(File file) {
+                    return FileUtils.readFileToByte(file.getAbsolutePath());
+                }
+            });
+            measure("FileUtils.mapFile", file, new Loader() {
+                @Override
+                public Object load(File file) {
+                    return FileUtils.mapFile(file.getAbsolutePath());
+                }
+            });
+            measure("readFullyDirect", file, new Loader() {
+                @Override
+                public Object load(File file) throws IOException {
+                    try (InputStream in = new FileInputStream(file)) {
+                        return FileUtils.readFullyDirect(in, in.available());
+                    }
+                }
+            });
+        }
+    }
+
+    private static void measure(String name, File file, Loader loader) throws IOException {
+        System.gc();
+        long heapBefore = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapBefore += pool.getUsage().getUsed();
+            }
+        }
+        long directBefore = getDirectBytes();
+        long start = System.nanoTime();
+        Object result = loader.load(file);
+        long elapsed = System.nanoTime() - start;
+        long heapPeak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPeak += pool.getPeakUsage().getUsed();
+            }
+        }
+        long direct = getDirectBytes() - directBefore;
+        int length = result instanceof byte[] ? ((byte[]) result).length : ((ByteBuffer) result).remaining();
+        System.out.println(String.format("%-36s %6.1f ms  堆峰值 %+6.1f MB  直接缓冲 %+6.1f MB  length=%d", name,
+                elapsed / 1000000f, (heapPeak - heapBefore) / 1048576f, direct / 1048576f, length));
+    }
+
+    private static long getDirectBytes() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+}
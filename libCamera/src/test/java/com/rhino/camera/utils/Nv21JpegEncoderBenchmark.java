@@ -0,0 +1,95 @@
+package com.rhino.camera.utils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>在开发机 JVM 上对比 {@link Nv21JpegEncoder} 单线程编码和按条带并行编码的耗时，不作为单元测试运行</p>
+ * <p>运行：编译 libCamera 的 main 和 test 源码后执行 main 方法，参数为条带数，默认8。
+ * 同一张图、同样的条带数分别用 1、2、4、N 个线程的线程池编码，第一个条带总在调用线程编码；
+ * 每项预热后取多次的中位数，输出写入复用的缓冲</p>
+ * <p>记录（JDK 17，单核开发机，8 条带，中位数）：</p>
+ * <pre>
+ * 1920x1080  单线程 36.6ms   1/2/4 线程 36.6~36.9ms  0.99~1.00x
+ * 4000x3000  单线程 217.4ms  1/2/4 线程 216.2~216.9ms 1.00~1.01x
+ * </pre>
+ * <p>单核上并行没有收益，只说明条带拆分、RSTn 和缓冲池的开销在 1% 以内；多核的加速比需要在目标设备上运行本类测得</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class Nv21JpegEncoderBenchmark {
+
+    private static final int WARMUP = 10;
+    private static final int ROUNDS = 21;
+
+    public static void main(String[] args) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int sliceCount = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int[][] sizes = {{1920, 1080}, {4000, 3000}};
+        int[] threadCounts = {1, 2, 4, cores};
+        Nv21JpegEncoder encoder = new Nv21JpegEncoder(90);
+        GrowableByteBuffer out = new GrowableByteBuffer();
+        System.out.println("cores=" + cores + ", slices=" + sliceCount);
+        for (int[] size : sizes) {
+            byte[] nv21 = createNv21(size[0], size[1]);
+            double serial = measure(encoder, nv21, size[0], size[1], out, null, 0);
+            System.out.println(String.format("%dx%d 单线程            %7.1f ms  %d KB",
+                    size[0], size[1], serial, out.size() / 1024));
+            for (int threads : threadCounts) {
+                ExecutorService executor = Executors.newFixedThreadPool(threads);
+                try {
+                    double parallel = measure(encoder, nv21, size[0], size[1], out, executor, sliceCount);
+                    System.out.println(String.format("%dx%d %d 线程 %2d 条带     %7.1f ms  %.2fx",
+                            size[0], size[1], threads, sliceCount, parallel, serial / parallel));
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
+        }
+    }
+
+    /**
+     * 亮度带噪声的渐变，接近相机预览的编码量
+     */
+    private static byte[] createNv21(int width, int height) {
+        byte[] nv21 = new byte[width * height * 3 / 2];
+        Random random = new Random(1);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                nv21[y * width + x] = (byte) ((x + y) / 16 + random.nextInt(24));
+            }
+        }
+        for (int i = width * height; i < nv21.length; i++) {
+            nv21[i] = (byte) (128 + random.nextInt(16) - 8);
+        }
+        return nv21;
+    }
+
+    /**
+     * @param executor 为 null 时单线程编码
+     * @return 每次编码耗时的中位数，毫秒
+     */
+    private static double measure(Nv21JpegEncoder encoder, byte[] nv21, int width, int height,
+                                  GrowableByteBuffer out, ExecutorService executor, int sliceCount) throws IOException {
+        double[] times = new double[ROUNDS];
+        for (int i = -WARMUP; i < ROUNDS; i++) {
+            out.reset();
+            long start = System.nanoTime();
+            if (executor == null) {
+                encoder.encode(nv21, width, height, out);
+            } else {
+                encoder.encode(nv21, width, height, out, executor, sliceCount);
+            }
+            if (i >= 0) {
+                times[i] = (System.nanoTime() - start) / 1000000d;
+            }
+        }
+        Arrays.sort(times);
+        return times[ROUNDS / 2];
+    }
+
+}
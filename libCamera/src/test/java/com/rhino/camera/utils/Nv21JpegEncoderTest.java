@@ -0,0 +1,184 @@
+package com.rhino.camera.utils;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>{@link Nv21JpegEncoder} 的参数检查、条带并行编码的输出结构和解码结果</p>
+ *
+ * @author LuoLin
+ * @since Create on 2026/10/19.
+ **/
+public class Nv21JpegEncoderTest {
+
+    private final AtomicInteger submitted = new AtomicInteger();
+    private ThreadPoolExecutor executor;
+    private Nv21JpegEncoder encoder;
+
+    @Before
+    public void setUp() {
+        executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>()) {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                submitted.incrementAndGet();
+                super.execute(command);
+            }
+        };
+        encoder = new Nv21JpegEncoder(90);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static byte[] nv21(int width, int height) {
+        byte[] data = new byte[width * height * 3 / 2];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    @Test
+    public void invalidSizeRejectedOnBothPaths() throws Exception {
+        int[][] sizes = {{1, 1}, {3, 2}, {2, 3}, {0, 2}, {-2, 2}};
+        for (int[] size : sizes) {
+            byte[] data = new byte[Math.max(0, size[0] * size[1] * 3 / 2)];
+            try {
+                encoder.encode(data, size[0], size[1], new ByteArrayOutputStream());
+                fail("single " + size[0] + "x" + size[1]);
+            } catch (IllegalArgumentException expected) {
+                // 期望
+            }
+            try {
+                encoder.encode(data, size[0], size[1], new ByteArrayOutputStream(), executor, 4);
+                fail("parallel " + size[0] + "x" + size[1]);
+            } catch (IllegalArgumentException expected) {
+                // 期望
+            }
+        }
+        // 参数错误时不提交任何条带
+        assertEquals(0, submitted.get());
+    }
+
+    @Test
+    public void shortDataRejectedOnBothPaths() throws Exception {
+        byte[] data = new byte[64 * 64];
+        try {
+            encoder.encode(data, 64, 64, new ByteArrayOutputStream());
+            fail("single");
+        } catch (IllegalArgumentException expected) {
+            // 期望
+        }
+        try {
+            encoder.encode(data, 64, 64, new ByteArrayOutputStream(), executor, 4);
+            fail("parallel");
+        } catch (IllegalArgumentException expected) {
+            // 期望
+        }
+        assertEquals(0, submitted.get());
+    }
+
+    @Test
+    public void singleSliceMatchesSingleThreaded() throws Exception {
+        byte[] data = nv21(64, 48);
+        ByteArrayOutputStream single = new ByteArrayOutputStream();
+        encoder.encode(data, 64, 48, single);
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        encoder.encode(data, 64, 48, parallel, executor, 1);
+        assertArrayEquals(single.toByteArray(), parallel.toByteArray());
+        assertEquals(0, submitted.get());
+    }
+
+    @Test
+    public void slicesJoinedWithRestartMarkers() throws Exception {
+        // 4 个 MCU 行分成 4 个条带
+        byte[] jpeg = encodeParallel(64, 64, 4);
+        assertEquals(3, submitted.get());
+        assertEquals(0xFF, jpeg[0] & 0xFF);
+        assertEquals(JpegTables.MARKER_SOI, jpeg[1] & 0xFF);
+        assertEquals(0xFF, jpeg[jpeg.length - 2] & 0xFF);
+        assertEquals(JpegTables.MARKER_EOI, jpeg[jpeg.length - 1] & 0xFF);
+        assertTrue("missing DRI", indexOfMarker(jpeg, JpegTables.MARKER_DRI) > 0);
+        int rst0 = indexOfMarker(jpeg, JpegTables.MARKER_RST0);
+        int rst1 = indexOfMarker(jpeg, JpegTables.MARKER_RST0 + 1);
+        int rst2 = indexOfMarker(jpeg, JpegTables.MARKER_RST0 + 2);
+        assertTrue("restart markers out of order", rst0 > 0 && rst1 > rst0 && rst2 > rst1);
+    }
+
+    @Test
+    public void sliceCountLimitedByMcuRows() throws Exception {
+        // 2 个 MCU 行最多 2 个条带
+        encodeParallel(64, 32, 8);
+        assertEquals(1, submitted.get());
+    }
+
+    @Test
+    public void parallelDecodesSameAsSerial() throws Exception {
+        int width = 320;
+        int height = 240;
+        // 每个 MCU 行内容都不同，条带错位或顺序错误时解码结果不同
+        byte[] data = new byte[width * height * 3 / 2];
+        Random random = new Random(1);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i / width + random.nextInt(32));
+        }
+        ByteArrayOutputStream serial = new ByteArrayOutputStream();
+        encoder.encode(data, width, height, serial);
+        int[] expected = decode(serial.toByteArray(), width, height);
+        // 15 个 MCU 行，15 个条带时 RSTn 编号会回绕
+        int[] sliceCounts = {2, 4, 15};
+        for (int sliceCount : sliceCounts) {
+            ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+            encoder.encode(data, width, height, parallel, executor, sliceCount);
+            int[] actual = decode(parallel.toByteArray(), width, height);
+            assertArrayEquals("slices " + sliceCount, expected, actual);
+        }
+    }
+
+    private static int[] decode(byte[] jpeg, int width, int height) throws Exception {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        return image.getRGB(0, 0, width, height, null, 0, width);
+    }
+
+    private byte[] encodeParallel(int width, int height, int sliceCount) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(nv21(width, height), width, height, out, executor, sliceCount);
+        return out.toByteArray();
+    }
+
+    /**
+     * 熵编码数据中的 0xFF 都跟着 0x00，只有标记会匹配
+     */
+    private static int indexOfMarker(byte[] jpeg, int marker) {
+        for (int i = 0; i + 1 < jpeg.length; i++) {
+            if ((jpeg[i] & 0xFF) == 0xFF && (jpeg[i + 1] & 0xFF) == marker) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}